@@ -0,0 +1,495 @@
+package com.hospital.billing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * BillArchive.java
+ * Keeps every printed bill in one append-only file instead of one
+ * Bill_<id>_<name>.txt file per bill.
+ *
+ * bills.archive layout:
+ *   Header:  int magic | int version
+ *   Records: int recordLength | long archivedAtMillis
+ *            short idLength | id bytes | int textLength | text bytes (UTF-8)
+ *
+ * bills.idx holds one appended entry per bill
+ * (short idLength | id bytes | long archivedAtMillis | long offset), and is
+ * loaded into memory on startup, so a bill is found by patient ID or by time
+ * without scanning any directory. If the index is missing or behind (e.g. a
+ * crash between the two writes), it is rebuilt from the archive; a torn
+ * record at the end of the archive is cut off.
+ *
+ * Several copies of the app may share the files. Every append, and every
+ * catch-up with bills another copy appended, holds an exclusive FileLock on
+ * bills.archive: the end of the archive is read under that lock, the record
+ * is forced to disk before its index entry is written, and the in-memory
+ * index first reads whatever the other copies added.
+ * archiveAll appends a whole batch of bills under one lock and one force.
+ */
+public class BillArchive {
+
+    private static final String ARCHIVE_FILE_NAME = "bills.archive";
+    private static final String INDEX_FILE_NAME = "bills.idx";
+
+    private static final int MAGIC = 0x48424131; // "HBA1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Where one archived bill lives.
+     */
+    public static final class BillEntry {
+        private final String patientId;
+        private final long archivedAtMillis;
+        private final long offset;
+
+        BillEntry(String patientId, long archivedAtMillis, long offset) {
+            this.patientId = patientId;
+            this.archivedAtMillis = archivedAtMillis;
+            this.offset = offset;
+        }
+
+        public String getPatientId() {
+            return patientId;
+        }
+
+        public long getArchivedAtMillis() {
+            return archivedAtMillis;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    // A JVM may hold only one FileLock per file, so archives on the same file take turns
+    private static final Map<Path, Object> LOCK_TURNS = new ConcurrentHashMap<>();
+
+    private final Path archiveFile;
+    private final FileChannel archiveChannel;
+    private final FileChannel indexChannel;
+    private final Object lockTurn;
+
+    // --- How far the in-memory index has read (guarded by "this") ---
+    private long archiveEnd;     // End of the archive as last seen
+    private long indexEnd = 0;   // Bytes of bills.idx already loaded
+    private long scannedTo = HEADER_SIZE; // Archive offset up to which every record is indexed
+
+    // --- In-memory index (guarded by "this") ---
+    private final Map<String, List<BillEntry>> byPatient = new HashMap<>();
+    private final TreeMap<Long, List<BillEntry>> byTime = new TreeMap<>();
+    private int billCount = 0;
+
+    public BillArchive(Path dataDir) throws Exception {
+        try {
+            Files.createDirectories(dataDir);
+            this.archiveFile = dataDir.resolve(ARCHIVE_FILE_NAME);
+            Path indexFile = dataDir.resolve(INDEX_FILE_NAME);
+
+            this.archiveChannel = FileChannel.open(archiveFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.lockTurn = LOCK_TURNS.computeIfAbsent(archiveFile.toAbsolutePath().normalize(), k -> new Object());
+
+            synchronized (lockTurn) {
+                FileLock fileLock = archiveChannel.lock();
+                try {
+                    if (archiveChannel.size() < HEADER_SIZE) {
+                        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                        header.putInt(MAGIC).putInt(VERSION).flip();
+                        archiveChannel.truncate(0);
+                        archiveChannel.write(header, 0);
+                        archiveChannel.force(true);
+                        indexChannel.truncate(0); // An index without bills is meaningless
+                    } else {
+                        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                        archiveChannel.read(header, 0);
+                        header.flip();
+                        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                            throw new Exception("bills.archive is not a supported bill archive.");
+                        }
+                    }
+                    catchUp();
+                } finally {
+                    fileLock.release();
+                }
+            }
+        } catch (IOException e) {
+            throw new Exception("Could not open bill archive: " + e.getMessage());
+        }
+    }
+
+    // --- Writing ---
+
+    /**
+     * Appends a bill, stamped with the current time.
+     */
+    public BillEntry archive(String patientId, String billText) throws Exception {
+        return archive(patientId, billText, System.currentTimeMillis());
+    }
+
+    public BillEntry archive(String patientId, String billText, long archivedAtMillis) throws Exception {
+        return append(Collections.singletonList(patientId), Collections.singletonList(billText), archivedAtMillis).get(0);
+    }
+
+    /**
+     * Appends many bills (patient ID -> bill text, in iteration order), all
+     * stamped with the current time. They go in under one lock and one force,
+     * so a batch costs one disk sync instead of one per bill. Either every
+     * bill is archived or none is.
+     */
+    public List<BillEntry> archiveAll(Map<String, String> bills) throws Exception {
+        return append(new ArrayList<>(bills.keySet()), new ArrayList<>(bills.values()), System.currentTimeMillis());
+    }
+
+    private synchronized List<BillEntry> append(List<String> patientIds, List<String> billTexts, long archivedAtMillis)
+            throws Exception {
+        List<ByteBuffer> records = new ArrayList<>(patientIds.size());
+        for (int i = 0; i < patientIds.size(); i++) {
+            byte[] id = patientIds.get(i).getBytes(StandardCharsets.UTF_8);
+            byte[] text = billTexts.get(i).getBytes(StandardCharsets.UTF_8);
+            int recordLength = 4 + 8 + 2 + id.length + 4 + text.length;
+            ByteBuffer record = ByteBuffer.allocate(recordLength);
+            record.putInt(recordLength).putLong(archivedAtMillis)
+                  .putShort((short) id.length).put(id)
+                  .putInt(text.length).put(text)
+                  .flip();
+            records.add(record);
+        }
+
+        synchronized (lockTurn) {
+            FileLock fileLock;
+            try {
+                fileLock = archiveChannel.lock();
+            } catch (IOException e) {
+                throw new Exception("Could not lock bill archive: " + e.getMessage());
+            }
+            try {
+                try {
+                    catchUp(); // Bills other copies appended; also re-reads the end of the archive
+                } catch (IOException e) {
+                    throw new Exception("Could not read bill archive: " + e.getMessage());
+                }
+
+                long start = archiveEnd;
+                List<BillEntry> entries = new ArrayList<>(records.size());
+                long offset = start;
+                try {
+                    for (int i = 0; i < records.size(); i++) {
+                        ByteBuffer record = records.get(i);
+                        entries.add(new BillEntry(patientIds.get(i), archivedAtMillis, offset));
+                        while (record.hasRemaining()) {
+                            archiveChannel.write(record, offset + record.position());
+                        }
+                        offset += record.limit();
+                    }
+                    archiveChannel.force(false); // The records are on disk before anything points at them
+                } catch (IOException e) {
+                    try {
+                        archiveChannel.truncate(start); // Don't leave half a batch behind
+                    } catch (IOException ignored) {
+                        // The next catch-up cuts the torn record off
+                    }
+                    throw new Exception("Error writing bill archive: " + e.getMessage());
+                }
+                archiveEnd = offset;
+                scannedTo = archiveEnd;
+
+                try {
+                    appendIndexEntries(entries);
+                } catch (Exception e) {
+                    // Take the bills back out, so every indexed record stays after the ones before it
+                    archiveChannel.truncate(start);
+                    indexChannel.truncate(indexEnd);
+                    archiveEnd = start;
+                    scannedTo = start;
+                    throw e;
+                }
+                indexEnd = indexChannel.size();
+                for (BillEntry entry : entries) {
+                    remember(entry);
+                }
+                return entries;
+            } finally {
+                fileLock.release();
+            }
+        }
+    }
+
+    // --- Reading ---
+
+    /**
+     * The text of an archived bill.
+     */
+    public String readBill(BillEntry entry) throws Exception {
+        try {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            archiveChannel.read(head, entry.getOffset());
+            head.flip();
+            ByteBuffer record = ByteBuffer.allocate(head.getInt() - 4);
+            while (record.hasRemaining()) {
+                if (archiveChannel.read(record, entry.getOffset() + 4 + record.position()) < 0) {
+                    throw new IOException("bill record is truncated");
+                }
+            }
+            record.flip();
+            record.getLong(); // archivedAt
+            int idLength = record.getShort();
+            record.position(record.position() + idLength);
+            byte[] text = new byte[record.getInt()];
+            record.get(text);
+            return new String(text, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            throw new Exception("Could not read bill for " + entry.getPatientId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Every bill archived for a patient, oldest first.
+     */
+    public synchronized List<BillEntry> getBills(String patientId) throws Exception {
+        refresh();
+        List<BillEntry> bills = byPatient.get(patientId);
+        return (bills != null) ? new ArrayList<>(bills) : Collections.emptyList();
+    }
+
+    /**
+     * The most recent bill for a patient, or null if none was archived.
+     */
+    public synchronized BillEntry getLatestBill(String patientId) throws Exception {
+        refresh();
+        List<BillEntry> bills = byPatient.get(patientId);
+        return (bills != null) ? bills.get(bills.size() - 1) : null;
+    }
+
+    /**
+     * Bills archived between two times (inclusive, epoch millis), oldest first.
+     */
+    public synchronized List<BillEntry> getBillsBetween(long fromMillis, long toMillis) throws Exception {
+        refresh();
+        List<BillEntry> result = new ArrayList<>();
+        if (fromMillis > toMillis) {
+            return result;
+        }
+        for (List<BillEntry> entries : byTime.subMap(fromMillis, true, toMillis, true).values()) {
+            result.addAll(entries);
+        }
+        return result;
+    }
+
+    public synchronized int getBillCount() throws Exception {
+        refresh();
+        return billCount;
+    }
+
+    /**
+     * Writes one archived bill out as its own text file (e.g. to email or print).
+     */
+    public Path exportBill(BillEntry entry, Path target) throws Exception {
+        String text = readBill(entry);
+        try {
+            Files.write(target, text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new Exception("Could not export bill: " + e.getMessage());
+        }
+        return target;
+    }
+
+    public Path getArchiveFile() {
+        return archiveFile;
+    }
+
+    // --- Migration ---
+
+    /**
+     * One-time move of old Bill_<id>_<name>.txt files from a directory into the
+     * archive. Each file is archived with its last-modified time and then deleted,
+     * so running this again only picks up files that failed or appeared since.
+     * @return How many files were moved.
+     */
+    public int migrateBillFiles(Path dir) throws Exception {
+        int moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "Bill_*.txt")) {
+            for (Path file : files) {
+                String patientId = patientIdFromFileName(file.getFileName().toString());
+                try {
+                    String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                    archive(patientId, text, Files.getLastModifiedTime(file).toMillis());
+                    Files.delete(file);
+                    moved++;
+                } catch (Exception e) {
+                    System.err.println("Could not migrate bill file " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new Exception("Could not list old bill files: " + e.getMessage());
+        }
+        return moved;
+    }
+
+    /**
+     * "Bill_20240101-001_John_Smith.txt" -> "20240101-001" (IDs never contain '_').
+     */
+    private static String patientIdFromFileName(String fileName) {
+        String rest = fileName.substring("Bill_".length(), fileName.length() - ".txt".length());
+        int end = rest.indexOf('_');
+        return (end < 0) ? rest : rest.substring(0, end);
+    }
+
+    // --- Index ---
+
+    private void remember(BillEntry entry) {
+        byPatient.computeIfAbsent(entry.getPatientId(), k -> new ArrayList<>()).add(entry);
+        byTime.computeIfAbsent(entry.getArchivedAtMillis(), k -> new ArrayList<>(1)).add(entry);
+        billCount++;
+    }
+
+    private void appendIndexEntry(BillEntry entry) throws Exception {
+        appendIndexEntries(Collections.singletonList(entry));
+    }
+
+    /**
+     * Appends the entries to bills.idx in one write.
+     */
+    private void appendIndexEntries(List<BillEntry> entries) throws Exception {
+        List<byte[]> ids = new ArrayList<>(entries.size());
+        int size = 0;
+        for (BillEntry entry : entries) {
+            byte[] id = entry.getPatientId().getBytes(StandardCharsets.UTF_8);
+            ids.add(id);
+            size += 2 + id.length + 16;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        for (int i = 0; i < entries.size(); i++) {
+            BillEntry entry = entries.get(i);
+            buf.putShort((short) ids.get(i).length).put(ids.get(i))
+               .putLong(entry.getArchivedAtMillis()).putLong(entry.getOffset());
+        }
+        buf.flip();
+        try {
+            long position = indexChannel.size();
+            while (buf.hasRemaining()) {
+                indexChannel.write(buf, position + buf.position());
+            }
+        } catch (IOException e) {
+            throw new Exception("Error writing bill index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads bills another copy of the app appended since we last looked.
+     * Cheap when nothing changed: one size check, no lock.
+     */
+    private void refresh() throws Exception {
+        try {
+            if (archiveChannel.size() == archiveEnd && indexChannel.size() == indexEnd) {
+                return;
+            }
+            synchronized (lockTurn) {
+                FileLock fileLock = archiveChannel.lock();
+                try {
+                    catchUp();
+                } finally {
+                    fileLock.release();
+                }
+            }
+        } catch (IOException e) {
+            throw new Exception("Could not read bill archive: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the in-memory index up to the files on disk: reads new index
+     * entries, then indexes any records with no entry (a crash between the two
+     * writes) and cuts off a torn record at the end.
+     * Called with "this" and the archive FileLock held.
+     */
+    private void catchUp() throws IOException {
+        archiveEnd = archiveChannel.size();
+
+        // 1. Index entries written since we last read the index
+        long indexSize = indexChannel.size();
+        ByteBuffer idx = ByteBuffer.allocate((int) (indexSize - indexEnd));
+        while (idx.hasRemaining() && indexChannel.read(idx, indexEnd + idx.position()) >= 0) {
+            // Keep reading
+        }
+        idx.flip();
+        int valid = 0;
+        while (idx.remaining() >= 2) {
+            int idLength = idx.getShort();
+            if (idLength < 0 || idx.remaining() < idLength + 16) break; // Torn last entry
+            byte[] id = new byte[idLength];
+            idx.get(id);
+            long archivedAt = idx.getLong();
+            long offset = idx.getLong();
+            if (offset < scannedTo) {
+                valid = idx.position(); // Already indexed by the scan below on an earlier pass
+                continue;
+            }
+            int length = (offset + 4 <= archiveEnd) ? recordLengthAt(offset) : 0;
+            if (length < 18 || offset + length > archiveEnd) break; // Points past the end of the archive
+            valid = idx.position();
+            remember(new BillEntry(new String(id, StandardCharsets.UTF_8), archivedAt, offset));
+            scannedTo = offset + length;
+        }
+        indexEnd += valid;
+        if (indexEnd < indexSize) {
+            indexChannel.truncate(indexEnd); // Drop any torn entry before appending
+        }
+
+        // 2. Bills written after the last index entry
+        int recovered = 0;
+        long offset = scannedTo;
+        while (offset + 4 <= archiveEnd) {
+            int length = recordLengthAt(offset);
+            if (length < 18 || offset + length > archiveEnd) break;
+            ByteBuffer head = ByteBuffer.allocate(Math.min(length, 14 + Short.MAX_VALUE) - 4);
+            archiveChannel.read(head, offset + 4);
+            head.flip();
+            long archivedAt = head.getLong();
+            byte[] id = new byte[head.getShort()];
+            head.get(id);
+            BillEntry entry = new BillEntry(new String(id, StandardCharsets.UTF_8), archivedAt, offset);
+            try {
+                appendIndexEntry(entry);
+            } catch (Exception e) {
+                throw new IOException(e.getMessage());
+            }
+            indexEnd = indexChannel.size();
+            remember(entry);
+            recovered++;
+            offset += length;
+        }
+        scannedTo = offset;
+        if (offset < archiveEnd) {
+            archiveChannel.truncate(offset); // Torn bill at the end
+            archiveEnd = offset;
+        }
+        if (recovered > 0) {
+            System.err.println("Recovered " + recovered + " bill(s) missing from bills.idx.");
+        }
+    }
+
+    private int recordLengthAt(long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        archiveChannel.read(buf, offset);
+        buf.flip();
+        return (buf.remaining() == 4) ? buf.getInt() : 0;
+    }
+}
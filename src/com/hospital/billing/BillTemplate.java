@@ -0,0 +1,178 @@
+package com.hospital.billing;
+
+import com.hospital.model.Patient;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * BillTemplate.java
+ * The text of a patient bill, compiled once and rendered many times.
+ *
+ * A template is plain text with ${field} placeholders, e.g.
+ *   "Patient ID:    ${patientId}\n"
+ * compile() splits it into literal pieces and fields up front, so render()
+ * is just a walk over that list into one StringBuilder (no parsing and no
+ * String.format per bill). Line breaks become the platform line separator.
+ *
+ * Fields: patientId, name, doctor, baseBill, insurance, finalBill, status,
+ *         dischargeLine (the "Discharge Date: ..." line, or nothing if admitted)
+ *
+ * Rendering is thread-safe: currency formatters are per thread.
+ */
+public final class BillTemplate {
+
+    private enum Field {
+        PATIENT_ID("patientId"),
+        NAME("name"),
+        DOCTOR("doctor"),
+        BASE_BILL("baseBill"),
+        INSURANCE("insurance"),
+        FINAL_BILL("finalBill"),
+        STATUS("status"),
+        DISCHARGE_LINE("dischargeLine");
+
+        final String placeholder;
+
+        Field(String placeholder) {
+            this.placeholder = placeholder;
+        }
+    }
+
+    private static final String NL = System.lineSeparator();
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    // NumberFormat is not thread-safe, so each rendering thread gets its own
+    private static final ThreadLocal<NumberFormat> CURRENCY_FORMAT =
+        ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(new Locale("en", "IN")));
+
+    /**
+     * The standard NEWLIFE bill (the same layout printBill has always produced).
+     */
+    public static final BillTemplate DEFAULT = compileDefault();
+
+    // literals[i] comes before fields[i]; the last literal ends the bill
+    private final String[] literals;
+    private final Field[] fields;
+    private final int sizeHint;
+
+    private BillTemplate(List<String> literals, List<Field> fields) {
+        this.literals = literals.toArray(new String[0]);
+        this.fields = fields.toArray(new Field[0]);
+        int literalLength = 0;
+        for (String literal : this.literals) {
+            literalLength += literal.length();
+        }
+        this.sizeHint = literalLength + 32 * this.fields.length;
+    }
+
+    /**
+     * Parses a template once. Unknown or unclosed placeholders are rejected.
+     */
+    public static BillTemplate compile(String text) throws Exception {
+        String normalized = text.replace("\r\n", "\n").replace("\n", NL);
+        List<String> literals = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+
+        int pos = 0;
+        while (true) {
+            int open = normalized.indexOf("${", pos);
+            if (open < 0) {
+                literals.add(normalized.substring(pos));
+                break;
+            }
+            int close = normalized.indexOf('}', open);
+            if (close < 0) {
+                throw new Exception("Unclosed placeholder in bill template at position " + open + ".");
+            }
+            literals.add(normalized.substring(pos, open));
+            fields.add(fieldFor(normalized.substring(open + 2, close)));
+            pos = close + 1;
+        }
+        return new BillTemplate(literals, fields);
+    }
+
+    private static Field fieldFor(String placeholder) throws Exception {
+        for (Field field : Field.values()) {
+            if (field.placeholder.equals(placeholder)) {
+                return field;
+            }
+        }
+        throw new Exception("Unknown bill template field: ${" + placeholder + "}");
+    }
+
+    // --- Rendering ---
+
+    public String render(Patient patient) {
+        StringBuilder out = new StringBuilder(sizeHint);
+        for (int i = 0; i < fields.length; i++) {
+            out.append(literals[i]);
+            appendField(out, fields[i], patient);
+        }
+        out.append(literals[fields.length]);
+        return out.toString();
+    }
+
+    /**
+     * One decimal place, rounding the value as written (12.45 -> "12.5"), like
+     * printBill's "%.1f". DecimalFormat would round the binary double (12.4499...)
+     * down instead.
+     */
+    static String formatPercent(double percent) {
+        return BigDecimal.valueOf(percent).setScale(1, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static void appendField(StringBuilder out, Field field, Patient p) {
+        switch (field) {
+            case PATIENT_ID: out.append(p.getPatientId()); break;
+            case NAME: out.append(p.getName()); break;
+            case DOCTOR: out.append(p.getDoctorAssigned()); break;
+            case BASE_BILL: out.append(CURRENCY_FORMAT.get().format(p.getBaseBillAmount())); break;
+            case INSURANCE: out.append(formatPercent(p.getInsuranceDiscountPercent())); break;
+            case FINAL_BILL: out.append(CURRENCY_FORMAT.get().format(p.getFinalBillAmount())); break;
+            case STATUS: out.append(p.isDischarged() ? "Discharged" : "Admitted"); break;
+            case DISCHARGE_LINE:
+                if (p.isDischarged() && p.getDateOfDischarge() != null) {
+                    out.append("Discharge Date: ").append(DATE_FORMAT.format(p.getDateOfDischarge())).append(NL);
+                }
+                break;
+        }
+    }
+
+    private static BillTemplate compileDefault() {
+        String text =
+            "****************************************\n" +
+            "         NEWLIFE HOSPITAL BILL          \n" +
+            "****************************************\n" +
+            "\n" +
+            "Patient ID:    ${patientId}\n" +
+            "Patient Name:  ${name}\n" +
+            "Doctor:        ${doctor}\n" +
+            "\n" +
+            "----------------------------------------\n" +
+            "          BILLING DETAILS               \n" +
+            "----------------------------------------\n" +
+            "\n" +
+            "Base Bill Amount         : ${baseBill}\n" +
+            "Insurance Discount       : ${insurance} %\n" +
+            "\n" +
+            "----------------------------------------\n" +
+            "TOTAL FINAL BILL         : ${finalBill}\n" +
+            "----------------------------------------\n" +
+            "\n" +
+            "Status: ${status}\n" +
+            "${dischargeLine}" +
+            "\n" +
+            "Thank you and get well soon!\n";
+        try {
+            return compile(text);
+        } catch (Exception e) {
+            throw new IllegalStateException("Default bill template is invalid: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.hospital.billing;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * BillingRunReport.java
+ * What a BulkBillingRun did: how many bills were written, how fast, and
+ * which patients failed (patient ID -> reason).
+ */
+public class BillingRunReport {
+
+    private final int requested;
+    private final int written;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+    private final Map<String, String> failures;
+
+    BillingRunReport(int requested, int written, long bytesWritten, long elapsedNanos, Map<String, String> failures) {
+        this.requested = requested;
+        this.written = written;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public int getRequested() {
+        return requested;
+    }
+
+    public int getWritten() {
+        return written;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public double getBillsPerSecond() {
+        return (elapsedNanos == 0) ? 0 : written * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d bills written in %d ms (%.0f bills/s, %d KB), %d failed",
+                written, requested, getElapsedMillis(), getBillsPerSecond(), bytesWritten / 1024, failures.size());
+    }
+}
@@ -0,0 +1,155 @@
+package com.hospital.billing;
+
+import com.hospital.model.Patient;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * BulkBillingRun.java
+ * Writes bills for many patients at once (e.g. everyone discharged this month).
+ *
+ * Bills are rendered in parallel from one compiled BillTemplate on a
+ * dedicated fork-join pool. For the archive, bills are rendered a chunk at a
+ * time and each chunk is appended with BillArchive.archiveAll: one lock and
+ * one disk sync per chunk rather than per bill. Exports to a directory are
+ * limited to a few files at a time (ioConcurrency), so the disk is not
+ * swamped with hundreds of open files.
+ * A bill that fails does not stop the run; it is listed in the report. If a
+ * chunk cannot be appended, every bill in it is listed.
+ *
+ * Bills go either into a BillArchive (the normal case) or, for exports,
+ * into one Bill_<id>_<name>.txt file each in a directory.
+ */
+public class BulkBillingRun {
+
+    private static final int ARCHIVE_CHUNK_SIZE = 256; // Bills per archive append
+
+    private final Path outputDir;   // Set when writing one file per bill
+    private final BillArchive archive; // Set when appending to the archive
+    private final BillTemplate template;
+    private final int renderThreads;
+    private final Semaphore ioPermits;
+
+    public BulkBillingRun(BillArchive archive, BillTemplate template) {
+        this(null, archive, template, 1);
+    }
+
+    public BulkBillingRun(Path outputDir, BillTemplate template, int ioConcurrency) {
+        this(outputDir, null, template, ioConcurrency);
+    }
+
+    private BulkBillingRun(Path outputDir, BillArchive archive, BillTemplate template, int ioConcurrency) {
+        this.outputDir = outputDir;
+        this.archive = archive;
+        this.template = template;
+        this.renderThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.ioPermits = new Semaphore(Math.max(1, ioConcurrency));
+    }
+
+    /**
+     * The file name printBill has always used for a patient's bill.
+     */
+    public static String billFileName(Patient patient) {
+        return "Bill_" + patient.getPatientId() + "_" + patient.getName().replace(" ", "_") + ".txt";
+    }
+
+    /**
+     * Renders and writes one bill per patient.
+     */
+    public BillingRunReport run(List<Patient> patients) throws Exception {
+        if (outputDir != null) {
+            Files.createDirectories(outputDir);
+        }
+
+        AtomicInteger written = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        Map<String, String> failures = new ConcurrentHashMap<>();
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(renderThreads);
+        try {
+            if (archive == null) {
+                pool.submit(() -> patients.parallelStream().forEach(patient -> {
+                    try {
+                        String bill = template.render(patient);
+                        bytes.addAndGet(writeFile(patient, bill));
+                        written.incrementAndGet();
+                    } catch (Exception e) {
+                        failures.put(String.valueOf(patient.getPatientId()), String.valueOf(e.getMessage()));
+                    }
+                })).get();
+            } else {
+                for (int from = 0; from < patients.size(); from += ARCHIVE_CHUNK_SIZE) {
+                    List<Patient> chunk = patients.subList(from, Math.min(from + ARCHIVE_CHUNK_SIZE, patients.size()));
+                    String[] rendered = new String[chunk.size()];
+                    pool.submit(() -> IntStream.range(0, chunk.size()).parallel().forEach(i -> {
+                        try {
+                            rendered[i] = template.render(chunk.get(i));
+                        } catch (Exception e) {
+                            failures.put(String.valueOf(chunk.get(i).getPatientId()), String.valueOf(e.getMessage()));
+                        }
+                    })).get();
+                    archiveChunk(chunk, rendered, written, bytes, failures);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new Exception("Billing run failed: " + e.getCause().getMessage());
+        } finally {
+            pool.shutdown();
+        }
+        return new BillingRunReport(patients.size(), written.get(), bytes.get(), System.nanoTime() - start, failures);
+    }
+
+    /**
+     * Appends the rendered bills of one chunk (null = failed to render) in a single archiveAll.
+     */
+    private void archiveChunk(List<Patient> chunk, String[] rendered, AtomicInteger written, AtomicLong bytes,
+                              Map<String, String> failures) {
+        Map<String, String> bills = new LinkedHashMap<>();
+        long chunkBytes = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            if (rendered[i] != null) {
+                bills.put(chunk.get(i).getPatientId(), rendered[i]);
+                chunkBytes += rendered[i].getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        if (bills.isEmpty()) {
+            return;
+        }
+        try {
+            archive.archiveAll(bills);
+            written.addAndGet(bills.size());
+            bytes.addAndGet(chunkBytes);
+        } catch (Exception e) {
+            for (String patientId : bills.keySet()) {
+                failures.put(String.valueOf(patientId), String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    private int writeFile(Patient patient, String bill) throws Exception {
+        byte[] bytes = bill.getBytes(StandardCharsets.UTF_8);
+        ioPermits.acquire();
+        try {
+            Files.write(outputDir.resolve(billFileName(patient)), bytes);
+        } finally {
+            ioPermits.release();
+        }
+        return bytes.length;
+    }
+}
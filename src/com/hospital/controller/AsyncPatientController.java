@@ -0,0 +1,129 @@
+package com.hospital.controller;
+
+import com.hospital.dao.BillingAggregates;
+import com.hospital.dao.PatientSortKey;
+import com.hospital.model.Patient;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * AsyncPatientController.java
+ * The same operations as PatientController, but each one runs on a background
+ * thread and returns a CompletableFuture straight away, so the caller (the
+ * Swing event dispatch thread) never waits on file I/O.
+ *
+ * Futures complete on the background thread. A UI caller must hand the result
+ * back to the EDT itself (e.g. with SwingUtilities.invokeLater). A failed
+ * operation completes the future exceptionally with the controller's own
+ * exception (validation message, StalePatientException, ...).
+ *
+ * Change events are still fired by the wrapped controller, on the background thread.
+ */
+public class AsyncPatientController {
+
+    private final PatientController controller;
+    private final ExecutorService executor;
+
+    public AsyncPatientController(PatientController controller) {
+        this.controller = controller;
+        this.executor = TaskExecutors.newPerTaskExecutor("patient-io");
+    }
+
+    /**
+     * The wrapped controller, for cheap calls (formatting, listeners) that need no thread.
+     */
+    public PatientController getController() {
+        return controller;
+    }
+
+    // --- Patients ---
+
+    public CompletableFuture<Patient> addNewPatient(
+            String name, String ageStr, String contact, String address, String admissionDateStr,
+            String doctor, String treatment, String history, String baseBillStr, String insuranceStr) {
+        return submit(() -> controller.addNewPatient(name, ageStr, contact, address, admissionDateStr,
+                doctor, treatment, history, baseBillStr, insuranceStr));
+    }
+
+    public CompletableFuture<Void> updatePatient(
+            String patientId, String name, String ageStr, String contact, String address, String admissionDateStr,
+            String doctor, String treatment, String history, String baseBillStr, String insuranceStr,
+            boolean isDischarged, String dischargeDateStr, long expectedVersion) {
+        return submit(() -> {
+            controller.updatePatient(patientId, name, ageStr, contact, address, admissionDateStr,
+                    doctor, treatment, history, baseBillStr, insuranceStr,
+                    isDischarged, dischargeDateStr, expectedVersion);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> dischargePatient(String patientId, long expectedVersion) {
+        return submit(() -> {
+            controller.dischargePatient(patientId, expectedVersion);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Patient> getPatient(String patientId) {
+        return submit(() -> controller.getPatient(patientId));
+    }
+
+    public CompletableFuture<List<Patient>> getPatientPage(int offset, int limit, PatientSortKey sortKey,
+                                                          boolean descending) {
+        return submit(() -> controller.getPatientPage(offset, limit, sortKey, descending));
+    }
+
+    public CompletableFuture<List<Patient>> getPatients(List<String> patientIds) {
+        return submit(() -> controller.getPatients(patientIds));
+    }
+
+    public CompletableFuture<Integer> countPatients() {
+        return submit(controller::countPatients);
+    }
+
+    public CompletableFuture<BillingAggregates> getBillingAggregates() {
+        return submit(controller::getBillingAggregates);
+    }
+
+    // --- Bills ---
+
+    public CompletableFuture<String> printBill(String patientId) {
+        return submit(() -> controller.printBill(patientId));
+    }
+
+    public CompletableFuture<String> exportBill(String patientId, Path target) {
+        return submit(() -> controller.exportBill(patientId, target));
+    }
+
+    /**
+     * Stops accepting work; operations already running are left to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs a controller call on the executor. CompletableFuture.supplyAsync cannot
+     * throw checked exceptions, so the future is completed by hand.
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new Exception("The application is shutting down.", e));
+        }
+        return future;
+    }
+}
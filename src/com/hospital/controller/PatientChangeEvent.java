@@ -0,0 +1,40 @@
+package com.hospital.controller;
+
+import com.hospital.model.Patient;
+
+/**
+ * PatientChangeEvent.java
+ * Describes one saved change to a patient, so views can update just that
+ * patient instead of reloading everything.
+ */
+public class PatientChangeEvent {
+
+    public enum Type {
+        INSERTED,   // A new patient was added
+        UPDATED,    // An existing patient was edited
+        DISCHARGED  // A patient went from admitted to discharged
+    }
+
+    private final Type type;
+    private final Patient patient;
+
+    public PatientChangeEvent(Type type, Patient patient) {
+        this.type = type;
+        this.patient = new Patient(patient); // A snapshot of the saved state
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPatientId() {
+        return patient.getPatientId();
+    }
+
+    /**
+     * The patient as it was saved.
+     */
+    public Patient getPatient() {
+        return new Patient(patient);
+    }
+}
@@ -0,0 +1,11 @@
+package com.hospital.controller;
+
+/**
+ * PatientChangeListener.java
+ * Notified by PatientController after a patient is added, updated or discharged.
+ * Called on the thread that made the change.
+ */
+public interface PatientChangeListener {
+
+    void patientChanged(PatientChangeEvent event);
+}
@@ -1,20 +1,32 @@
 package com.hospital.controller;
 
+import com.hospital.billing.BillArchive;
+import com.hospital.billing.BillTemplate;
+import com.hospital.billing.BillingRunReport;
+import com.hospital.billing.BulkBillingRun;
+import com.hospital.dao.BillingAggregates;
+import com.hospital.dao.IndexedPatientDAO;
 import com.hospital.dao.PatientDAO;
-import com.hospital.dao.PatientTextFileDAO; // <-- MODIFIED
+import com.hospital.dao.PatientDAOFactory;
+import com.hospital.dao.PatientQuery;
+import com.hospital.dao.PatientSortKey;
+import com.hospital.dao.StalePatientException;
 import com.hospital.model.Patient;
 
-import java.io.BufferedWriter; // <-- NEW
-import java.io.FileWriter; // <-- NEW
-import java.io.IOException; // <-- NEW
 import java.nio.file.Path; // <-- NEW
 import java.nio.file.Paths; // <-- NEW
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
 
 /**
  * PatientController.java
@@ -31,13 +43,25 @@ public class PatientController {
     private NumberFormat currencyFormatter;
     private final String DATA_DIR_NAME = ".hospitalapp"; // For saving bills
     private final Path dataDir; // For saving bills
+    private static final String BILL_MIGRATION_PROPERTY = "hospital.bills.migrate";
+
+    /** Passed as an expected version to skip the stale-edit check (last save wins). */
+    public static final long ANY_VERSION = -1;
+
+    private BillArchive billArchive; // Opened on first use
+    private final List<PatientChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     public PatientController() {
-        // --- THIS IS THE BIG CHANGE ---
-        // We are now using the Text File DAO
-        // This DAO will automatically save a .dat backup!
-        this.patientDAO = new PatientTextFileDAO();
-        // ------------------------------
+        // The storage engine is chosen by the "hospital.storage" system property.
+        // By default this is the Text File DAO, which also saves a .dat backup.
+        this(PatientDAOFactory.create());
+    }
+
+    /**
+     * Creates a controller on top of a specific storage engine.
+     */
+    public PatientController(PatientDAO patientDAO) {
+        this.patientDAO = patientDAO;
         
         this.dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         this.currencyFormatter = NumberFormat.getCurrencyInstance(new Locale("en", "IN")); // For ₹
@@ -55,34 +79,91 @@ public class PatientController {
             String doctor, String treatment, String history, String baseBillStr, String insuranceStr)
             throws Exception {
 
-        // --- 1. Validate All Inputs ---
-        if (name == null || name.trim().isEmpty()) {
-            throw new Exception("Patient Name cannot be empty.");
-        }
-        int age = validateInteger(ageStr, 0, 150, "Age");
-        double baseBill = validateDouble(baseBillStr, 0, Double.MAX_VALUE, "Base Bill");
-        double insurance = validateDouble(insuranceStr, 0, 100, "Insurance %");
+        Patient patient = validateNewPatient(name, ageStr, contact, address, admissionDateStr,
+                doctor, treatment, history, baseBillStr, insuranceStr);
+
+        // --- 3. Save via DAO and return ---
+        // The DAO will generate and set the ID
+        Patient saved = patientDAO.addPatient(patient);
+        fireChange(PatientChangeEvent.Type.INSERTED, saved);
+        return saved;
+    }
+
+    /**
+     * Validates the inputs for a new patient and builds the Patient object, without saving it.
+     * Used by addNewPatient and to prepare rows for addNewPatients.
+     */
+    public Patient validateNewPatient(
+            String name, String ageStr, String contact, String address, String admissionDateStr,
+            String doctor, String treatment, String history, String baseBillStr, String insuranceStr)
+            throws Exception {
+
+        // --- 1. Parse All Inputs ---
+        checkName(name, "");
+        int age = validateInteger(ageStr, "Age");
+        double baseBill = validateDouble(baseBillStr, "Base Bill");
+        double insurance = validateDouble(insuranceStr, "Insurance %");
         LocalDate admissionDate = validateDate(admissionDateStr, "Admission Date", true); // Required
 
         // --- 2. Create Patient Object ---
         Patient patient = new Patient();
         patient.setName(name.trim());
         patient.setAge(age);
-        patient.setContact(contact.trim());
+        patient.setContact(trimmed(contact));
         patient.setAddress(address);
         patient.setDateOfAdmission(admissionDate);
-        patient.setDoctorAssigned(doctor.trim());
-        patient.setTreatmentGiven(treatment.trim());
+        patient.setDoctorAssigned(trimmed(doctor));
+        patient.setTreatmentGiven(trimmed(treatment));
         patient.setMedicalHistory(history);
         patient.setBaseBillAmount(baseBill);
         patient.setInsuranceDiscountPercent(insurance);
-        patient.calculateFinalBill();
         patient.setDischarged(false);
         patient.setDateOfDischarge(null);
 
-        // --- 3. Save via DAO and return ---
-        // The DAO will generate and set the ID
-        return patientDAO.addPatient(patient);
+        // --- 3. Apply the rules every patient must pass ---
+        checkPatient(patient, "");
+        patient.calculateFinalBill();
+        return patient;
+    }
+
+    /**
+     * Marks a patient built with validateNewPatient as already discharged (e.g. a
+     * record transferred from another hospital), applying the update form's rules.
+     */
+    public void validateDischarge(Patient patient, String dischargeDateStr) throws Exception {
+        LocalDate dischargeDate = validateDate(dischargeDateStr, "Discharge Date", true);
+        if (dischargeDate.isBefore(patient.getDateOfAdmission())) {
+            throw new Exception("Discharge Date cannot be before Admission Date.");
+        }
+        patient.setDischarged(true);
+        patient.setDateOfDischarge(dischargeDate);
+    }
+
+    /**
+     * Adds a whole batch of new patients (e.g. transferred from another hospital) in one write.
+     * Either every patient is saved and given an ID, or none is.
+     * @param patients Patients built with validateNewPatient.
+     * @return The same patients, with their new IDs set.
+     */
+    public List<Patient> addNewPatients(List<Patient> patients) throws Exception {
+        checkBatch(patients);
+        List<Patient> saved = patientDAO.addPatients(patients);
+        for (Patient patient : saved) {
+            fireChange(PatientChangeEvent.Type.INSERTED, patient);
+        }
+        return saved;
+    }
+
+    /**
+     * Updates a whole batch of existing patients in one write.
+     * If any patient is invalid or unknown, nothing is changed.
+     */
+    public void updatePatients(List<Patient> patients) throws Exception {
+        checkBatch(patients);
+        patientDAO.updatePatients(patients);
+        for (Patient patient : patients) {
+            fireChange(PatientChangeEvent.Type.UPDATED, patient);
+        }
     }
 
     /**
@@ -93,68 +174,131 @@ public class PatientController {
             String doctor, String treatment, String history, String baseBillStr, String insuranceStr,
             boolean isDischarged, String dischargeDateStr)
             throws Exception {
+        updatePatient(patientId, name, ageStr, contact, address, admissionDateStr, doctor, treatment, history,
+                baseBillStr, insuranceStr, isDischarged, dischargeDateStr, ANY_VERSION);
+    }
+
+    /**
+     * Updates a patient the caller loaded at {@code expectedVersion}.
+     * Throws StalePatientException, and saves nothing, if the patient has been
+     * saved by someone else since then.
+     */
+    public void updatePatient(
+            String patientId, String name, String ageStr, String contact, String address, String admissionDateStr,
+            String doctor, String treatment, String history, String baseBillStr, String insuranceStr,
+            boolean isDischarged, String dischargeDateStr, long expectedVersion)
+            throws Exception {
 
         // --- 1. Get Existing Patient ---
-        Patient patient = patientDAO.getPatient(patientId);
-        if (patient == null) {
-            throw new Exception("Failed to find patient to update.");
-        }
+        Patient patient = loadForUpdate(patientId, expectedVersion, "Failed to find patient to update.");
 
-        // --- 2. Validate All Inputs ---
-        if (name == null || name.trim().isEmpty()) {
-            throw new Exception("Patient Name cannot be empty.");
-        }
-        int age = validateInteger(ageStr, 0, 150, "Age");
-        double baseBill = validateDouble(baseBillStr, 0, Double.MAX_VALUE, "Base Bill");
-        double insurance = validateDouble(insuranceStr, 0, 100, "Insurance %");
+        // --- 2. Parse All Inputs ---
+        checkName(name, "");
+        int age = validateInteger(ageStr, "Age");
+        double baseBill = validateDouble(baseBillStr, "Base Bill");
+        double insurance = validateDouble(insuranceStr, "Insurance %");
         LocalDate admissionDate = validateDate(admissionDateStr, "Admission Date", true); // Required
         LocalDate dischargeDate = null;
         
         if (isDischarged) {
             dischargeDate = validateDate(dischargeDateStr, "Discharge Date", true); // Required if checked
-            if (dischargeDate.isBefore(admissionDate)) {
-                throw new Exception("Discharge Date cannot be before Admission Date.");
-            }
         }
 
-        // --- 3. Update Patient Object ---
+        // --- 3. Update Patient Object (a copy loaded for this update) ---
+        boolean wasDischarged = patient.isDischarged();
         patient.setName(name.trim());
         patient.setAge(age);
-        patient.setContact(contact.trim());
+        patient.setContact(trimmed(contact));
         patient.setAddress(address);
         patient.setDateOfAdmission(admissionDate);
-        patient.setDoctorAssigned(doctor.trim());
-        patient.setTreatmentGiven(treatment.trim());
+        patient.setDoctorAssigned(trimmed(doctor));
+        patient.setTreatmentGiven(trimmed(treatment));
         patient.setMedicalHistory(history);
         patient.setBaseBillAmount(baseBill);
         patient.setInsuranceDiscountPercent(insurance);
-        patient.calculateFinalBill();
         patient.setDischarged(isDischarged);
         patient.setDateOfDischarge(dischargeDate);
+        checkPatient(patient, "");
+        patient.calculateFinalBill();
 
         // --- 4. Save via DAO ---
         patientDAO.updatePatient(patient);
+        fireChange(isDischarged && !wasDischarged
+                ? PatientChangeEvent.Type.DISCHARGED : PatientChangeEvent.Type.UPDATED, patient);
     }
 
     /**
      * Discharges a patient (sets date to today).
      */
     public void dischargePatient(String patientId) throws Exception {
-        Patient patient = patientDAO.getPatient(patientId);
-        if (patient == null) {
-            throw new Exception("Failed to find patient to discharge.");
-        }
-        
+        dischargePatient(patientId, ANY_VERSION);
+    }
+
+    /**
+     * Discharges a patient the caller loaded at {@code expectedVersion}.
+     */
+    public void dischargePatient(String patientId, long expectedVersion) throws Exception {
+        Patient patient = loadForUpdate(patientId, expectedVersion, "Failed to find patient to discharge.");
+
         patient.setDischarged(true);
         patient.setDateOfDischarge(LocalDate.now());
         patientDAO.updatePatient(patient);
+        fireChange(PatientChangeEvent.Type.DISCHARGED, patient);
+    }
+
+    /**
+     * Fetches the stored patient and, unless {@code expectedVersion} is ANY_VERSION,
+     * checks it is still the version the caller's edit was based on. The fetched copy
+     * carries that version into the DAO, which checks it again under its write lock,
+     * so a save landing between this read and the write is caught too.
+     */
+    private Patient loadForUpdate(String patientId, long expectedVersion, String notFoundMessage) throws Exception {
+        Patient patient = patientDAO.getPatient(patientId);
+        if (patient == null) {
+            throw new Exception(notFoundMessage);
+        }
+        if (expectedVersion != ANY_VERSION) {
+            if (patient.getVersion() != expectedVersion) {
+                throw new StalePatientException(patientId, patient.getVersion(), expectedVersion);
+            }
+        }
+        return patient;
+    }
+
+    // --- Change Events ---
+
+    public void addPatientChangeListener(PatientChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removePatientChangeListener(PatientChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Tells listeners about a change that has already been saved.
+     * A failing listener is logged, not rethrown, since the save itself succeeded.
+     */
+    private void fireChange(PatientChangeEvent.Type type, Patient patient) {
+        if (changeListeners.isEmpty()) {
+            return;
+        }
+        PatientChangeEvent event = new PatientChangeEvent(type, patient);
+        for (PatientChangeListener listener : changeListeners) {
+            try {
+                listener.patientChanged(event);
+            } catch (RuntimeException e) {
+                System.err.println("Patient change listener failed: " + e.getMessage());
+            }
+        }
     }
     
     /**
      * --- NEW: Print Bill Logic ---
      * This logic now lives in the controller.
-     * It creates a formatted .txt file for the given patient.
-     * @return The absolute path to the saved bill file.
+     * Renders the patient's bill and appends it to the bill archive
+     * (instead of writing one more Bill_*.txt file).
+     * @return The text of the bill.
      */
     public String printBill(String patientId) throws Exception {
         Patient patient = getPatient(patientId);
@@ -162,41 +306,71 @@ public class PatientController {
             throw new Exception("Patient not found.");
         }
 
-        String billFileName = "Bill_" + patient.getPatientId() + "_" + patient.getName().replace(" ", "_") + ".txt";
-        Path billPath = dataDir.resolve(billFileName);
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(billPath.toFile()))) {
-            writer.write("****************************************"); writer.newLine();
-            writer.write("         NEWLIFE HOSPITAL BILL          "); writer.newLine();
-            writer.write("****************************************"); writer.newLine();
-            writer.newLine();
-            writer.write("Patient ID:    " + patient.getPatientId()); writer.newLine();
-            writer.write("Patient Name:  " + patient.getName()); writer.newLine();
-            writer.write("Doctor:        " + patient.getDoctorAssigned()); writer.newLine();
-            writer.newLine();
-            writer.write("----------------------------------------"); writer.newLine();
-            writer.write("          BILLING DETAILS               "); writer.newLine();
-            writer.write("----------------------------------------"); writer.newLine();
-            writer.newLine();
-            writer.write(String.format("%-25s: %s%n", "Base Bill Amount", formatCurrency(patient.getBaseBillAmount())));
-            writer.write(String.format("%-25s: %.1f %%", "Insurance Discount", patient.getInsuranceDiscountPercent())); writer.newLine();
-            writer.newLine();
-            writer.write("----------------------------------------"); writer.newLine();
-            writer.write(String.format("%-25s: %s%n", "TOTAL FINAL BILL", formatCurrency(patient.getFinalBillAmount())));
-            writer.write("----------------------------------------"); writer.newLine();
-            writer.newLine();
-            writer.write("Status: " + (patient.isDischarged() ? "Discharged" : "Admitted")); writer.newLine();
-            if (patient.isDischarged() && patient.getDateOfDischarge() != null) {
-                writer.write("Discharge Date: " + formatDate(patient.getDateOfDischarge())); writer.newLine();
+        String bill = BillTemplate.DEFAULT.render(patient);
+        getBillArchive().archive(patient.getPatientId(), bill);
+        return bill;
+    }
+
+    /**
+     * The text of the patient's most recently printed bill.
+     */
+    public String reprintBill(String patientId) throws Exception {
+        BillArchive archive = getBillArchive();
+        BillArchive.BillEntry entry = archive.getLatestBill(patientId);
+        if (entry == null) {
+            throw new Exception("No bill has been printed for this patient yet.");
+        }
+        return archive.readBill(entry);
+    }
+
+    /**
+     * Saves the patient's most recently printed bill as its own text file.
+     * @return The absolute path of the exported file.
+     */
+    public String exportBill(String patientId, Path target) throws Exception {
+        BillArchive archive = getBillArchive();
+        BillArchive.BillEntry entry = archive.getLatestBill(patientId);
+        if (entry == null) {
+            throw new Exception("No bill has been printed for this patient yet.");
+        }
+        return archive.exportBill(entry, target).toAbsolutePath().toString();
+    }
+
+    /**
+     * Moves old Bill_*.txt files from the data folder into the bill archive.
+     * @return How many files were moved.
+     */
+    public int migrateBillFiles() throws Exception {
+        return getBillArchive().migrateBillFiles(dataDir);
+    }
+
+    /**
+     * The bill archive in the data folder, opened on first use.
+     * With -Dhospital.bills.migrate=true, old Bill_*.txt files are moved into it then.
+     */
+    public synchronized BillArchive getBillArchive() throws Exception {
+        if (billArchive == null) {
+            billArchive = new BillArchive(dataDir);
+            if (Boolean.getBoolean(BILL_MIGRATION_PROPERTY)) {
+                int moved = billArchive.migrateBillFiles(dataDir);
+                if (moved > 0) {
+                    System.out.println("Moved " + moved + " old bill file(s) into " + billArchive.getArchiveFile());
+                }
             }
-            writer.newLine();
-            writer.write("Thank you and get well soon!"); writer.newLine();
-            
-        } catch (IOException e) {
-            throw new Exception("Could not write bill file: " + e.getMessage());
         }
-        
-        return billPath.toAbsolutePath().toString();
+        return billArchive;
+    }
+
+    /**
+     * Archives bills for every patient matching the query (e.g. discharged this month),
+     * rendering in parallel and appending them to the archive in large batches.
+     */
+    public BillingRunReport printBills(PatientQuery query) throws Exception {
+        return printBills(query, BillTemplate.DEFAULT);
+    }
+
+    public BillingRunReport printBills(PatientQuery query, BillTemplate template) throws Exception {
+        return new BulkBillingRun(getBillArchive(), template).run(patientDAO.findPatients(query));
     }
 
 
@@ -210,37 +384,238 @@ public class PatientController {
         return patientDAO.getAllPatients();
     }
 
+    /**
+     * Finds patients by doctor, status and/or admission date range, e.g. a ward-round list:
+     *   findPatients(new PatientQuery().doctor("Dr. Mehta").admittedOnly())
+     * Results are ordered by admission date, then ID.
+     */
+    public List<Patient> findPatients(PatientQuery query) throws Exception {
+        return patientDAO.findPatients(query);
+    }
+
+    /**
+     * The IDs of the patients findPatients(query) would return, in the same order,
+     * answered from the indexes where the DAO has them.
+     */
+    public List<String> findPatientIds(PatientQuery query) throws Exception {
+        return patientDAO.findPatientIds(query);
+    }
+
+    /**
+     * Returns the IDs of patients whose ID or name (any word of it) starts with the text.
+     * Powers the live filter; the text is plain text, not a regex.
+     */
+    public Set<String> searchPatientIds(String text) throws Exception {
+        return patientDAO.searchPatientIds(text);
+    }
+
+    /**
+     * Like searchPatientIds(text), but stops with a CancellationException once
+     * {@code cancelled} returns true. Used by the live search's background thread.
+     */
+    public Set<String> searchPatientIds(String text, BooleanSupplier cancelled) throws Exception {
+        return patientDAO.searchPatientIds(text, cancelled);
+    }
+
+    /**
+     * Puts the given patient IDs into a page order (null sortKey = storage order).
+     * IDs of patients that no longer exist are left out.
+     */
+    public List<String> orderPatientIds(Collection<String> patientIds, PatientSortKey sortKey, boolean descending,
+                                        BooleanSupplier cancelled) throws Exception {
+        return patientDAO.orderPatientIds(patientIds, sortKey, descending, cancelled);
+    }
+
+    /**
+     * Reads the given patients, in the order given. A patient that no longer
+     * exists comes back as null, so the rest keep their places.
+     */
+    public List<Patient> getPatients(List<String> patientIds) throws Exception {
+        List<Patient> patients = new ArrayList<>(patientIds.size());
+        for (String id : patientIds) {
+            patients.add(patientDAO.getPatient(id));
+        }
+        return patients;
+    }
+
+    /**
+     * Returns one page of patients (e.g. the ~40 rows a clerk can see).
+     * @param sortKey The order to page through, or null for storage order.
+     */
+    public List<Patient> getPatientPage(int offset, int limit, PatientSortKey sortKey) throws Exception {
+        return patientDAO.getPatients(offset, limit, sortKey);
+    }
+
+    /**
+     * Returns one page of patients, optionally in descending order.
+     */
+    public List<Patient> getPatientPage(int offset, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        return patientDAO.getPatients(offset, limit, sortKey, descending);
+    }
+
+    /**
+     * Returns the page that follows a patient (keyset paging): the next "limit"
+     * patients after "after" in the given order, or the first page if it is null.
+     */
+    public List<Patient> getPatientPageAfter(Patient after, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        return patientDAO.getPatientsAfter(after, limit, sortKey, descending);
+    }
+
+    /**
+     * Where a stored patient sits in the given page order (-1 if it is not stored).
+     */
+    public int getPatientPosition(String patientId, PatientSortKey sortKey, boolean descending) throws Exception {
+        return patientDAO.positionOf(patientId, sortKey, descending);
+    }
+
+    /**
+     * Streams every patient lazily. Close the stream (try-with-resources) when done.
+     */
+    public Stream<Patient> streamPatients() throws Exception {
+        return patientDAO.streamPatients();
+    }
+
+    public int countPatients() throws Exception {
+        return patientDAO.countPatients();
+    }
+
     public double getTotalCollectedBills() throws Exception {
-        return getAllPatients().stream()
-                .filter(Patient::isDischarged)
-                .mapToDouble(Patient::getFinalBillAmount)
-                .sum();
+        return BillingAggregates.fromPaise(getBillingAggregates().getCollectedPaise());
+    }
+
+    /**
+     * Total final bills of patients who are still admitted.
+     */
+    public double getTotalOutstandingBills() throws Exception {
+        return BillingAggregates.fromPaise(getBillingAggregates().getOutstandingPaise());
+    }
+
+    /**
+     * Revenue totals (collected/outstanding, per doctor, per day).
+     * With the indexed DAO these are kept up to date on every write, so reading them is O(1);
+     * otherwise they are summed with one pass over storage.
+     */
+    public BillingAggregates getBillingAggregates() throws Exception {
+        if (patientDAO instanceof IndexedPatientDAO) {
+            return ((IndexedPatientDAO) patientDAO).getBillingAggregates();
+        }
+        try (Stream<Patient> patients = patientDAO.streamPatients()) {
+            return BillingAggregates.of(patients);
+        }
     }
 
     // --- Validation & Formatting ---
 
-    private int validateInteger(String input, int min, int max, String fieldName) throws Exception {
-        try {
-            int value = Integer.parseInt(input.trim());
-            if (value < min || value > max) {
-                throw new Exception(fieldName + " must be between " + min + " and " + max + ".");
+    /**
+     * Checks every patient of a batch before any of them is touched, then
+     * recalculates their final bills. A bad row leaves the whole batch unchanged.
+     */
+    private void checkBatch(List<Patient> patients) throws Exception {
+        for (int i = 0; i < patients.size(); i++) {
+            Patient p = patients.get(i);
+            if (p == null) {
+                throw new Exception("Row " + (i + 1) + ": Patient is missing.");
             }
-            return value;
+            checkPatient(p, "Row " + (i + 1) + ": ");
+        }
+        for (Patient p : patients) {
+            p.calculateFinalBill();
+        }
+    }
+
+    /**
+     * The rules every patient must pass before it is saved, whether it came
+     * from the add/update forms, a batch, an import or the HTTP service.
+     * Only checks; never changes the patient.
+     * @param prefix Put in front of each message, e.g. "Row 3: ".
+     */
+    private static void checkPatient(Patient p, String prefix) throws Exception {
+        checkName(p.getName(), prefix);
+        if (p.getAge() < 0 || p.getAge() > 150) {
+            throw new Exception(prefix + "Age must be between 0 and 150.");
+        }
+        checkPresent(p.getContact(), "Contact", prefix);
+        checkPresent(p.getAddress(), "Address", prefix);
+        checkPresent(p.getMedicalHistory(), "Medical History", prefix);
+        checkPresent(p.getDoctorAssigned(), "Doctor", prefix);
+        checkPresent(p.getTreatmentGiven(), "Treatment", prefix);
+        checkRange(p.getBaseBillAmount(), 0, Double.MAX_VALUE, "Base Bill", prefix);
+        checkRange(p.getInsuranceDiscountPercent(), 0, 100, "Insurance %", prefix);
+        if (p.getDateOfAdmission() == null) {
+            throw new Exception(prefix + "Admission Date cannot be empty. Use YYYY-MM-DD format.");
+        }
+        if (p.isDischarged()) {
+            if (p.getDateOfDischarge() == null) {
+                throw new Exception(prefix + "Discharge Date cannot be empty. Use YYYY-MM-DD format.");
+            }
+            if (p.getDateOfDischarge().isBefore(p.getDateOfAdmission())) {
+                throw new Exception(prefix + "Discharge Date cannot be before Admission Date.");
+            }
+        }
+    }
+
+    private static void checkName(String name, String prefix) throws Exception {
+        if (name == null || name.trim().isEmpty()) {
+            throw new Exception(prefix + "Patient Name cannot be empty.");
+        }
+    }
+
+    /**
+     * Text fields may be empty, but not missing (the storage formats cannot write null text).
+     */
+    private static void checkPresent(String value, String fieldName, String prefix) throws Exception {
+        if (value == null) {
+            throw new Exception(prefix + fieldName + " is missing.");
+        }
+    }
+
+    /**
+     * Rejects NaN and infinities as well as values outside [min, max].
+     */
+    private static void checkRange(double value, double min, double max, String fieldName, String prefix)
+            throws Exception {
+        if (!Double.isFinite(value)) {
+            throw new Exception(prefix + fieldName + " must be a valid number (e.g., 100.0 or 50).");
+        }
+        if (value < min || value > max) {
+            throw new Exception(prefix + fieldName + " must be between " + min + " and " + max + ".");
+        }
+    }
+
+    private static String trimmed(String text) {
+        return (text != null) ? text.trim() : null;
+    }
+
+    /**
+     * Parses a whole number; the allowed range is checked by checkPatient.
+     */
+    private int validateInteger(String input, String fieldName) throws Exception {
+        if (input == null) {
+            throw new Exception(fieldName + " must be a valid whole number.");
+        }
+        try {
+            return Integer.parseInt(input.trim());
         } catch (NumberFormatException e) {
             throw new Exception(fieldName + " must be a valid whole number.");
         }
     }
 
-    private double validateDouble(String input, double min, double max, String fieldName) throws Exception {
+    /**
+     * Parses a finite number; the allowed range is checked by checkPatient.
+     */
+    private double validateDouble(String input, String fieldName) throws Exception {
+        double value;
         try {
-            double value = Double.parseDouble(input.trim());
-            if (value < min || value > max) {
-                throw new Exception(fieldName + " must be between " + min + " and " + max + ".");
-            }
-            return value;
+            value = (input != null) ? Double.parseDouble(input.trim()) : Double.NaN;
         } catch (NumberFormatException e) {
+            value = Double.NaN;
+        }
+        if (!Double.isFinite(value)) { // Also rejects "NaN" and "Infinity" typed in
             throw new Exception(fieldName + " must be a valid number (e.g., 100.0 or 50).");
         }
+        return value;
     }
 
     private LocalDate validateDate(String dateStr, String fieldName, boolean isRequired) throws Exception {
@@ -0,0 +1,58 @@
+package com.hospital.controller;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TaskExecutors.java
+ * Executors for short, I/O-bound tasks (saving a patient, printing a bill,
+ * serving a request): one thread per task, nothing queued behind a busy pool.
+ *
+ * On a JDK with virtual threads (21+) each task gets a virtual thread.
+ * The app is built for Java 17, so the factory method is looked up
+ * reflectively; on older JDKs a cached pool of daemon threads is used instead,
+ * which behaves the same apart from the cost of each thread.
+ */
+public final class TaskExecutors {
+
+    private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+    private TaskExecutors() {}
+
+    /**
+     * A new executor that starts a thread per task.
+     * @param threadName used for the fallback platform threads (numbered).
+     */
+    public static ExecutorService newPerTaskExecutor(String threadName) {
+        if (VIRTUAL_EXECUTOR_FACTORY != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Could not create a virtual-thread executor, using platform threads: " + e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, threadName + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * True if newPerTaskExecutor() gives virtual threads on this JDK.
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL_EXECUTOR_FACTORY != null;
+    }
+
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null; // Before Java 21
+        }
+    }
+}
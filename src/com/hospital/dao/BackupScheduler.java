@@ -0,0 +1,301 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * BackupScheduler.java
+ * Runs the .dat backup on a background thread instead of on every save.
+ *
+ * Each save only hands over the latest snapshot with changed(). Bursts of
+ * changes are coalesced: the backup runs once the interval has passed since
+ * the first unsaved change, or immediately once maxPendingChanges is reached,
+ * and always writes only the newest snapshot. A DAO that would have to copy
+ * its whole state to hand over a snapshot can pass a Supplier instead; it is
+ * called once per backup, on the backup thread.
+ *
+ * Every backup, including the last one when the app exits, runs on the
+ * single backup thread, so two writes of patients.dat never overlap. A DAO
+ * whose folder can be shared by several processes passes a WriteGuard, so
+ * the backup is written under its storage lock and skipped if another
+ * process has saved newer data since (that process backs it up instead).
+ *
+ * Operators can check getBackupLagMillis() and getLastSuccessTime() to see
+ * how far behind the backup is.
+ */
+public class BackupScheduler {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 30_000;
+    public static final int DEFAULT_MAX_PENDING_CHANGES = 50;
+    private static final long EXIT_BACKUP_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Lets the DAO that owns the data hold its storage lock while a backup is written.
+     */
+    public interface WriteGuard {
+        /**
+         * Takes the storage lock.
+         * @return false if the data on disk is newer than the last snapshot handed
+         *         to changed(); nothing is held then and the backup is skipped.
+         */
+        boolean lockIfCurrent() throws Exception;
+
+        void unlock();
+    }
+
+    private final PatientDatBackup backup;
+    private final long intervalMillis;
+    private final int maxPendingChanges;
+    private final ScheduledExecutorService executor;
+    private final WriteGuard guard; // null if only this process writes the data
+    private final Thread exitHook;
+
+    // --- State (guarded by "this") ---
+    private Supplier<List<Patient>> latestSnapshot = null; // Newest snapshot not yet taken by a backup run
+    private int pendingChanges = 0;              // Changes since the last backup run started
+    private long pendingSince = 0;               // When the oldest pending change happened (0 = none)
+    private long inFlightSince = 0;              // Oldest change covered by the run in progress (0 = none)
+    private ScheduledFuture<?> scheduledRun = null;
+
+    // --- Metrics ---
+    private volatile Instant lastSuccessTime = null;
+    private volatile String lastError = null;
+    private long backupsWritten = 0;
+    private long changesCoalesced = 0;
+
+    /**
+     * Creates a scheduler configured from system properties:
+     * hospital.backup.intervalMs and hospital.backup.maxChanges.
+     */
+    public BackupScheduler(PatientDatBackup backup) {
+        this(backup, null);
+    }
+
+    /**
+     * Like BackupScheduler(backup), but each backup is written while holding the guard.
+     */
+    public BackupScheduler(PatientDatBackup backup, WriteGuard guard) {
+        this(backup, guard,
+             Long.getLong("hospital.backup.intervalMs", DEFAULT_INTERVAL_MILLIS),
+             Integer.getInteger("hospital.backup.maxChanges", DEFAULT_MAX_PENDING_CHANGES));
+    }
+
+    public BackupScheduler(PatientDatBackup backup, WriteGuard guard, long intervalMillis, int maxPendingChanges) {
+        this.backup = backup;
+        this.guard = guard;
+        this.intervalMillis = intervalMillis;
+        this.maxPendingChanges = Math.max(1, maxPendingChanges);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "patient-backup");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Don't lose the last few changes when the app closes. The hook hands the
+        // final run to the backup thread, so it never races a run already in progress.
+        this.exitHook = new Thread(this::finalBackup, "patient-backup-on-exit");
+        Runtime.getRuntime().addShutdownHook(exitHook);
+    }
+
+    /**
+     * Records that the data changed. The snapshot must not be modified afterwards.
+     * @param snapshot The complete, current list of patients.
+     */
+    public void changed(List<Patient> snapshot) {
+        changed(() -> snapshot);
+    }
+
+    /**
+     * Records that the data changed. The snapshot is only taken when the backup runs,
+     * so bursts of changes cost one copy of the data, not one per change.
+     * @param snapshotSource Returns the complete, current list of patients; called
+     *        on the backup thread without this scheduler's lock held.
+     */
+    public synchronized void changed(Supplier<List<Patient>> snapshotSource) {
+        latestSnapshot = snapshotSource;
+        pendingChanges++;
+        if (pendingSince == 0) {
+            pendingSince = System.currentTimeMillis();
+        }
+
+        if (pendingChanges >= maxPendingChanges) {
+            // Enough changes piled up: back up now instead of waiting for the timer
+            if (scheduledRun != null) {
+                scheduledRun.cancel(false);
+            }
+            scheduledRun = executor.schedule(this::runBackup, 0, TimeUnit.MILLISECONDS);
+        } else if (scheduledRun == null) {
+            scheduledRun = executor.schedule(this::runBackup, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes any pending snapshot now and waits for it to finish.
+     */
+    public void flush() throws Exception {
+        if (executor.isShutdown()) {
+            return; // shutdown() already wrote the last backup
+        }
+        Future<?> run = executor.submit(this::runBackup);
+        run.get();
+    }
+
+    /**
+     * Writes any pending snapshot, stops the backup thread and removes the exit hook.
+     * Called when the owning DAO is closed; changed() must not be called afterwards.
+     */
+    public void shutdown() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(exitHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already exiting; the hook is doing the final backup
+            return;
+        }
+        finalBackup();
+    }
+
+    /**
+     * Runs one last backup on the backup thread, waits for it, then stops the thread.
+     */
+    private void finalBackup() {
+        synchronized (this) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            if (scheduledRun != null) {
+                scheduledRun.cancel(false);
+                scheduledRun = null;
+            }
+        }
+        try {
+            executor.submit(this::runBackup).get(EXIT_BACKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            System.err.println("Error: Final .dat backup did not complete: " + e.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Takes the newest snapshot and writes it. Always runs on the backup thread,
+     * never on the caller's save path.
+     */
+    private void runBackup() {
+        Supplier<List<Patient>> snapshotSource;
+        int changes;
+        synchronized (this) {
+            scheduledRun = null;
+            if (latestSnapshot == null) {
+                return; // Nothing new since the last run
+            }
+            snapshotSource = latestSnapshot;
+            changes = pendingChanges;
+            inFlightSince = pendingSince;
+            latestSnapshot = null;
+            pendingChanges = 0;
+            pendingSince = 0;
+        }
+
+        boolean saved = false;
+        boolean skipped = false;
+        List<Patient> snapshot = null;
+        try {
+            snapshot = snapshotSource.get();
+        } catch (RuntimeException e) {
+            System.err.println("Error: Could not take a snapshot for the .dat backup: " + e.getMessage());
+        }
+        // A snapshot that could not be taken counts as a failed write below, so it is retried
+        if (snapshot != null && guard == null) {
+            saved = backup.saveBackup(snapshot);
+        } else if (snapshot != null) {
+            boolean locked = false;
+            try {
+                locked = guard.lockIfCurrent();
+                skipped = !locked;
+            } catch (Exception e) {
+                System.err.println("Error: Could not lock patient data for the .dat backup: " + e.getMessage());
+            }
+            if (locked) {
+                try {
+                    saved = backup.saveBackup(snapshot);
+                } finally {
+                    guard.unlock();
+                }
+            }
+        }
+
+        synchronized (this) {
+            if (skipped) {
+                // Another process saved newer data; its own backup covers it
+                lastError = null;
+            } else if (saved) {
+                lastSuccessTime = Instant.now();
+                lastError = null;
+                backupsWritten++;
+                changesCoalesced += changes - 1;
+            } else {
+                lastError = "Backup write failed at " + Instant.now();
+                // Put the changes back (unless newer ones arrived) and retry later
+                if (latestSnapshot == null) {
+                    latestSnapshot = snapshotSource;
+                }
+                pendingChanges += changes;
+                pendingSince = (pendingSince == 0) ? inFlightSince : Math.min(pendingSince, inFlightSince);
+                if (scheduledRun == null && !executor.isShutdown()) {
+                    scheduledRun = executor.schedule(this::runBackup, intervalMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            inFlightSince = 0;
+        }
+    }
+
+    // --- Monitoring ---
+
+    /**
+     * How long the oldest change not yet in patients.dat has been waiting (0 if up to date).
+     */
+    public synchronized long getBackupLagMillis() {
+        long oldest = (inFlightSince == 0) ? pendingSince
+                    : (pendingSince == 0) ? inFlightSince : Math.min(pendingSince, inFlightSince);
+        return (oldest == 0) ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * Number of changes made since the last backup run started.
+     */
+    public synchronized int getPendingChanges() {
+        return pendingChanges;
+    }
+
+    /**
+     * When a backup last completed successfully, or null if none has yet.
+     */
+    public Instant getLastSuccessTime() {
+        return lastSuccessTime;
+    }
+
+    /**
+     * A description of the last failed backup, or null if the last one succeeded.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    public synchronized long getBackupsWritten() {
+        return backupsWritten;
+    }
+
+    /**
+     * Number of changes that were folded into another change's backup instead of getting their own.
+     */
+    public synchronized long getChangesCoalesced() {
+        return changesCoalesced;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * BillingAggregates.java
+ * Running revenue totals, updated as patients are written instead of summed
+ * over the whole patient list on every read:
+ *   collected    - final bills of discharged patients
+ *   outstanding  - final bills of patients still admitted
+ *   per doctor   - collected and outstanding, by doctor
+ *   per day      - collected, by discharge date
+ *
+ * Amounts are kept as whole paise in longs, so adding and removing the
+ * same bill over and over never drifts the way a double sum would.
+ * Each patient's contribution is rounded to paise once, in toPaise().
+ *
+ * IndexedPatientDAO keeps one of these in step with its indexes.
+ */
+public class BillingAggregates {
+
+    private long collectedPaise = 0;
+    private long outstandingPaise = 0;
+    private int dischargedCount = 0;
+    private int admittedCount = 0;
+
+    // Keyed by PatientQuery.doctorKey, with the spelling last seen for display
+    private final Map<String, long[]> byDoctor = new HashMap<>(); // {collected, outstanding}
+    private final Map<String, String> doctorNames = new HashMap<>();
+    private final TreeMap<LocalDate, Long> collectedByDay = new TreeMap<>();
+
+    /**
+     * A patient's final bill in whole paise (rounded half up).
+     */
+    public static long toPaise(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    public static double fromPaise(long paise) {
+        return paise / 100.0;
+    }
+
+    /**
+     * Builds totals with one pass over the patients, for storage without indexes.
+     */
+    public static BillingAggregates of(Stream<Patient> patients) {
+        BillingAggregates billing = new BillingAggregates();
+        patients.forEach(p -> billing.add(p.getDoctorAssigned(), p.isDischarged(), p.getDateOfDischarge(),
+                toPaise(p.getFinalBillAmount())));
+        return billing;
+    }
+
+    // --- Updates (called by IndexedPatientDAO) ---
+
+    /**
+     * Forgets every total, before the indexes are rebuilt from storage.
+     */
+    synchronized void clear() {
+        collectedPaise = 0;
+        outstandingPaise = 0;
+        dischargedCount = 0;
+        admittedCount = 0;
+        byDoctor.clear();
+        doctorNames.clear();
+        collectedByDay.clear();
+    }
+
+    synchronized void add(String doctor, boolean discharged, LocalDate dischargeDate, long billPaise) {
+        apply(doctor, discharged, dischargeDate, billPaise, 1);
+    }
+
+    synchronized void remove(String doctor, boolean discharged, LocalDate dischargeDate, long billPaise) {
+        apply(doctor, discharged, dischargeDate, billPaise, -1);
+    }
+
+    private void apply(String doctor, boolean discharged, LocalDate dischargeDate, long billPaise, int sign) {
+        long paise = sign * billPaise;
+        String doctorKey = PatientQuery.doctorKey(doctor);
+        long[] doctorTotals = byDoctor.computeIfAbsent(doctorKey, k -> new long[2]);
+        if (sign > 0 && doctor != null) {
+            doctorNames.put(doctorKey, doctor.trim());
+        }
+
+        if (discharged) {
+            collectedPaise += paise;
+            dischargedCount += sign;
+            doctorTotals[0] += paise;
+            if (dischargeDate != null) {
+                long dayTotal = collectedByDay.getOrDefault(dischargeDate, 0L) + paise;
+                if (dayTotal == 0 && sign < 0) {
+                    collectedByDay.remove(dischargeDate);
+                } else {
+                    collectedByDay.put(dischargeDate, dayTotal);
+                }
+            }
+        } else {
+            outstandingPaise += paise;
+            admittedCount += sign;
+            doctorTotals[1] += paise;
+        }
+    }
+
+    // --- Reads: O(1) unless noted ---
+
+    public synchronized long getCollectedPaise() {
+        return collectedPaise;
+    }
+
+    public synchronized long getOutstandingPaise() {
+        return outstandingPaise;
+    }
+
+    public synchronized int getDischargedCount() {
+        return dischargedCount;
+    }
+
+    public synchronized int getAdmittedCount() {
+        return admittedCount;
+    }
+
+    public synchronized long getCollectedPaise(String doctor) {
+        long[] totals = byDoctor.get(PatientQuery.doctorKey(doctor));
+        return (totals != null) ? totals[0] : 0;
+    }
+
+    public synchronized long getOutstandingPaise(String doctor) {
+        long[] totals = byDoctor.get(PatientQuery.doctorKey(doctor));
+        return (totals != null) ? totals[1] : 0;
+    }
+
+    public synchronized long getCollectedPaiseOn(LocalDate day) {
+        return collectedByDay.getOrDefault(day, 0L);
+    }
+
+    /**
+     * Collected between two discharge dates (inclusive). O(days in range).
+     */
+    public synchronized long getCollectedPaiseBetween(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return 0;
+        }
+        long total = 0;
+        for (long dayTotal : collectedByDay.subMap(from, true, to, true).values()) {
+            total += dayTotal;
+        }
+        return total;
+    }
+
+    /**
+     * Collected per doctor (display name -> paise). O(doctors).
+     */
+    public synchronized Map<String, Long> getCollectedPaiseByDoctor() {
+        Map<String, Long> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, long[]> entry : byDoctor.entrySet()) {
+            if (entry.getValue()[0] != 0) {
+                result.put(doctorNames.getOrDefault(entry.getKey(), entry.getKey()), entry.getValue()[0]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collected per discharge date (date -> paise), in date order. O(days).
+     */
+    public synchronized Map<LocalDate, Long> getCollectedPaiseByDay() {
+        return new TreeMap<>(collectedByDay);
+    }
+}
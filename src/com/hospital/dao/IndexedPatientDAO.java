@@ -0,0 +1,611 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * IndexedPatientDAO.java
+ * Wraps any PatientDAO and keeps secondary indexes in step with its writes:
+ *   doctor      -> patient IDs   (hash, case-insensitive)
+ *   discharged  -> patient IDs   (admitted / discharged sets)
+ *   admitted on -> patient IDs   (sorted, for date ranges)
+ *   name / ID prefix -> patient IDs (PatientPrefixIndex, for the live filter)
+ * plus running billing totals (BillingAggregates).
+ *
+ * findPatients() picks the smallest matching index, filters the rest using
+ * the indexed values, and only reads the final matches from storage.
+ *
+ * Paging (getPatients / getPatientsAfter) is served from a sorted list of
+ * patient IDs per PatientSortKey, plus the storage order. A list is built
+ * the first time its order is asked for and then kept sorted on every write
+ * (binary search + one array shift), so a page costs O(limit) by offset or
+ * O(log n + limit) by keyset cursor, and only the rows on it are read from
+ * storage.
+ *
+ * The indexes are built once from the wrapped DAO and then updated on every
+ * add/update made through this object. Before answering from the indexes,
+ * the wrapped DAO is asked whether its data was changed from outside
+ * (getExternalChangeCount, e.g. patients.txt saved by another workstation);
+ * if so, the indexes and billing totals are rebuilt from storage.
+ *
+ * Index lookups share a read lock, so queries from the UI and background
+ * jobs run side by side; a write holds the write lock across the storage
+ * write and the index update, so the two always agree.
+ */
+public class IndexedPatientDAO implements PatientDAO {
+
+    /**
+     * The indexed values of one patient (so filtering never has to read storage).
+     */
+    private static final class IndexEntry {
+        final String id;
+        final String name;
+        final String doctorKey;
+        final boolean discharged;
+        final LocalDate admitted;
+        final String doctor;
+        final LocalDate dischargeDate;
+        final long billPaise;
+
+        IndexEntry(Patient p) {
+            this.id = p.getPatientId();
+            this.name = p.getName();
+            this.doctorKey = PatientQuery.doctorKey(p.getDoctorAssigned());
+            this.discharged = p.isDischarged();
+            this.admitted = p.getDateOfAdmission();
+            this.doctor = p.getDoctorAssigned();
+            this.dischargeDate = p.getDateOfDischarge();
+            this.billPaise = BillingAggregates.toPaise(p.getFinalBillAmount());
+        }
+    }
+
+    // The same orders as PatientSortKey, over the indexed values
+    private static final Map<PatientSortKey, Comparator<IndexEntry>> ENTRY_ORDERS = new EnumMap<>(PatientSortKey.class);
+    static {
+        Comparator<IndexEntry> byId = Comparator.comparing(e -> e.id, PatientSortKey.ID_ORDER);
+        ENTRY_ORDERS.put(PatientSortKey.PATIENT_ID, byId);
+        ENTRY_ORDERS.put(PatientSortKey.NAME, Comparator.comparing((IndexEntry e) -> e.name,
+                Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)).thenComparing(byId));
+        ENTRY_ORDERS.put(PatientSortKey.ADMISSION_DATE, Comparator.comparing((IndexEntry e) -> e.admitted,
+                Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder())).thenComparing(byId));
+        ENTRY_ORDERS.put(PatientSortKey.DOCTOR, Comparator.comparing((IndexEntry e) -> e.doctor,
+                Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)).thenComparing(byId));
+    }
+
+    // orderPatientIds walks the whole sorted list once the set is at least 1/WALK_FACTOR of it
+    private static final int WALK_FACTOR = 16;
+
+    private final PatientDAO delegate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // --- Indexes (guarded by "lock") ---
+    private final Map<String, IndexEntry> entries = new HashMap<>();
+    private final Map<String, Set<String>> byDoctor = new HashMap<>();
+    private final Set<String> admittedIds = new HashSet<>();
+    private final Set<String> dischargedIds = new HashSet<>();
+    private final TreeMap<LocalDate, Set<String>> byAdmissionDate = new TreeMap<>();
+    private final PatientPrefixIndex prefixIndex = new PatientPrefixIndex();
+    private final BillingAggregates billing = new BillingAggregates();
+    private final List<String> storageOrder = new ArrayList<>();            // IDs in the order first indexed
+    private final Map<String, Integer> storagePosition = new HashMap<>();   // ID -> position in storageOrder
+    private final Map<PatientSortKey, List<String>> sortedIds = new EnumMap<>(PatientSortKey.class); // Built on first use
+
+    private volatile long seenExternalChanges; // The delegate's external change count the indexes reflect
+
+    public IndexedPatientDAO(PatientDAO delegate) throws Exception {
+        this.delegate = delegate;
+        this.seenExternalChanges = delegate.getExternalChangeCount(); // Before reading, so no change is missed
+        try (Stream<Patient> patients = delegate.streamPatients()) {
+            patients.forEach(this::index);
+        }
+    }
+
+    /**
+     * The storage engine underneath the indexes.
+     */
+    public PatientDAO getDelegate() {
+        return delegate;
+    }
+
+    // --- Writes: delegate first, then index what was stored ---
+
+    @Override
+    public Patient addPatient(Patient patient) throws Exception {
+        lock.writeLock().lock();
+        try {
+            Patient added = delegate.addPatient(patient);
+            index(added);
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePatient(Patient patient) throws Exception {
+        lock.writeLock().lock();
+        try {
+            delegate.updatePatient(patient);
+            index(patient);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Patient> addPatients(List<Patient> patients) throws Exception {
+        lock.writeLock().lock();
+        try {
+            List<Patient> added = delegate.addPatients(patients);
+            for (Patient patient : added) {
+                index(patient);
+            }
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePatients(List<Patient> patients) throws Exception {
+        lock.writeLock().lock();
+        try {
+            delegate.updatePatients(patients);
+            for (Patient patient : patients) {
+                index(patient);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Reads: passed straight through ---
+
+    @Override
+    public Patient getPatient(String patientId) throws Exception {
+        return delegate.getPatient(patientId);
+    }
+
+    @Override
+    public List<Patient> getAllPatients() throws Exception {
+        return delegate.getAllPatients();
+    }
+
+    @Override
+    public Stream<Patient> streamPatients() throws Exception {
+        return delegate.streamPatients();
+    }
+
+    @Override
+    public int countPatients() throws Exception {
+        refreshIfChanged();
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Paging: sorted ID lists, then only the page's rows from storage ---
+
+    @Override
+    public List<Patient> getPatients(int offset, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        if (offset < 0 || limit < 0) {
+            throw new Exception("Page offset and limit cannot be negative.");
+        }
+        refreshIfChanged();
+        return readPatients(pageIds(offset, limit, sortKey, descending));
+    }
+
+    @Override
+    public List<Patient> getPatientsAfter(Patient after, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        if (limit < 0) {
+            throw new Exception("Page limit cannot be negative.");
+        }
+        if (after == null) {
+            return getPatients(0, limit, sortKey, descending);
+        }
+        refreshIfChanged();
+        lockOrder(sortKey);
+        try {
+            List<String> ids = (sortKey != null) ? sortedIds.get(sortKey) : storageOrder;
+            int start;
+            if (sortKey == null) {
+                // Storage order has no sort value; the cursor is the patient's position
+                Integer position = storagePosition.get(after.getPatientId());
+                if (position == null) {
+                    throw new Exception("Unknown page cursor: patient " + after.getPatientId() + ".");
+                }
+                start = descending ? position - 1 : position + 1;
+            } else {
+                Comparator<IndexEntry> order = ENTRY_ORDERS.get(sortKey);
+                IndexEntry probe = new IndexEntry(after);
+                start = lowerBound(ids, order, probe); // First patient not before the cursor
+                if (descending) {
+                    start--;
+                } else if (start < ids.size() && order.compare(entries.get(ids.get(start)), probe) == 0) {
+                    start++; // The cursor patient itself
+                }
+            }
+            return readPatients(slice(ids, start, limit, descending));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the patient in the sorted ID list by binary search: O(log n), no storage reads.
+     */
+    @Override
+    public int positionOf(String patientId, PatientSortKey sortKey, boolean descending) throws Exception {
+        refreshIfChanged();
+        lockOrder(sortKey);
+        try {
+            IndexEntry entry = entries.get(patientId);
+            if (entry == null) {
+                return -1;
+            }
+            int position;
+            if (sortKey == null) {
+                position = storagePosition.get(patientId);
+            } else {
+                position = lowerBound(sortedIds.get(sortKey), ENTRY_ORDERS.get(sortKey), entry);
+            }
+            return descending ? entries.size() - 1 - position : position;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Orders the IDs without reading storage. A large set is picked out of the
+     * sorted ID list in one walk (O(n)); a small one has its index entries
+     * sorted instead (O(m log m)), which is cheaper than walking every patient.
+     */
+    @Override
+    public List<String> orderPatientIds(Collection<String> patientIds, PatientSortKey sortKey, boolean descending,
+                                        BooleanSupplier cancelled) throws Exception {
+        refreshIfChanged();
+        lockOrder(sortKey);
+        try {
+            List<String> ids = (sortKey != null) ? sortedIds.get(sortKey) : storageOrder;
+            List<String> ordered = new ArrayList<>(Math.min(patientIds.size(), ids.size()));
+            if ((long) patientIds.size() * WALK_FACTOR >= ids.size()) {
+                Set<String> wanted = (patientIds instanceof Set) ? (Set<String>) patientIds : new HashSet<>(patientIds);
+                for (String id : ids) {
+                    if (wanted.contains(id)) {
+                        ordered.add(id);
+                    }
+                }
+            } else {
+                List<IndexEntry> matches = new ArrayList<>(patientIds.size());
+                for (String id : patientIds) {
+                    IndexEntry entry = entries.get(id);
+                    if (entry != null) {
+                        matches.add(entry);
+                    }
+                }
+                matches.sort((sortKey != null) ? ENTRY_ORDERS.get(sortKey)
+                        : Comparator.comparing((IndexEntry e) -> storagePosition.get(e.id)));
+                for (IndexEntry entry : matches) {
+                    ordered.add(entry.id);
+                }
+            }
+            if (descending) {
+                Collections.reverse(ordered);
+            }
+            return ordered;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The IDs of one page by offset, in page order.
+     */
+    private List<String> pageIds(int offset, int limit, PatientSortKey sortKey, boolean descending) {
+        lockOrder(sortKey);
+        try {
+            List<String> ids = (sortKey != null) ? sortedIds.get(sortKey) : storageOrder;
+            int start = descending ? ids.size() - 1 - offset : offset;
+            return slice(ids, start, limit, descending);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Up to "limit" IDs starting at "start" and walking forwards (or backwards).
+     */
+    private static List<String> slice(List<String> ids, int start, int limit, boolean descending) {
+        List<String> page = new ArrayList<>(Math.min(limit, ids.size()));
+        int step = descending ? -1 : 1;
+        for (int i = start; i >= 0 && i < ids.size() && page.size() < limit; i += step) {
+            page.add(ids.get(i));
+        }
+        return page;
+    }
+
+    /**
+     * Reads the given patients from storage, skipping any that are no longer there.
+     */
+    private List<Patient> readPatients(List<String> ids) throws Exception {
+        List<Patient> patients = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Patient patient = delegate.getPatient(id);
+            if (patient != null) {
+                patients.add(patient);
+            }
+        }
+        return patients;
+    }
+
+    /**
+     * Takes the read lock with the sorted ID list for this key built.
+     * The caller must release the read lock.
+     */
+    private void lockOrder(PatientSortKey sortKey) {
+        lock.readLock().lock();
+        if (sortKey == null || sortedIds.containsKey(sortKey)) {
+            return;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (!sortedIds.containsKey(sortKey)) {
+                List<IndexEntry> sorted = new ArrayList<>(entries.values());
+                sorted.sort(ENTRY_ORDERS.get(sortKey));
+                List<String> ids = new ArrayList<>(sorted.size());
+                for (IndexEntry entry : sorted) {
+                    ids.add(entry.id);
+                }
+                sortedIds.put(sortKey, ids);
+            }
+            lock.readLock().lock(); // Downgrade
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Position of the first ID in the list that is not before the probe.
+     */
+    private int lowerBound(List<String> ids, Comparator<IndexEntry> order, IndexEntry probe) {
+        int low = 0;
+        int high = ids.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (order.compare(entries.get(ids.get(mid)), probe) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    // --- Queries ---
+
+    @Override
+    public List<Patient> findPatients(PatientQuery query) throws Exception {
+        List<String> ids = findPatientIds(query);
+        List<Patient> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Patient patient = delegate.getPatient(id);
+            if (patient != null) {
+                result.add(patient);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Answers a query from the indexes alone, ordered by admission date then ID.
+     */
+    @Override
+    public List<String> findPatientIds(PatientQuery query) throws Exception {
+        refreshIfChanged();
+        lock.readLock().lock();
+        try {
+            // 1. Start from the smallest candidate set any filter gives us
+            Collection<String> candidates = null;
+            if (query.getDoctor() != null) {
+                candidates = byDoctor.getOrDefault(PatientQuery.doctorKey(query.getDoctor()), Collections.emptySet());
+            }
+            if (query.getDischarged() != null) {
+                Set<String> statusIds = query.getDischarged() ? dischargedIds : admittedIds;
+                if (candidates == null || statusIds.size() < candidates.size()) {
+                    candidates = statusIds;
+                }
+            }
+            if (query.hasDateRange()) {
+                NavigableMap<LocalDate, Set<String>> range = dateRange(query);
+                int rangeSize = 0;
+                for (Set<String> ids : range.values()) {
+                    rangeSize += ids.size();
+                    if (candidates != null && rangeSize >= candidates.size()) break;
+                }
+                if (candidates == null || rangeSize < candidates.size()) {
+                    List<String> rangeIds = new ArrayList<>(rangeSize);
+                    for (Set<String> ids : range.values()) {
+                        rangeIds.addAll(ids);
+                    }
+                    candidates = rangeIds;
+                }
+            }
+            if (candidates == null) {
+                candidates = entries.keySet();
+            }
+
+            // 2. Check the remaining filters against the indexed values
+            List<String> matches = new ArrayList<>();
+            for (String id : candidates) {
+                IndexEntry entry = entries.get(id);
+                if (entry != null && query.matches(entry.doctorKey, entry.discharged, entry.admitted)) {
+                    matches.add(id);
+                }
+            }
+            matches.sort(Comparator.comparing((String id) -> entries.get(id).admitted,
+                    Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+                    .thenComparing(PatientSortKey.ID_ORDER));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Answers the live filter from the prefix index: O(log n + matches), so
+     * there is nothing worth cancelling part-way.
+     */
+    @Override
+    public Set<String> searchPatientIds(String text, BooleanSupplier cancelled) throws Exception {
+        refreshIfChanged();
+        lock.readLock().lock();
+        try {
+            return prefixIndex.search(text);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of patients currently admitted (not discharged).
+     */
+    public int countAdmitted() throws Exception {
+        refreshIfChanged();
+        lock.readLock().lock();
+        try {
+            return admittedIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Running billing totals, kept in step with every write.
+     */
+    public BillingAggregates getBillingAggregates() throws Exception {
+        refreshIfChanged();
+        return billing;
+    }
+
+    // --- Index Maintenance ---
+
+    /**
+     * Rebuilds every index from storage if the delegate reports a change made from outside.
+     */
+    private void refreshIfChanged() throws Exception {
+        if (delegate.getExternalChangeCount() == seenExternalChanges) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long changes = delegate.getExternalChangeCount();
+            if (changes == seenExternalChanges) {
+                return; // Another thread already rebuilt
+            }
+            entries.clear();
+            byDoctor.clear();
+            admittedIds.clear();
+            dischargedIds.clear();
+            byAdmissionDate.clear();
+            prefixIndex.clear();
+            billing.clear();
+            storageOrder.clear();
+            storagePosition.clear();
+            sortedIds.clear(); // Rebuilt on the next page request
+            try (Stream<Patient> patients = delegate.streamPatients()) {
+                patients.forEach(this::index);
+            }
+            seenExternalChanges = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or re-indexes one patient, removing any old index entries first.
+     * Called with the write lock held (or from the constructor).
+     */
+    private void index(Patient patient) {
+        String id = patient.getPatientId();
+        IndexEntry old = entries.get(id);
+        if (old != null) {
+            unindex(id, old);
+        } else {
+            storagePosition.put(id, storageOrder.size());
+            storageOrder.add(id);
+        }
+        IndexEntry entry = new IndexEntry(patient);
+        entries.put(id, entry);
+        for (Map.Entry<PatientSortKey, List<String>> sorted : sortedIds.entrySet()) {
+            List<String> ids = sorted.getValue();
+            ids.add(lowerBound(ids, ENTRY_ORDERS.get(sorted.getKey()), entry), id);
+        }
+        byDoctor.computeIfAbsent(entry.doctorKey, k -> new HashSet<>()).add(id);
+        prefixIndex.add(id, entry.name);
+        (entry.discharged ? dischargedIds : admittedIds).add(id);
+        if (entry.admitted != null) {
+            byAdmissionDate.computeIfAbsent(entry.admitted, k -> new HashSet<>()).add(id);
+        }
+        billing.add(entry.doctor, entry.discharged, entry.dischargeDate, entry.billPaise);
+    }
+
+    private void unindex(String id, IndexEntry entry) {
+        for (Map.Entry<PatientSortKey, List<String>> sorted : sortedIds.entrySet()) {
+            List<String> ids = sorted.getValue();
+            ids.remove(lowerBound(ids, ENTRY_ORDERS.get(sorted.getKey()), entry)); // Still the stored entry
+        }
+        removeFrom(byDoctor, entry.doctorKey, id);
+        prefixIndex.remove(id, entry.name);
+        (entry.discharged ? dischargedIds : admittedIds).remove(id);
+        if (entry.admitted != null) {
+            removeFrom(byAdmissionDate, entry.admitted, id);
+        }
+        billing.remove(entry.doctor, entry.discharged, entry.dischargeDate, entry.billPaise);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private NavigableMap<LocalDate, Set<String>> dateRange(PatientQuery query) {
+        LocalDate from = query.getAdmittedFrom();
+        LocalDate to = query.getAdmittedTo();
+        if (from != null && to != null) {
+            return from.isAfter(to) ? Collections.emptyNavigableMap() : byAdmissionDate.subMap(from, true, to, true);
+        }
+        return (from != null) ? byAdmissionDate.tailMap(from, true) : byAdmissionDate.headMap(to, true);
+    }
+}
@@ -0,0 +1,57 @@
+package com.hospital.dao;
+
+/**
+ * LockWaitStats.java
+ * How long writers waited for a lock: count, total, worst case, and how many
+ * waits were long enough to mean another writer (thread or workstation)
+ * was holding it.
+ */
+public class LockWaitStats {
+
+    private static final long CONTENDED_NANOS = 1_000_000; // Waits over 1 ms count as contended
+
+    private final String name;
+    private long acquisitions = 0;
+    private long contended = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+
+    public LockWaitStats(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long waitNanos) {
+        acquisitions++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        if (waitNanos > CONTENDED_NANOS) {
+            contended++;
+        }
+    }
+
+    public synchronized long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public synchronized long getContended() {
+        return contended;
+    }
+
+    public synchronized double getTotalWaitMillis() {
+        return totalWaitNanos / 1_000_000.0;
+    }
+
+    public synchronized double getAverageWaitMillis() {
+        return (acquisitions == 0) ? 0 : totalWaitNanos / 1_000_000.0 / acquisitions;
+    }
+
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d acquired, %d contended, avg %.3f ms, max %.3f ms, total %.1f ms",
+                name, acquisitions, contended, getAverageWaitMillis(), getMaxWaitMillis(), getTotalWaitMillis());
+    }
+}
@@ -0,0 +1,115 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * PatientBinaryCodec.java
+ * A small, purpose-built binary format for Patient records.
+ * Used by the .dat backup instead of Java serialization, so the file no longer
+ * depends on the Patient class layout or its serialVersionUID.
+ *
+ * One record:
+ *   7 strings (id, name, contact, address, history, doctor, treatment),
+ *     each as int byteLength (-1 = null) + UTF-8 bytes
+ *   int age | int admissionEpochDay | int dischargeEpochDay | boolean discharged
+ *   double baseBill | double insurancePercent | double finalBill
+ *   long version (format 2 onwards)
+ *
+ * Records are encoded straight into / decoded straight out of a ByteBuffer,
+ * which avoids the per-byte stream calls of DataInput/DataOutputStream.
+ */
+final class PatientBinaryCodec {
+
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private PatientBinaryCodec() {}
+
+    /**
+     * Encodes one patient at the buffer's position.
+     * @throws BufferOverflowException if the record does not fit; the caller
+     *         should reset the position, drain the buffer and try again.
+     */
+    static void write(ByteBuffer buf, Patient p) {
+        writeString(buf, p.getPatientId());
+        writeString(buf, p.getName());
+        writeString(buf, p.getContact());
+        writeString(buf, p.getAddress());
+        writeString(buf, p.getMedicalHistory());
+        writeString(buf, p.getDoctorAssigned());
+        writeString(buf, p.getTreatmentGiven());
+        buf.putInt(p.getAge());
+        buf.putInt(toEpochDay(p.getDateOfAdmission()));
+        buf.putInt(toEpochDay(p.getDateOfDischarge()));
+        buf.put((byte) (p.isDischarged() ? 1 : 0));
+        buf.putDouble(p.getBaseBillAmount());
+        buf.putDouble(p.getInsuranceDiscountPercent());
+        buf.putDouble(p.getFinalBillAmount());
+        buf.putLong(p.getVersion());
+    }
+
+    /**
+     * Decodes one patient from the buffer's position.
+     * @param withVersion false for records written before the version field existed.
+     */
+    static Patient read(ByteBuffer buf, boolean withVersion) {
+        Patient p = new Patient();
+        p.setPatientId(readString(buf));
+        p.setName(readString(buf));
+        p.setContact(readString(buf));
+        p.setAddress(readString(buf));
+        p.setMedicalHistory(readString(buf));
+        p.setDoctorAssigned(readString(buf));
+        p.setTreatmentGiven(readString(buf));
+        p.setAge(buf.getInt());
+        p.setDateOfAdmission(fromEpochDay(buf.getInt()));
+        p.setDateOfDischarge(fromEpochDay(buf.getInt()));
+        p.setDischarged(buf.get() == 1);
+        p.setBaseBillAmount(buf.getDouble());
+        p.setInsuranceDiscountPercent(buf.getDouble());
+        p.setFinalBillAmount(buf.getDouble());
+        if (withVersion) {
+            p.setVersion(buf.getLong());
+        }
+        return p;
+    }
+
+    // --- Field Helpers ---
+
+    private static void writeString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        String s;
+        if (buf.hasArray()) {
+            // Decode straight from the backing array, no intermediate copy
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return (date != null) ? (int) date.toEpochDay() : NULL_DATE;
+    }
+
+    private static LocalDate fromEpochDay(int day) {
+        return (day != NULL_DATE) ? LocalDate.ofEpochDay(day) : null;
+    }
+}
@@ -1,7 +1,20 @@
 package com.hospital.dao;
 
 import com.hospital.model.Patient;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * PatientDAO.java
@@ -37,10 +50,346 @@ public interface PatientDAO {
 
     /**
      * Retrieves a list of all patients in the data storage.
+     * Kept for compatibility; prefer streamPatients() or getPatients(offset, limit, sortKey)
+     * when the whole list does not need to be in memory at once.
      * @return A List of all Patient objects.
      * @throws Exception if the read operation fails.
      */
     List<Patient> getAllPatients() throws Exception;
-    
-}
 
+    // --- Batch Writes ---
+
+    /**
+     * Adds many new patients with one write.
+     * Implementations write the whole batch atomically: either every patient
+     * is stored (and gets an ID) or none is.
+     * The default simply adds them one by one and is NOT atomic.
+     * @param patients The patients to add.
+     * @return The same patients, with their generated IDs set.
+     * @throws Exception if the batch could not be stored.
+     */
+    default List<Patient> addPatients(List<Patient> patients) throws Exception {
+        for (Patient patient : patients) {
+            addPatient(patient);
+        }
+        return patients;
+    }
+
+    /**
+     * Updates many existing patients with one write.
+     * Implementations write the whole batch atomically: if any patient is
+     * unknown or the write fails, nothing is changed.
+     * The default simply updates them one by one and is NOT atomic.
+     * @param patients The patients with updated information.
+     * @throws Exception if the batch could not be stored.
+     */
+    default void updatePatients(List<Patient> patients) throws Exception {
+        for (Patient patient : patients) {
+            updatePatient(patient);
+        }
+    }
+
+    // --- Queries ---
+
+    /**
+     * Finds every patient matching a query, ordered by admission date then ID.
+     * The default scans all patients; IndexedPatientDAO answers from its indexes.
+     * @throws Exception if the read operation fails.
+     */
+    default List<Patient> findPatients(PatientQuery query) throws Exception {
+        try (Stream<Patient> patients = streamPatients()) {
+            return patients.filter(query::matches)
+                .sorted(PatientSortKey.ADMISSION_DATE.comparator())
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * The IDs of the patients findPatients would return, in the same order.
+     * The default runs findPatients; IndexedPatientDAO answers from its indexes
+     * without reading any patient.
+     * @throws Exception if the read operation fails.
+     */
+    default List<String> findPatientIds(PatientQuery query) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (Patient patient : findPatients(query)) {
+            ids.add(patient.getPatientId());
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the IDs of patients whose ID, name, or any word of the name starts
+     * with the given text (case-insensitive). Used by the live filter.
+     * @throws Exception if the read operation fails.
+     */
+    default Set<String> searchPatientIds(String text) throws Exception {
+        return searchPatientIds(text, () -> false);
+    }
+
+    /**
+     * Like searchPatientIds(text), but the scan checks {@code cancelled} between
+     * patients and stops once it returns true (a newer search replaced this one).
+     * Cancellation is a flag rather than an interrupt: interrupting a thread in
+     * the middle of file I/O closes the channel it is using.
+     * The default scans all patients; IndexedPatientDAO uses a prefix index.
+     * @throws CancellationException if the search was cancelled.
+     * @throws Exception if the read operation fails.
+     */
+    default Set<String> searchPatientIds(String text, BooleanSupplier cancelled) throws Exception {
+        Set<String> ids = new LinkedHashSet<>();
+        try (Stream<Patient> patients = streamPatients()) {
+            Iterator<Patient> it = patients.iterator();
+            while (it.hasNext()) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Search cancelled.");
+                }
+                Patient p = it.next();
+                if (PatientPrefixIndex.matches(text, p.getPatientId(), p.getName())) {
+                    ids.add(p.getPatientId());
+                }
+            }
+        }
+        return ids;
+    }
+
+    // --- Streaming & Paging ---
+
+    /**
+     * Streams every patient in storage order. Implementations produce the
+     * Patient objects lazily, so memory stays bounded while iterating.
+     * @throws Exception if the read operation fails.
+     */
+    default Stream<Patient> streamPatients() throws Exception {
+        return getAllPatients().stream();
+    }
+
+    /**
+     * Counts the patients in storage.
+     * @throws Exception if the read operation fails.
+     */
+    default int countPatients() throws Exception {
+        return getAllPatients().size();
+    }
+
+    /**
+     * Retrieves one page of patients.
+     * @param offset How many patients to skip (0 for the first page).
+     * @param limit The maximum number of patients to return.
+     * @param sortKey The order to page through, or null for storage order.
+     * @return At most "limit" patients.
+     * @throws Exception if the read operation fails.
+     */
+    default List<Patient> getPatients(int offset, int limit, PatientSortKey sortKey) throws Exception {
+        return getPatients(offset, limit, sortKey, false);
+    }
+
+    /**
+     * Retrieves one page of patients, in ascending or descending order.
+     * The default scans every patient for each page (keeping a bounded heap of
+     * offset+limit patients when sorting); IndexedPatientDAO answers from
+     * sorted ID lists in O(limit).
+     * @param offset How many patients to skip (0 for the first page).
+     * @param limit The maximum number of patients to return.
+     * @param sortKey The order to page through, or null for storage order.
+     * @param descending True to page from the end of that order.
+     * @return At most "limit" patients.
+     * @throws Exception if the read operation fails.
+     */
+    default List<Patient> getPatients(int offset, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        if (offset < 0 || limit < 0) {
+            throw new Exception("Page offset and limit cannot be negative.");
+        }
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        if (sortKey == null && descending) {
+            // Page "offset" from the end is a forward page ending there
+            long end = (long) countPatients() - offset;
+            if (end <= 0) {
+                return new ArrayList<>();
+            }
+            List<Patient> page = getPatients((int) Math.max(0, end - limit), (int) Math.min(limit, end), null, false);
+            Collections.reverse(page);
+            return page;
+        }
+        try (Stream<Patient> patients = streamPatients()) {
+            if (sortKey == null) {
+                return patients.skip(offset).limit(limit).collect(Collectors.toList());
+            }
+
+            // Keep only the first offset+limit patients in sort order (a bounded heap),
+            // instead of sorting the whole dataset
+            int keep = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+            Comparator<Patient> order = descending ? sortKey.comparator().reversed() : sortKey.comparator();
+            List<Patient> firstPatients = firstInOrder(patients, keep, order);
+            if (offset >= firstPatients.size()) {
+                return new ArrayList<>();
+            }
+            return new ArrayList<>(firstPatients.subList(offset, firstPatients.size()));
+        }
+    }
+
+    /**
+     * Puts a set of patient IDs into a page order (e.g. the live filter's
+     * matches). IDs of patients that no longer exist are left out.
+     * The default reads every patient and sorts them; IndexedPatientDAO orders
+     * them from its sorted ID lists without reading storage.
+     * @param sortKey The order, or null for storage order.
+     * @param cancelled Checked between patients; once it returns true the call
+     *                  stops with a CancellationException.
+     * @throws Exception if the read operation fails.
+     */
+    default List<String> orderPatientIds(Collection<String> patientIds, PatientSortKey sortKey, boolean descending,
+                                         BooleanSupplier cancelled) throws Exception {
+        List<Patient> patients = new ArrayList<>(patientIds.size());
+        if (sortKey == null) {
+            Set<String> wanted = new HashSet<>(patientIds);
+            try (Stream<Patient> all = streamPatients()) {
+                Iterator<Patient> it = all.iterator();
+                while (it.hasNext()) {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Search cancelled.");
+                    }
+                    Patient patient = it.next();
+                    if (wanted.contains(patient.getPatientId())) {
+                        patients.add(patient);
+                    }
+                }
+            }
+        } else {
+            for (String id : patientIds) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Search cancelled.");
+                }
+                Patient patient = getPatient(id);
+                if (patient != null) {
+                    patients.add(patient);
+                }
+            }
+            patients.sort(sortKey.comparator());
+        }
+        if (descending) {
+            Collections.reverse(patients);
+        }
+        List<String> ordered = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            ordered.add(patient.getPatientId());
+        }
+        return ordered;
+    }
+
+    /**
+     * Retrieves the page that follows a given patient (keyset paging): the next
+     * "limit" patients after "after" in the given order. Unlike an offset, the
+     * cursor stays correct when patients are added in front of it.
+     * The default scans every patient; IndexedPatientDAO binary-searches its
+     * sorted ID lists, so a page costs O(log n + limit).
+     * @param after The last patient of the previous page (its sort value and ID), or null for the first page.
+     * @param limit The maximum number of patients to return.
+     * @param sortKey The order to page through, or null for storage order.
+     * @param descending True to page through that order from the end.
+     * @return At most "limit" patients.
+     * @throws Exception if the read operation fails.
+     */
+    default List<Patient> getPatientsAfter(Patient after, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        if (limit < 0) {
+            throw new Exception("Page limit cannot be negative.");
+        }
+        if (after == null) {
+            return getPatients(0, limit, sortKey, descending);
+        }
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        if (sortKey == null) {
+            // Storage order has no sort value: find the cursor patient's position
+            List<Patient> all;
+            try (Stream<Patient> patients = streamPatients()) {
+                all = patients.collect(Collectors.toList());
+            }
+            if (descending) {
+                Collections.reverse(all);
+            }
+            int position = 0;
+            while (position < all.size() && !all.get(position).getPatientId().equals(after.getPatientId())) {
+                position++;
+            }
+            return new ArrayList<>(all.subList(Math.min(position + 1, all.size()),
+                    Math.min(position + 1 + limit, all.size())));
+        }
+        Comparator<Patient> order = descending ? sortKey.comparator().reversed() : sortKey.comparator();
+        try (Stream<Patient> patients = streamPatients()) {
+            return firstInOrder(patients.filter(p -> order.compare(p, after) > 0), limit, order);
+        }
+    }
+
+    /**
+     * Where a stored patient sits in the given order, i.e. the offset getPatients
+     * would return it at. The default is one pass over the patients, without
+     * sorting them; IndexedPatientDAO answers from its sorted ID lists.
+     * @param sortKey The order, or null for storage order.
+     * @return The position, or -1 if the patient is not stored.
+     * @throws Exception if the read operation fails.
+     */
+    default int positionOf(String patientId, PatientSortKey sortKey, boolean descending) throws Exception {
+        Patient patient = getPatient(patientId);
+        if (patient == null) {
+            return -1;
+        }
+        try (Stream<Patient> patients = streamPatients()) {
+            if (sortKey == null) {
+                int index = 0;
+                for (Patient p : (Iterable<Patient>) patients::iterator) {
+                    if (patientId.equals(p.getPatientId())) {
+                        break;
+                    }
+                    index++;
+                }
+                return descending ? countPatients() - 1 - index : index;
+            }
+            Comparator<Patient> order = descending ? sortKey.comparator().reversed() : sortKey.comparator();
+            return (int) patients.filter(p -> order.compare(p, patient) < 0).count();
+        }
+    }
+
+    /**
+     * The first "keep" patients of a stream in the given order, using a bounded heap.
+     */
+    private static List<Patient> firstInOrder(Stream<Patient> patients, int keep, Comparator<Patient> order) {
+        PriorityQueue<Patient> heap = new PriorityQueue<>(Math.max(1, Math.min(keep, 1024)), order.reversed());
+        patients.forEach(p -> {
+            if (heap.size() < keep) {
+                heap.add(p);
+            } else if (order.compare(p, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(p);
+            }
+        });
+        List<Patient> first = new ArrayList<>(heap);
+        first.sort(order);
+        return first;
+    }
+
+    /**
+     * Checks whether the stored data was changed from outside this object
+     * (another copy of the app, or the file edited by hand) and returns how
+     * many such changes have been seen so far. IndexedPatientDAO rebuilds its
+     * indexes whenever this number moves.
+     * The default is 0: storage that only this object ever writes.
+     * @throws Exception if the storage cannot be checked.
+     */
+    default long getExternalChangeCount() throws Exception {
+        return 0;
+    }
+
+    /**
+     * Finishes background work (e.g. a pending .dat backup) and releases files.
+     * The DAO must not be used afterwards. The default does nothing.
+     * @throws Exception if pending work could not be finished.
+     */
+    default void close() throws Exception {
+    }
+}
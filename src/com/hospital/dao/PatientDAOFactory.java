@@ -0,0 +1,72 @@
+package com.hospital.dao;
+
+/**
+ * PatientDAOFactory.java
+ * Picks which storage engine the application uses.
+ *
+ * The mode comes from the "hospital.storage" system property, e.g.
+ *   java -Dhospital.storage=journal -cp ... com.hospital.main.Main
+ * If the property is missing (or the chosen engine fails to start),
+ * the default patients.txt DAO is used. The exception is an engine that is
+ * already open in another copy of the app: falling back would show a
+ * different set of patients, so that fails with IllegalStateException.
+ *
+ * Modes: text (default), journal, mapped, partitioned
+ *
+ * Every engine except partitioned is wrapped in IndexedPatientDAO. Building
+ * those indexes reads every patient at startup, which is exactly what the
+ * partitioned engine exists to avoid (its working set is the recent months);
+ * it keeps only its ID -> month directory in memory and answers admission
+ * date queries by reading just the months in range.
+ */
+public final class PatientDAOFactory {
+
+    public static final String STORAGE_PROPERTY = "hospital.storage";
+
+    private PatientDAOFactory() {}
+
+    /**
+     * Creates the DAO selected by the "hospital.storage" system property,
+     * wrapped with secondary indexes for doctor, status and admission date
+     * (except the partitioned engine, see above).
+     */
+    public static PatientDAO create() {
+        PatientDAO storage = createStorage();
+        if (storage instanceof PatientPartitionedDAO) {
+            return storage;
+        }
+        try {
+            return new IndexedPatientDAO(storage);
+        } catch (Exception e) {
+            System.err.println("Could not build patient indexes, queries will scan: " + e.getMessage());
+            return storage;
+        }
+    }
+
+    /**
+     * Creates the bare storage engine selected by the "hospital.storage" system property.
+     */
+    public static PatientDAO createStorage() {
+        String mode = System.getProperty(STORAGE_PROPERTY, "text").trim().toLowerCase();
+        try {
+            switch (mode) {
+                case "journal":
+                    return new PatientJournalDAO();
+                case "partitioned":
+                    return new PatientPartitionedDAO();
+                case "mapped":
+                    return new PatientMappedDAO();
+                case "text":
+                    return new PatientTextFileDAO();
+                default:
+                    System.err.println("Unknown storage mode '" + mode + "', using patients.txt.");
+                    return new PatientTextFileDAO();
+            }
+        } catch (StorageInUseException e) {
+            throw new IllegalStateException(e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Could not start '" + mode + "' storage, using patients.txt: " + e.getMessage());
+            return new PatientTextFileDAO();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * PatientDAOStressDemo.java
+ * Hammers one PatientDAO from many threads at once and checks that nothing
+ * was lost: every add is stored under its own ID, every update's final value
+ * survives, and readers never see an error.
+ *
+ * Runs twice, each time in a fresh temporary data folder (never the real
+ * ~/.hospitalapp): once on the bare storage engine, once with the indexes
+ * on top. The engine is whichever -Dhospital.storage selects:
+ *   java -cp ... com.hospital.dao.PatientDAOStressDemo [writers] [addsPerWriter] [updatesPerPatient]
+ * Exits with status 1 if any check fails.
+ */
+public class PatientDAOStressDemo {
+
+    public static void main(String[] args) throws Exception {
+        int writers = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        int addsPerWriter = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+        int updatesPerPatient = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+
+        boolean passed = true;
+        for (boolean indexed : new boolean[] {false, true}) {
+            Path home = Files.createTempDirectory("hospital-stress");
+            System.setProperty("user.home", home.toString());
+            PatientDAO dao = indexed ? PatientDAOFactory.create() : PatientDAOFactory.createStorage();
+            System.out.println("Stressing " + dao.getClass().getSimpleName() + " in " + home);
+            passed &= stress(dao, writers, addsPerWriter, updatesPerPatient);
+            dao.close(); // Writes the pending backup instead of leaving it for the exit hook
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean stress(PatientDAO dao, int writers, int addsPerWriter, int updatesPerPatient)
+            throws Exception {
+        int updaters = writers;
+        int readers = 4;
+
+        // One patient per updater thread; each thread only updates its own
+        List<String> ownedIds = new ArrayList<>();
+        for (int i = 0; i < updaters; i++) {
+            ownedIds.add(dao.addPatient(newPatient("Updater " + i)).getPatientId());
+        }
+
+        ConcurrentLinkedQueue<String> addedIds = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writerThreads = new ArrayList<>();
+        List<Thread> readerThreads = new ArrayList<>();
+
+        // --- Writers: add new patients ---
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            writerThreads.add(new Thread(() -> {
+                await(start);
+                for (int i = 0; i < addsPerWriter; i++) {
+                    try {
+                        addedIds.add(dao.addPatient(newPatient("Writer " + writer + " #" + i)).getPatientId());
+                    } catch (Exception e) {
+                        errors.add("add: " + e.getMessage());
+                    }
+                }
+            }, "stress-writer-" + w));
+        }
+
+        // --- Updaters: rewrite their own patient's bill, 1..updatesPerPatient ---
+        for (int u = 0; u < updaters; u++) {
+            String patientId = ownedIds.get(u);
+            writerThreads.add(new Thread(() -> {
+                await(start);
+                for (int i = 1; i <= updatesPerPatient; i++) {
+                    try {
+                        Patient patient = dao.getPatient(patientId);
+                        patient.setBaseBillAmount(i);
+                        patient.calculateFinalBill();
+                        dao.updatePatient(patient);
+                    } catch (Exception e) {
+                        errors.add("update: " + e.getMessage());
+                    }
+                }
+            }, "stress-updater-" + u));
+        }
+
+        // --- Readers: scan, count and look up while the writes run ---
+        for (int r = 0; r < readers; r++) {
+            readerThreads.add(new Thread(() -> {
+                await(start);
+                while (writing.get()) {
+                    try (Stream<Patient> patients = dao.streamPatients()) {
+                        patients.forEach(p -> {
+                            if (p.getPatientId() == null) {
+                                errors.add("read: patient without an ID");
+                            }
+                        });
+                        dao.countPatients();
+                        dao.getPatient(ownedIds.get(0));
+                        reads.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.add("read: " + e.getMessage());
+                    }
+                }
+            }, "stress-reader-" + r));
+        }
+
+        long began = System.nanoTime();
+        writerThreads.forEach(Thread::start);
+        readerThreads.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : writerThreads) {
+            t.join();
+        }
+        writing.set(false);
+        for (Thread t : readerThreads) {
+            t.join();
+        }
+        long elapsedMs = (System.nanoTime() - began) / 1_000_000;
+
+        // --- Checks ---
+        List<String> failures = new ArrayList<>(errors);
+        int expected = updaters + writers * addsPerWriter;
+        if (dao.countPatients() != expected) {
+            failures.add("expected " + expected + " patients, found " + dao.countPatients());
+        }
+        Set<String> uniqueIds = new HashSet<>(addedIds);
+        if (uniqueIds.size() != addedIds.size()) {
+            failures.add((addedIds.size() - uniqueIds.size()) + " duplicate IDs handed out");
+        }
+        for (String id : addedIds) {
+            if (dao.getPatient(id) == null) {
+                failures.add("added patient " + id + " is missing");
+            }
+        }
+        for (String id : ownedIds) {
+            double bill = dao.getPatient(id).getBaseBillAmount();
+            if (bill != updatesPerPatient) {
+                failures.add("patient " + id + " ended with bill " + bill + ", expected " + updatesPerPatient);
+            }
+        }
+
+        failures.addAll(contendedIncrements(dao, updaters, updatesPerPatient));
+
+        System.out.println(writers * addsPerWriter + " adds, " + updaters * updatesPerPatient + " updates and "
+                + reads.get() + " read passes in " + elapsedMs + " ms");
+        PatientDAO storage = (dao instanceof IndexedPatientDAO) ? ((IndexedPatientDAO) dao).getDelegate() : dao;
+        if (storage instanceof PatientTextFileDAO) {
+            PatientTextFileDAO textDAO = (PatientTextFileDAO) storage;
+            System.out.println("Write lock waits: " + textDAO.getWriteLockWaits());
+            System.out.println("File lock waits:  " + textDAO.getFileLockWaits());
+        }
+        if (failures.isEmpty()) {
+            System.out.println("OK: no lost or duplicated records, no lost or stale updates.");
+            return true;
+        }
+        System.out.println("FAILED (" + failures.size() + "):");
+        failures.stream().limit(20).forEach(f -> System.out.println("  " + f));
+        return false;
+    }
+
+    /**
+     * Several threads add 1 to the same patient's bill, retrying when their copy is stale.
+     * With optimistic versions every increment must survive: the bill ends at threads * increments.
+     */
+    private static List<String> contendedIncrements(PatientDAO dao, int threads, int increments) throws Exception {
+        String sharedId = dao.addPatient(newPatient("Shared counter")).getPatientId();
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        AtomicLong retries = new AtomicLong();
+        List<Thread> counters = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            counters.add(new Thread(() -> {
+                for (int i = 0; i < increments; i++) {
+                    while (true) {
+                        try {
+                            Patient patient = dao.getPatient(sharedId);
+                            patient.setBaseBillAmount(patient.getBaseBillAmount() + 1);
+                            patient.calculateFinalBill();
+                            dao.updatePatient(patient);
+                            break;
+                        } catch (StalePatientException e) {
+                            retries.incrementAndGet();
+                        } catch (Exception e) {
+                            errors.add("increment: " + e.getMessage());
+                            break;
+                        }
+                    }
+                }
+            }, "stress-counter-" + t));
+        }
+        counters.forEach(Thread::start);
+        for (Thread t : counters) {
+            t.join();
+        }
+
+        List<String> failures = new ArrayList<>(errors);
+        Patient shared = dao.getPatient(sharedId);
+        double expected = (double) threads * increments;
+        if (shared.getBaseBillAmount() != expected) {
+            failures.add("shared patient ended with bill " + shared.getBaseBillAmount() + ", expected " + expected);
+        }
+        if (shared.getVersion() != (long) threads * increments + 1) {
+            failures.add("shared patient ended at version " + shared.getVersion()
+                    + ", expected " + ((long) threads * increments + 1));
+        }
+        System.out.println(threads * increments + " contended increments, " + retries.get() + " stale retries");
+        return failures;
+    }
+
+    private static Patient newPatient(String name) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setAge(40);
+        patient.setContact("0000000000");
+        patient.setAddress("-");
+        patient.setDateOfAdmission(LocalDate.now());
+        patient.setDoctorAssigned("Dr Stress");
+        patient.setTreatmentGiven("-");
+        patient.setMedicalHistory("-");
+        patient.calculateFinalBill();
+        return patient;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,20 +1,32 @@
 package com.hospital.dao;
 
 import com.hospital.model.Patient;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.ObjectInputStream;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * PatientDatBackup.java
  * This is a new helper class, not a full DAO.
  * Its only job is to save a backup of the patient list to a .dat file
- * using Byte Streams (ObjectOutputStream).
+ * using Byte Streams.
+ *
+ * File format (version 2):
+ *   int magic "HPDB" | int version | int patientCount | records (see PatientBinaryCodec)
+ * Version 1 files (records without a version) and older backups written
+ * with ObjectOutputStream can still be restored.
  */
 public class PatientDatBackup {
 
@@ -22,6 +34,11 @@ public class PatientDatBackup {
     private final String DATA_DIR_NAME = ".hospitalapp";
     private final Path dataFile;
 
+    private static final int MAGIC = 0x48504442; // "HPDB"
+    private static final int FORMAT_VERSION = 2; // 2 added the record version
+    private static final int LEGACY_SERIALIZATION_MAGIC = 0xACED0005; // ObjectOutputStream header
+    private static final int BUFFER_SIZE = 1 << 16;
+
     public PatientDatBackup() {
         // Find the .hospitalapp folder
         String homeDir = System.getProperty("user.home");
@@ -32,28 +49,50 @@ public class PatientDatBackup {
 
     /**
      * Saves the provided list of patients to patients.dat as a binary backup.
-     * This uses an atomic write (save to .tmp, then rename) to prevent corruption.
+     * This uses an atomic write (save to a uniquely named temp file in the same
+     * folder, then rename) to prevent corruption, even when several copies of
+     * the app share the folder.
      * @param patients The complete list of patients to save.
+     * @return true if the backup was written, false if it failed (the error is logged).
      */
-    public void saveBackup(List<Patient> patients) {
+    public boolean saveBackup(List<Patient> patients) {
         if (patients == null) {
-            return; // Do nothing if there's no data
+            return false; // Do nothing if there's no data
         }
 
         // Define a temporary file for the atomic save
-        Path tempFile = dataFile.getParent().resolve(BACKUP_FILE_NAME + ".tmp");
-
-        // Use try-with-resources to write the object (Byte Stream)
-        try (FileOutputStream fos = new FileOutputStream(tempFile.toFile());
-             ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            
-            // Write the entire list as a single object
-            oos.writeObject(patients);
-            
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile(dataFile.getParent(), BACKUP_FILE_NAME + ".", ".tmp");
+        } catch (IOException e) {
+            System.err.println("Error: Failed to create temporary .dat backup file: " + e.getMessage());
+            return false;
+        }
+        try {
+            if (Files.exists(dataFile)) {
+                // Temp files are private to the owner; keep whatever access the backup already had
+                Files.setPosixFilePermissions(tempFile, Files.getPosixFilePermissions(dataFile));
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not a POSIX file system (or not ours to change): keep the temp file's access
+        }
+
+        // Use try-with-resources to write the records (Byte Stream)
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+            buf.putInt(MAGIC);
+            buf.putInt(FORMAT_VERSION);
+            buf.putInt(patients.size());
+            for (Patient patient : patients) {
+                buf = encode(channel, buf, patient);
+            }
+            drain(channel, buf);
+            channel.force(true); // On disk before it replaces the old backup
         } catch (IOException e) {
             System.err.println("Error: Failed to write to .dat backup file: " + e.getMessage());
             e.printStackTrace();
-            return; // Stop if the write fails
+            deleteQuietly(tempFile);
+            return false; // Stop if the write fails
         }
 
         // 2. If the write was successful, move the .tmp file to the final .dat file
@@ -62,6 +101,108 @@ public class PatientDatBackup {
         } catch (IOException e) {
             System.err.println("Error: Failed to finalize .dat backup file: " + e.getMessage());
             e.printStackTrace();
+            deleteQuietly(tempFile);
+            return false;
+        }
+        return true;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not remove " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns true if a patients.dat backup exists on disk.
+     */
+    public boolean hasBackup() {
+        return Files.exists(dataFile);
+    }
+
+    /**
+     * The patients.dat path, e.g. for noticing when the backup file changes.
+     */
+    public Path getBackupFile() {
+        return dataFile;
+    }
+
+    /**
+     * Restores the patient list from patients.dat.
+     * @return The backed-up patients, or an empty list if there is no backup.
+     * @throws Exception if the backup exists but cannot be read.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Patient> loadBackup() throws Exception {
+        if (!hasBackup()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            // Read the whole file at once and decode straight from the byte array
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(dataFile));
+            int magic = buf.getInt();
+
+            if (magic == LEGACY_SERIALIZATION_MAGIC) {
+                // Backup written by the old ObjectOutputStream version
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.array()))) {
+                    return (List<Patient>) in.readObject();
+                }
+            }
+            if (magic != MAGIC) {
+                throw new Exception("patients.dat is not a patient backup file.");
+            }
+            int version = buf.getInt();
+            if (version != 1 && version != FORMAT_VERSION) {
+                throw new Exception("Unsupported patients.dat version: " + version);
+            }
+
+            int count = buf.getInt();
+            if (count < 0 || count > buf.remaining()) {
+                throw new Exception("patients.dat is damaged: invalid patient count " + count + ".");
+            }
+            List<Patient> patients = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                patients.add(PatientBinaryCodec.read(buf, version >= 2));
+            }
+            return patients;
+        } catch (IOException | ClassNotFoundException | ClassCastException | BufferUnderflowException
+                 | IndexOutOfBoundsException | IllegalArgumentException | DateTimeException e) {
+            // The runtime exceptions mean a damaged record (bad string length or date)
+            throw new Exception("Error restoring from .dat backup: " + e.getMessage());
+        }
+    }
+
+    // --- Buffer Helpers ---
+
+    /**
+     * Encodes one patient into the buffer, draining it to the channel first if it is full.
+     * Returns the buffer to keep using (a larger one if a single record did not fit).
+     */
+    private ByteBuffer encode(FileChannel channel, ByteBuffer buf, Patient patient) throws IOException {
+        while (true) {
+            int start = buf.position();
+            try {
+                PatientBinaryCodec.write(buf, patient);
+                return buf;
+            } catch (BufferOverflowException e) {
+                buf.position(start);
+                if (start == 0) {
+                    buf = ByteBuffer.allocate(buf.capacity() * 2); // One huge record
+                } else {
+                    drain(channel, buf);
+                }
+            }
+        }
+    }
+
+    private void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
         }
+        buf.clear();
     }
 }
@@ -0,0 +1,200 @@
+package com.hospital.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PatientIdAllocator.java
+ * Hands out new patient IDs in constant time.
+ * Format: YYYYMMDD-001 (the number simply gets wider after 999, e.g. YYYYMMDD-1000;
+ * PatientSortKey.ID_ORDER still sorts it after YYYYMMDD-999).
+ *
+ * The last number used today is kept in patient-ids.seq ("yyyyMMdd lastNumber",
+ * the number zero-padded so the line always has the same length).
+ * Every allocation locks that file (FileChannel.lock), reads the counter,
+ * bumps it and writes it back, so two windows or two processes can never
+ * be given the same ID. A JVM may only hold one lock on a file, so every
+ * allocator in the JVM that uses the same counter file shares one channel
+ * and takes turns on it.
+ */
+public class PatientIdAllocator {
+
+    private final String COUNTER_FILE_NAME = "patient-ids.seq";
+    private final String DATA_DIR_NAME = ".hospitalapp";
+    private final DateTimeFormatter prefixFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // One channel per counter file for the whole JVM; allocations on it synchronize on the channel
+    private static final Map<Path, FileChannel> SHARED_CHANNELS = new HashMap<>();
+
+    private final Path counterFile;
+    private FileChannel channel; // Shared, opened on first allocation
+
+    // Highest number already used today according to the data itself (see seedFrom)
+    private String seededPrefix = "";
+    private long seededFloor = 0;
+
+    public PatientIdAllocator() {
+        String homeDir = System.getProperty("user.home");
+        Path dataDir = Paths.get(homeDir, DATA_DIR_NAME);
+        // We assume this directory exists because the DAO creates it
+        this.counterFile = dataDir.resolve(COUNTER_FILE_NAME).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Makes sure the counter is past every ID that already exists for today.
+     * DAOs call this whenever they (re)load their data, so a missing or
+     * out-of-date counter file can never cause a duplicate ID.
+     */
+    public synchronized void seedFrom(Iterable<String> existingIds) {
+        String prefix = todayPrefix();
+        long highest = 0;
+        for (String id : existingIds) {
+            highest = Math.max(highest, sequenceOf(id, prefix));
+        }
+        seededPrefix = prefix;
+        seededFloor = highest;
+    }
+
+    /**
+     * Makes sure the counter is past one existing ID (e.g. a record just loaded).
+     */
+    public synchronized void seedFrom(String existingId) {
+        String prefix = todayPrefix();
+        if (!prefix.equals(seededPrefix)) {
+            seededPrefix = prefix;
+            seededFloor = 0;
+        }
+        seededFloor = Math.max(seededFloor, sequenceOf(existingId, prefix));
+    }
+
+    /**
+     * Allocates the next patient ID.
+     */
+    public String nextId() throws Exception {
+        return reserveBlock(1).get(0);
+    }
+
+    /**
+     * Reserves a block of consecutive IDs with a single counter update (for bulk imports).
+     * @param count How many IDs to reserve.
+     * @return The reserved IDs, in order.
+     */
+    public synchronized List<String> reserveBlock(int count) throws Exception {
+        if (count < 1) {
+            throw new Exception("Must reserve at least one patient ID.");
+        }
+        String prefix = todayPrefix();
+        long first;
+        FileChannel shared = sharedChannel();
+        synchronized (shared) {
+            FileLock lock = null;
+            try {
+                lock = shared.lock();
+                long last = readCounter(shared, prefix);
+                if (prefix.equals(seededPrefix)) {
+                    last = Math.max(last, seededFloor);
+                }
+                first = last + 1;
+                writeCounter(shared, prefix, last + count);
+            } catch (IOException e) {
+                throw new Exception("Could not allocate patient ID: " + e.getMessage());
+            } finally {
+                if (lock != null) {
+                    try {
+                        lock.release();
+                    } catch (IOException e) {
+                        System.err.println("Could not release " + COUNTER_FILE_NAME + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        List<String> ids = new ArrayList<>(count);
+        for (long n = first; n < first + count; n++) {
+            ids.add(prefix + "-" + String.format("%03d", n));
+        }
+        return ids;
+    }
+
+    // --- Counter File Helpers ---
+
+    private FileChannel sharedChannel() throws Exception {
+        if (channel != null) {
+            return channel;
+        }
+        synchronized (SHARED_CHANNELS) {
+            channel = SHARED_CHANNELS.get(counterFile);
+            if (channel == null) {
+                try {
+                    channel = FileChannel.open(counterFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (IOException e) {
+                    throw new Exception("Could not open patient ID counter: " + e.getMessage());
+                }
+                SHARED_CHANNELS.put(counterFile, channel);
+            }
+            return channel;
+        }
+    }
+
+    private static long readCounter(FileChannel channel, String prefix) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(channel.size(), 64));
+        channel.read(buf, 0);
+        String[] parts = new String(buf.array(), 0, buf.position(), StandardCharsets.US_ASCII).trim().split(" ");
+        if (parts.length != 2 || !parts[0].equals(prefix)) {
+            return 0; // New day (or a new counter file): start from 1
+        }
+        try {
+            return Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            return 0; // Corrupt counter; seedFrom() still protects against duplicates
+        }
+    }
+
+    /**
+     * Overwrites the counter in place. The line always has the same length, so there
+     * is no truncate-then-write window in which a crash would leave the file empty.
+     */
+    private static void writeCounter(FileChannel channel, String prefix, long last) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(String.format("%s %019d\n", prefix, last).getBytes(StandardCharsets.US_ASCII));
+        int length = buf.remaining();
+        while (buf.hasRemaining()) {
+            channel.write(buf, buf.position());
+        }
+        if (channel.size() > length) {
+            channel.truncate(length); // Only after the new line is in place
+        }
+        channel.force(false);
+    }
+
+    private String todayPrefix() {
+        return LocalDate.now().format(prefixFormatter);
+    }
+
+    /**
+     * Returns the number part of an ID if it was issued with this prefix, otherwise 0.
+     */
+    private static long sequenceOf(String id, String prefix) {
+        if (id == null || id.length() <= prefix.length() + 1 || !id.startsWith(prefix)
+                || id.charAt(prefix.length()) != '-') {
+            return 0;
+        }
+        try {
+            return Long.parseLong(id.substring(prefix.length() + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
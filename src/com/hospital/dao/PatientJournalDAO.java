@@ -0,0 +1,467 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * PatientJournalDAO.java
+ * An append-only storage engine for patients.
+ *
+ * Every add or update is appended to patients.journal as ONE line
+ * (same "||" format as patients.txt), so a save costs one small write
+ * instead of rewriting the whole file.
+ *
+ * Every append (single record or batch) is forced to disk before the save
+ * returns, so a save that returned is never lost.
+ *
+ * On startup the journal is replayed from top to bottom; the last line for a
+ * patient ID wins. A last line cut short by a crash (no line break) is
+ * truncated away first. If there is no journal yet, it is seeded from
+ * patients.txt (or the .dat backup), so switching engines keeps the data.
+ * Once the journal holds too many stale lines, it is compacted in the
+ * background (rewritten with one line per patient). The .dat backup is
+ * refreshed by the BackupScheduler on its usual interval after writes.
+ */
+public class PatientJournalDAO implements PatientDAO {
+
+    private final String JOURNAL_FILE_NAME = "patients.journal";
+    private final String DATA_DIR_NAME = ".hospitalapp";
+    private final String TEXT_FILE_NAME = "patients.txt"; // Seeds a new journal
+    private final String LOCK_FILE_NAME = "patients.journal.lock"; // Held while this DAO is open
+    private final Path journalFile;
+
+    // Compact once the journal has this many more lines than live patients
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+    private final int compactionThreshold;
+
+    // Live state, rebuilt from the journal on startup
+    private final Map<String, Patient> patients = new LinkedHashMap<>();
+    private long journalLines = 0; // Total lines currently in the journal file
+    private final List<String> replayProblems = new ArrayList<>(); // Corrupt lines skipped on startup
+
+    // Background compaction
+    private final ExecutorService compactor;
+    private boolean compactionRunning = false;
+    private List<String> linesDuringCompaction = null; // Appends made while a compaction is writing
+
+    private final PatientDatBackup datBackup;
+    private final BackupScheduler backupScheduler;
+    private final PatientIdAllocator idAllocator;
+    private final StorageLock storageLock; // One copy of the app at a time
+
+    public PatientJournalDAO() throws Exception {
+        this(DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public PatientJournalDAO(int compactionThreshold) throws Exception {
+        String homeDir = System.getProperty("user.home");
+        Path dataDir = Paths.get(homeDir, DATA_DIR_NAME);
+        try {
+            Files.createDirectories(dataDir);
+        } catch (IOException e) {
+            throw new Exception("Could not create data directory: " + e.getMessage());
+        }
+        this.storageLock = StorageLock.acquire(dataDir.resolve(LOCK_FILE_NAME), "journal");
+        this.journalFile = dataDir.resolve(JOURNAL_FILE_NAME);
+        this.compactionThreshold = compactionThreshold;
+        this.datBackup = new PatientDatBackup();
+        this.idAllocator = new PatientIdAllocator();
+
+        try {
+            if (Files.exists(journalFile)) {
+                repairTornTail();
+            } else {
+                seedJournal(dataDir.resolve(TEXT_FILE_NAME));
+            }
+            replayJournal();
+            idAllocator.seedFrom(patients.keySet());
+        } catch (Exception e) {
+            storageLock.release();
+            throw e;
+        }
+
+        this.backupScheduler = new BackupScheduler(datBackup);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "patient-journal-compactor");
+            t.setDaemon(true); // Never keep the app alive just for compaction
+            return t;
+        });
+    }
+
+    @Override
+    public synchronized Patient addPatient(Patient patient) throws Exception {
+        String newId = idAllocator.nextId();
+        patient.setPatientId(newId);
+
+        Patient stored = PatientVersions.firstVersion(patient);
+        appendRecord(stored);
+        patients.put(newId, stored);
+        patient.setVersion(stored.getVersion());
+        afterWrite();
+        return patient;
+    }
+
+    @Override
+    public synchronized void updatePatient(Patient patient) throws Exception {
+        Patient current = patients.get(patient.getPatientId());
+        if (current == null) {
+            throw new Exception("Patient not found, could not update.");
+        }
+        Patient stored = PatientVersions.nextVersion(current, patient);
+        appendRecord(stored);
+        patients.put(patient.getPatientId(), stored);
+        patient.setVersion(stored.getVersion());
+        afterWrite();
+    }
+
+    /**
+     * Appends the whole batch with one write. If the write fails, the journal
+     * is truncated back to where it was, so no half batch is ever replayed.
+     */
+    @Override
+    public synchronized List<Patient> addPatients(List<Patient> newPatients) throws Exception {
+        if (newPatients.isEmpty()) {
+            return newPatients;
+        }
+        List<String> newIds = idAllocator.reserveBlock(newPatients.size());
+        List<Patient> stored = new ArrayList<>(newPatients.size());
+        for (int i = 0; i < newPatients.size(); i++) {
+            Patient copy = PatientVersions.firstVersion(newPatients.get(i));
+            copy.setPatientId(newIds.get(i));
+            stored.add(copy);
+        }
+
+        appendBatch(stored);
+        for (int i = 0; i < newPatients.size(); i++) {
+            newPatients.get(i).setPatientId(newIds.get(i));
+            newPatients.get(i).setVersion(stored.get(i).getVersion());
+            patients.put(newIds.get(i), stored.get(i));
+        }
+        afterWrite();
+        return newPatients;
+    }
+
+    @Override
+    public synchronized void updatePatients(List<Patient> changedPatients) throws Exception {
+        if (changedPatients.isEmpty()) {
+            return;
+        }
+        List<Patient> stored = new ArrayList<>(changedPatients.size());
+        for (Patient patient : changedPatients) {
+            Patient current = patients.get(patient.getPatientId());
+            if (current == null) {
+                throw new Exception("Patient " + patient.getPatientId() + " not found, batch not updated.");
+            }
+            stored.add(PatientVersions.nextVersion(current, patient));
+        }
+
+        appendBatch(stored);
+        for (int i = 0; i < stored.size(); i++) {
+            patients.put(stored.get(i).getPatientId(), stored.get(i));
+            changedPatients.get(i).setVersion(stored.get(i).getVersion());
+        }
+        afterWrite();
+    }
+
+    @Override
+    public synchronized Patient getPatient(String patientId) throws Exception {
+        Patient patient = patients.get(patientId);
+        return (patient != null) ? new Patient(patient) : null;
+    }
+
+    @Override
+    public synchronized List<Patient> getAllPatients() throws Exception {
+        List<Patient> all = new ArrayList<>(patients.size());
+        for (Patient patient : patients.values()) {
+            all.add(new Patient(patient));
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized Stream<Patient> streamPatients() throws Exception {
+        // Snapshot the references; the copies are made lazily as the stream is consumed
+        return new ArrayList<>(patients.values()).stream().map(Patient::new);
+    }
+
+    @Override
+    public synchronized int countPatients() throws Exception {
+        return patients.size();
+    }
+
+    /**
+     * Corrupt journal lines skipped during startup replay,
+     * e.g. "line 12 (byte 3480): bad date in field 8".
+     */
+    public synchronized List<String> getLoadProblems() {
+        return new ArrayList<>(replayProblems);
+    }
+
+    /**
+     * Waits for a running compaction, writes the last .dat backup, then lets
+     * another copy of the app open the journal.
+     */
+    @Override
+    public void close() throws Exception {
+        try {
+            compactor.shutdown();
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+            backupScheduler.shutdown();
+        } finally {
+            storageLock.release();
+        }
+    }
+
+    /**
+     * The scheduler that writes the .dat backup after writes.
+     */
+    public BackupScheduler getBackupScheduler() {
+        return backupScheduler;
+    }
+
+    // --- Journal I/O ---
+
+    /**
+     * Creates the journal from the data another engine left behind:
+     * patients.txt if there is one, otherwise the .dat backup.
+     * The journal is written to a temp file and moved into place, so a crash
+     * here just means seeding again on the next start.
+     */
+    private void seedJournal(Path textFile) throws Exception {
+        List<Patient> seed = PatientSeedData.load(textFile, datBackup, replayProblems);
+        if (seed.isEmpty()) {
+            return; // Fresh install, nothing to seed
+        }
+
+        Path tempFile = journalFile.getParent().resolve(JOURNAL_FILE_NAME + ".seed");
+        try {
+            writeJournalFile(tempFile, seed);
+            Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new Exception("Error seeding patient journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cuts off a last line that has no line break (an append torn by a crash),
+     * so the next append does not get glued onto it. The torn bytes were never
+     * acknowledged to the caller, so nothing that was saved is lost.
+     */
+    private void repairTornTail() throws Exception {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = size;
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            while (end > 0) {
+                int chunk = (int) Math.min(buf.capacity(), end);
+                buf.clear().limit(chunk);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, end - chunk + buf.position()) < 0) {
+                        break;
+                    }
+                }
+                int i = chunk - 1;
+                while (i >= 0 && buf.get(i) != '\n') {
+                    i--;
+                }
+                if (i >= 0) {
+                    end = end - chunk + i + 1; // Just past the last line break
+                    break;
+                }
+                end -= chunk;
+            }
+            if (end < size) {
+                channel.truncate(end);
+                channel.force(true);
+                replayProblems.add("byte " + end + ": incomplete last record (" + (size - end)
+                        + " bytes) removed from the journal");
+            }
+        } catch (IOException e) {
+            throw new Exception("Error checking the end of the patient journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds the in-memory state by replaying every line of the journal.
+     */
+    private void replayJournal() throws Exception {
+        if (!Files.exists(journalFile)) {
+            return; // Fresh install, nothing to replay
+        }
+        try (PatientTextScanner scanner = new PatientTextScanner(Files.newInputStream(journalFile), StandardCharsets.UTF_8)) {
+            Patient patient;
+            while ((patient = scanner.next()) != null) {
+                journalLines++;
+                patients.put(patient.getPatientId(), patient); // Later lines overwrite earlier ones
+            }
+            journalLines += scanner.getProblems().size(); // Skipped lines still take up space
+            for (PatientTextScanner.ParseProblem problem : scanner.getProblems()) {
+                replayProblems.add(problem.toString());
+            }
+        } catch (IOException e) {
+            throw new Exception("Error replaying patient journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends one record to the end of the journal.
+     * Must be called while holding this DAO's lock, and followed by afterWrite()
+     * once the in-memory state has been updated.
+     */
+    private void appendRecord(Patient patient) throws Exception {
+        String line = PatientTextFormat.toText(patient);
+        appendLines(line + System.lineSeparator());
+        journalLines++;
+
+        if (compactionRunning) {
+            linesDuringCompaction.add(line); // Not in the snapshot being compacted
+        }
+    }
+
+    /**
+     * Appends several records with a single write.
+     * Must be called while holding this DAO's lock.
+     */
+    private void appendBatch(List<Patient> batch) throws Exception {
+        StringBuilder text = new StringBuilder();
+        List<String> lines = new ArrayList<>(batch.size());
+        for (Patient patient : batch) {
+            String line = PatientTextFormat.toText(patient);
+            lines.add(line);
+            text.append(line).append(System.lineSeparator());
+        }
+
+        appendLines(text.toString());
+        journalLines += lines.size();
+
+        if (compactionRunning) {
+            linesDuringCompaction.addAll(lines); // Not in the snapshot being compacted
+        }
+    }
+
+    /**
+     * Writes whole lines at the end of the journal and forces them to disk.
+     * If the write fails, the journal is truncated back to where it was,
+     * so no half record or half batch is ever replayed.
+     */
+    private void appendLines(String text) throws Exception {
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long sizeBefore = channel.size();
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(text);
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, sizeBefore + bytes.position());
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                channel.truncate(sizeBefore); // Roll back the partial write
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new Exception("Error appending to patient journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes one line per patient to a new file and forces it to disk.
+     */
+    private static void writeJournalFile(Path file, List<Patient> patients) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Patient patient : patients) {
+                writer.write(PatientTextFormat.toText(patient));
+                writer.newLine();
+            }
+        }
+        forceFile(file);
+    }
+
+    private static void forceFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // --- Background Compaction ---
+
+    /**
+     * Schedules the .dat backup, and starts a compaction if the journal holds too
+     * many stale lines. Called after the in-memory state is updated, so the
+     * snapshots include the latest write. Must be called while holding this DAO's lock.
+     */
+    private void afterWrite() {
+        backupScheduler.changed(this::backupSnapshot); // Copied once per backup run, on the backup thread
+        if (!compactionRunning && journalLines - patients.size() > compactionThreshold) {
+            startCompaction();
+        }
+    }
+
+    private synchronized List<Patient> backupSnapshot() {
+        List<Patient> snapshot = new ArrayList<>(patients.size());
+        for (Patient patient : patients.values()) {
+            snapshot.add(new Patient(patient));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Takes a snapshot of the live state and hands it to the compactor thread.
+     * Must be called while holding this DAO's lock.
+     */
+    private void startCompaction() {
+        List<Patient> snapshot = backupSnapshot();
+        compactionRunning = true;
+        linesDuringCompaction = new ArrayList<>();
+        compactor.submit(() -> compact(snapshot));
+    }
+
+    /**
+     * Writes the snapshot to a temp file (without holding the lock), then,
+     * under the lock, adds anything appended in the meantime and swaps the files.
+     */
+    private void compact(List<Patient> snapshot) {
+        Path tempFile = journalFile.getParent().resolve(JOURNAL_FILE_NAME + ".compact");
+        try {
+            writeJournalFile(tempFile, snapshot);
+
+            synchronized (this) {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.APPEND)) {
+                    for (String line : linesDuringCompaction) {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                forceFile(tempFile);
+                Files.move(tempFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journalLines = snapshot.size() + linesDuringCompaction.size();
+                compactionRunning = false;
+                linesDuringCompaction = null;
+            }
+        } catch (Exception e) {
+            // Any failure (including unchecked ones) must clear the flag, or compaction never runs again
+            System.err.println("Error: Failed to compact patient journal: " + e.getMessage());
+            synchronized (this) {
+                // The old journal is still intact; try again on a later append
+                compactionRunning = false;
+                linesDuringCompaction = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,488 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * PatientMappedDAO.java
+ * A binary, memory-mapped storage engine for large datasets.
+ *
+ * patients.bin layout:
+ *   Header:  int magic | int version | long dataEnd
+ *   Records: int recordLength
+ *            int age | int admissionEpochDay | int dischargeEpochDay | byte discharged
+ *            double baseBill | double insurancePercent | double finalBill
+ *            7 strings (id, name, contact, address, history, doctor, treatment),
+ *            each stored as int byteLength (-1 = null) + UTF-8 bytes
+ *            long version (records written before versions existed end without it)
+ *
+ * Records are only ever appended; an update writes a new copy and moves the
+ * index entry. patients.idx persists the (patientId -> offset) index as
+ * appended entries (short idLength | id bytes | long offset; last entry wins),
+ * so startup does not have to scan the data file. A write is published by
+ * moving dataEnd; if its index entries then cannot be written, dataEnd is
+ * moved back, so a save reported as failed never reappears on the next start.
+ *
+ * A patients.bin without records is seeded from patients.txt (or the .dat
+ * backup), so switching engines keeps the data.
+ *
+ * Note: a single MappedByteBuffer is limited to 2 GB of data.
+ */
+public class PatientMappedDAO implements PatientDAO {
+
+    private final String DATA_FILE_NAME = "patients.bin";
+    private final String INDEX_FILE_NAME = "patients.idx";
+    private final String DATA_DIR_NAME = ".hospitalapp";
+    private final String LOCK_FILE_NAME = "patients.bin.lock"; // Held while this DAO is open
+    private final String TEXT_FILE_NAME = "patients.txt"; // Seeds a new data file
+
+    private static final int MAGIC = 0x48505331; // "HPS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+    private static final long INITIAL_MAP_SIZE = 1L << 20; // 1 MB, doubled as needed
+
+    private final Path dataFile;
+    private final Path indexFile;
+    private final StorageLock storageLock; // One copy of the app at a time
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private MappedByteBuffer mapped;
+    private long dataEnd;
+
+    // patientId -> record offset, in insertion order
+    private final Map<String, Long> offsetIndex = new LinkedHashMap<>();
+
+    private final PatientIdAllocator idAllocator = new PatientIdAllocator();
+    private final List<String> loadProblems = new ArrayList<>(); // Seed records that could not be read
+
+    public PatientMappedDAO() throws Exception {
+        String homeDir = System.getProperty("user.home");
+        Path dataDir = Paths.get(homeDir, DATA_DIR_NAME);
+        try {
+            Files.createDirectories(dataDir);
+        } catch (IOException e) {
+            throw new Exception("Could not create data directory: " + e.getMessage());
+        }
+        this.storageLock = StorageLock.acquire(dataDir.resolve(LOCK_FILE_NAME), "mapped");
+        try {
+            this.dataFile = dataDir.resolve(DATA_FILE_NAME);
+            this.indexFile = dataDir.resolve(INDEX_FILE_NAME);
+
+            boolean isNew = !Files.exists(dataFile) || Files.size(dataFile) < HEADER_SIZE;
+            this.dataChannel = FileChannel.open(dataFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.indexChannel = FileChannel.open(indexFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            remap(Math.max(INITIAL_MAP_SIZE, dataChannel.size()));
+            if (isNew) {
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                setDataEnd(HEADER_SIZE);
+                mapped.force(0, HEADER_SIZE);
+                indexChannel.truncate(0); // An index without data is meaningless
+            } else {
+                if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                    throw new Exception("patients.bin is not a supported patient data file.");
+                }
+                dataEnd = mapped.getLong(8);
+            }
+            loadIndex();
+            if (dataEnd == HEADER_SIZE) {
+                // No records yet (new, or a seed that failed last time): take over the other engines' data
+                List<Patient> seed = PatientSeedData.load(dataDir.resolve(TEXT_FILE_NAME), new PatientDatBackup(), loadProblems);
+                if (!seed.isEmpty()) {
+                    writeBatch(seed); // Keeps their IDs and versions
+                }
+            }
+            idAllocator.seedFrom(offsetIndex.keySet());
+        } catch (IOException e) {
+            storageLock.release();
+            throw new Exception("Could not open binary patient store: " + e.getMessage());
+        } catch (Exception e) {
+            storageLock.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized Patient addPatient(Patient patient) throws Exception {
+        patient.setPatientId(idAllocator.nextId());
+        Patient stored = PatientVersions.firstVersion(patient);
+        writeRecord(stored);
+        patient.setVersion(stored.getVersion());
+        return patient;
+    }
+
+    @Override
+    public synchronized void updatePatient(Patient patient) throws Exception {
+        Long offset = offsetIndex.get(patient.getPatientId());
+        if (offset == null) {
+            throw new Exception("Patient not found, could not update.");
+        }
+        Patient stored = PatientVersions.nextVersion(readRecord(offset), patient);
+        writeRecord(stored);
+        patient.setVersion(stored.getVersion());
+    }
+
+    @Override
+    public synchronized List<Patient> addPatients(List<Patient> newPatients) throws Exception {
+        if (newPatients.isEmpty()) {
+            return newPatients;
+        }
+        List<String> newIds = idAllocator.reserveBlock(newPatients.size());
+        List<Patient> batch = new ArrayList<>(newPatients.size());
+        for (int i = 0; i < newPatients.size(); i++) {
+            Patient copy = PatientVersions.firstVersion(newPatients.get(i));
+            copy.setPatientId(newIds.get(i));
+            batch.add(copy);
+        }
+
+        writeBatch(batch);
+        for (int i = 0; i < newPatients.size(); i++) {
+            newPatients.get(i).setPatientId(newIds.get(i));
+            newPatients.get(i).setVersion(batch.get(i).getVersion());
+        }
+        return newPatients;
+    }
+
+    @Override
+    public synchronized void updatePatients(List<Patient> changedPatients) throws Exception {
+        List<Patient> batch = new ArrayList<>(changedPatients.size());
+        for (Patient patient : changedPatients) {
+            Long offset = offsetIndex.get(patient.getPatientId());
+            if (offset == null) {
+                throw new Exception("Patient " + patient.getPatientId() + " not found, batch not updated.");
+            }
+            batch.add(PatientVersions.nextVersion(readRecord(offset), patient));
+        }
+        writeBatch(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            changedPatients.get(i).setVersion(batch.get(i).getVersion());
+        }
+    }
+
+    @Override
+    public synchronized Patient getPatient(String patientId) throws Exception {
+        Long offset = offsetIndex.get(patientId);
+        return (offset != null) ? readRecord(offset) : null;
+    }
+
+    @Override
+    public synchronized List<Patient> getAllPatients() throws Exception {
+        List<Patient> patients = new ArrayList<>(offsetIndex.size());
+        for (long offset : offsetIndex.values()) {
+            patients.add(readRecord(offset));
+        }
+        return patients;
+    }
+
+    /**
+     * Streams patients by decoding each record only when the stream reaches it.
+     * Only the offsets are copied up front (8 bytes per patient).
+     */
+    @Override
+    public synchronized Stream<Patient> streamPatients() throws Exception {
+        long[] offsets = new long[offsetIndex.size()];
+        int i = 0;
+        for (long offset : offsetIndex.values()) {
+            offsets[i++] = offset;
+        }
+        return LongStream.of(offsets).mapToObj(this::readRecordLocked);
+    }
+
+    @Override
+    public synchronized int countPatients() throws Exception {
+        return offsetIndex.size();
+    }
+
+    /**
+     * Records of patients.txt that could not be read when seeding a new data file.
+     */
+    public synchronized List<String> getLoadProblems() {
+        return new ArrayList<>(loadProblems);
+    }
+
+    /**
+     * Closes the files and lets another copy of the app open them.
+     */
+    @Override
+    public synchronized void close() throws Exception {
+        try {
+            dataChannel.close();
+            indexChannel.close();
+        } finally {
+            storageLock.release();
+        }
+    }
+
+    // --- Record Encoding ---
+
+    private void writeRecord(Patient p) throws Exception {
+        long offset = dataEnd;
+        long end = encodeRecord(p, offset);
+
+        // Publish: the record and the end marker reach the disk before the index points at them
+        publish(offset, end);
+        try {
+            appendIndexEntries(List.of(p.getPatientId()), new long[] {offset});
+        } catch (Exception e) {
+            unpublish(offset);
+            throw e;
+        }
+        offsetIndex.put(p.getPatientId(), offset);
+    }
+
+    /**
+     * Writes a batch of records past the current end, then publishes them all
+     * with a single update of the dataEnd marker. Until that moment none of
+     * them is visible, so a failed (or interrupted) batch leaves nothing behind.
+     * If the index entries cannot be written, the marker is moved back.
+     * The in-memory index only changes once every index entry has been written.
+     */
+    private void writeBatch(List<Patient> batch) throws Exception {
+        long[] offsets = new long[batch.size()];
+        List<String> ids = new ArrayList<>(batch.size());
+        long start = dataEnd;
+        long end = start;
+        for (int i = 0; i < batch.size(); i++) {
+            offsets[i] = end;
+            ids.add(batch.get(i).getPatientId());
+            end = encodeRecord(batch.get(i), end);
+        }
+
+        publish(start, end);
+        try {
+            appendIndexEntries(ids, offsets);
+        } catch (Exception e) {
+            unpublish(start);
+            throw e;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            offsetIndex.put(ids.get(i), offsets[i]);
+        }
+    }
+
+    /**
+     * Forces the records in [start, end) to disk, then moves the end marker and forces
+     * the header. An index entry is only written after this, so patients.idx never
+     * points at a record that a crash could still lose.
+     */
+    private void publish(long start, long end) {
+        mapped.force((int) start, (int) (end - start));
+        setDataEnd(end);
+        mapped.force(0, HEADER_SIZE);
+    }
+
+    /**
+     * Moves the end marker back to before a write whose index entries failed, and
+     * forces the header, so the next start does not re-index (and revive) records
+     * whose save was reported as failed. Only a crash between publish() and this
+     * can still leave them, which the next start then indexes as saved.
+     */
+    private void unpublish(long previousEnd) {
+        setDataEnd(previousEnd);
+        mapped.force(0, HEADER_SIZE);
+    }
+
+    /**
+     * Encodes one record at the given offset (growing the mapping if needed).
+     * @return The offset just past the record.
+     */
+    private long encodeRecord(Patient p, long offset) throws Exception {
+        byte[][] strings = {
+            utf8(p.getPatientId()), utf8(p.getName()), utf8(p.getContact()), utf8(p.getAddress()),
+            utf8(p.getMedicalHistory()), utf8(p.getDoctorAssigned()), utf8(p.getTreatmentGiven())
+        };
+        int length = 4 + 4 + 4 + 4 + 1 + 8 + 8 + 8 + 8;
+        for (byte[] s : strings) {
+            length += 4 + (s != null ? s.length : 0);
+        }
+
+        ensureCapacity(offset + length);
+        ByteBuffer buf = mapped.duplicate();
+        buf.position((int) offset);
+        buf.putInt(length);
+        buf.putInt(p.getAge());
+        buf.putInt(toEpochDay(p.getDateOfAdmission()));
+        buf.putInt(toEpochDay(p.getDateOfDischarge()));
+        buf.put((byte) (p.isDischarged() ? 1 : 0));
+        buf.putDouble(p.getBaseBillAmount());
+        buf.putDouble(p.getInsuranceDiscountPercent());
+        buf.putDouble(p.getFinalBillAmount());
+        for (byte[] s : strings) {
+            if (s == null) {
+                buf.putInt(-1);
+            } else {
+                buf.putInt(s.length);
+                buf.put(s);
+            }
+        }
+        buf.putLong(p.getVersion());
+        return offset + length;
+    }
+
+    private synchronized Patient readRecordLocked(long offset) {
+        return readRecord(offset);
+    }
+
+    private Patient readRecord(long offset) {
+        ByteBuffer buf = mapped.duplicate();
+        int recordEnd = (int) offset + buf.getInt((int) offset);
+        buf.position((int) offset + 4); // Skip the record length
+        Patient p = new Patient();
+        p.setAge(buf.getInt());
+        p.setDateOfAdmission(fromEpochDay(buf.getInt()));
+        p.setDateOfDischarge(fromEpochDay(buf.getInt()));
+        p.setDischarged(buf.get() == 1);
+        p.setBaseBillAmount(buf.getDouble());
+        p.setInsuranceDiscountPercent(buf.getDouble());
+        p.setFinalBillAmount(buf.getDouble());
+        p.setPatientId(readString(buf));
+        p.setName(readString(buf));
+        p.setContact(readString(buf));
+        p.setAddress(readString(buf));
+        p.setMedicalHistory(readString(buf));
+        p.setDoctorAssigned(readString(buf));
+        p.setTreatmentGiven(readString(buf));
+        if (buf.position() + 8 <= recordEnd) {
+            p.setVersion(buf.getLong());
+        }
+        return p;
+    }
+
+    private String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- Mapping & Index Helpers ---
+
+    private void setDataEnd(long end) {
+        dataEnd = end;
+        mapped.putLong(8, end);
+    }
+
+    private void ensureCapacity(long needed) throws Exception {
+        if (needed > Integer.MAX_VALUE) {
+            throw new Exception("patients.bin has reached the 2 GB limit of a single mapping.");
+        }
+        if (needed > mapped.capacity()) {
+            remap(Math.min(Integer.MAX_VALUE, Math.max(needed, (long) mapped.capacity() * 2)));
+        }
+    }
+
+    private void remap(long size) throws IOException {
+        // Mapping past the end of the file grows the file to that size
+        mapped = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Appends index entries with one write. On failure the index file is cut back,
+     * so it never holds part of a batch.
+     */
+    private void appendIndexEntries(List<String> patientIds, long[] offsets) throws Exception {
+        int size = 0;
+        byte[][] ids = new byte[patientIds.size()][];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = patientIds.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 2 + ids[i].length + 8;
+        }
+        ByteBuffer entries = ByteBuffer.allocate(size);
+        for (int i = 0; i < ids.length; i++) {
+            entries.putShort((short) ids[i].length).put(ids[i]).putLong(offsets[i]);
+        }
+        entries.flip();
+
+        long sizeBefore = -1;
+        try {
+            sizeBefore = indexChannel.size();
+            while (entries.hasRemaining()) {
+                indexChannel.write(entries, sizeBefore + entries.position());
+            }
+        } catch (IOException e) {
+            if (sizeBefore >= 0) {
+                try {
+                    indexChannel.truncate(sizeBefore);
+                } catch (IOException ignored) {
+                    // loadIndex() drops a torn last entry anyway
+                }
+            }
+            throw new Exception("Error writing patient index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads patients.idx. If it is missing or does not cover every record
+     * (e.g. the app was killed between the two writes), the index is rebuilt
+     * by walking the records in patients.bin.
+     */
+    private void loadIndex() throws IOException {
+        ByteBuffer idx = ByteBuffer.allocate((int) indexChannel.size());
+        indexChannel.read(idx, 0);
+        idx.flip();
+        long lastOffset = -1;
+        while (idx.remaining() >= 2) {
+            int idLength = idx.getShort();
+            if (idx.remaining() < idLength + 8) break; // Torn last entry
+            byte[] id = new byte[idLength];
+            idx.get(id);
+            long offset = idx.getLong();
+            if (offset < HEADER_SIZE || offset >= dataEnd) {
+                continue; // Points past the published data (written before records were forced)
+            }
+            offsetIndex.put(new String(id, StandardCharsets.UTF_8), offset);
+            lastOffset = Math.max(lastOffset, offset);
+        }
+
+        long scanFrom = (lastOffset < 0) ? HEADER_SIZE : lastOffset + mapped.getInt((int) lastOffset);
+        if (scanFrom < dataEnd) {
+            indexChannel.truncate(idx.position()); // Drop any torn entry before appending
+            try {
+                List<String> ids = new ArrayList<>();
+                List<Long> offsets = new ArrayList<>();
+                for (long offset = scanFrom; offset < dataEnd; offset += mapped.getInt((int) offset)) {
+                    ids.add(readRecord(offset).getPatientId());
+                    offsets.add(offset);
+                }
+                appendIndexEntries(ids, offsets.stream().mapToLong(Long::longValue).toArray());
+                for (int i = 0; i < ids.size(); i++) {
+                    offsetIndex.put(ids.get(i), offsets.get(i));
+                }
+            } catch (Exception e) {
+                throw new IOException("Could not rebuild patient index: " + e.getMessage());
+            }
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        return (s != null) ? s.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return (date != null) ? (int) date.toEpochDay() : NULL_DATE;
+    }
+
+    private static LocalDate fromEpochDay(int day) {
+        return (day != NULL_DATE) ? LocalDate.ofEpochDay(day) : null;
+    }
+}
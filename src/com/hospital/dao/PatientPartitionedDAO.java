@@ -0,0 +1,766 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * PatientPartitionedDAO.java
+ * Splits patients into one text file per admission month, so work on today's
+ * admissions never has to read or rewrite years of discharged history.
+ *
+ * Files in .hospitalapp/partitions/:
+ *   patients-2026-10.txt   One partition (same "||" format as patients.txt)
+ *   manifest.txt           "yyyy-MM count" per partition
+ *   directory.txt          Append-only "patientId yyyy-MM" lines (last line wins),
+ *                          so a lookup by ID opens only the one partition it needs
+ *   commit.txt             Present only while a write is being applied (see below)
+ *
+ * A write touching several partitions (e.g. a patient moving months) is made
+ * atomic with an intent record: the new partitions are first written next to
+ * the old ones as .new files, then commit.txt (listing them and the new
+ * directory lines) is moved into place - that move is the commit point.
+ * Only then are the .new files renamed over the old partitions and the
+ * directory and manifest updated. If the app dies in between, the next start
+ * replays commit.txt (or throws away .new files that were never committed),
+ * and rebuilds directory.txt and manifest.txt from the partition files.
+ *
+ * Only a few recently used partitions are kept in memory (LRU); scans over
+ * history (streaming, queries, paging) read older partitions without caching
+ * them. Queries with an admission date range read only the months in range,
+ * and pages in storage order skip whole partitions by their manifest counts.
+ *
+ * An empty store is seeded from patients.txt (or the .dat backup), so
+ * switching engines keeps the data.
+ */
+public class PatientPartitionedDAO implements PatientDAO {
+
+    private final String DATA_DIR_NAME = ".hospitalapp";
+    private final String PARTITION_DIR_NAME = "partitions";
+    private final String MANIFEST_FILE_NAME = "manifest.txt";
+    private final String DIRECTORY_FILE_NAME = "directory.txt";
+    private final String COMMIT_FILE_NAME = "commit.txt";
+    private final String LOCK_FILE_NAME = "partitions.lock"; // Held while this DAO is open
+    private final String TEXT_FILE_NAME = "patients.txt"; // Seeds an empty store
+    private static final String STAGED_SUFFIX = ".new";
+    private static final String PARTITION_PREFIX = "patients-";
+    private static final String PARTITION_SUFFIX = ".txt";
+    private static final String NO_DATE_PARTITION = "undated"; // Records without an admission date
+    private static final int DEFAULT_CACHED_PARTITIONS = 3;
+
+    private final Path partitionDir;
+    private final Path manifestFile;
+    private final Path directoryFile;
+    private final Path commitFile;
+    private final StorageLock storageLock; // One copy of the app at a time
+
+    // partition key ("yyyy-MM") -> number of patients, sorted by month
+    private final TreeMap<String, Integer> manifest = new TreeMap<>();
+    // patientId -> partition key
+    private final Map<String, String> directory = new HashMap<>();
+
+    // Recently used partitions, least recently used first
+    private final int maxCachedPartitions;
+    private final LinkedHashMap<String, Map<String, Patient>> partitionCache;
+
+    private final PatientIdAllocator idAllocator = new PatientIdAllocator();
+    private final List<String> loadProblems = new ArrayList<>(); // Seed records that could not be read
+
+    public PatientPartitionedDAO() throws Exception {
+        this(DEFAULT_CACHED_PARTITIONS);
+    }
+
+    public PatientPartitionedDAO(int maxCachedPartitions) throws Exception {
+        String homeDir = System.getProperty("user.home");
+        this.partitionDir = Paths.get(homeDir, DATA_DIR_NAME, PARTITION_DIR_NAME);
+        this.manifestFile = partitionDir.resolve(MANIFEST_FILE_NAME);
+        this.directoryFile = partitionDir.resolve(DIRECTORY_FILE_NAME);
+        this.commitFile = partitionDir.resolve(COMMIT_FILE_NAME);
+        this.maxCachedPartitions = Math.max(1, maxCachedPartitions);
+        this.partitionCache = new LinkedHashMap<>(16, 0.75f, true);
+
+        try {
+            Files.createDirectories(partitionDir);
+        } catch (IOException e) {
+            throw new Exception("Could not create partition directory: " + e.getMessage());
+        }
+        this.storageLock = StorageLock.acquire(partitionDir.resolve(LOCK_FILE_NAME), "partitioned");
+        try {
+            loadState();
+            if (manifest.isEmpty()) {
+                seed(Paths.get(homeDir, DATA_DIR_NAME, TEXT_FILE_NAME));
+            }
+            idAllocator.seedFrom(directory.keySet());
+        } catch (Exception e) {
+            storageLock.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes any interrupted write, then loads the manifest and directory,
+     * rebuilding them from the partition files if they do not agree.
+     */
+    private void loadState() throws Exception {
+        manifest.clear();
+        directory.clear();
+        partitionCache.clear();
+        boolean recovered = recoverInterruptedWrite();
+        loadManifest();
+        loadDirectory();
+        if (recovered || !isDirectoryConsistent()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Fills an empty store from the data another engine left behind, keeping IDs
+     * and versions. It is one partition write, so a crash part way through just
+     * means seeding again on the next start.
+     */
+    private void seed(Path textFile) throws Exception {
+        List<Patient> seed = PatientSeedData.load(textFile, new PatientDatBackup(), loadProblems);
+        if (!seed.isEmpty()) {
+            writeChanges(seed);
+        }
+    }
+
+    @Override
+    public synchronized Patient addPatient(Patient patient) throws Exception {
+        String newId = idAllocator.nextId();
+        Patient stored = PatientVersions.firstVersion(patient);
+        stored.setPatientId(newId);
+
+        writeChanges(List.of(stored));
+        patient.setPatientId(newId);
+        patient.setVersion(stored.getVersion());
+        return patient;
+    }
+
+    @Override
+    public synchronized void updatePatient(Patient patient) throws Exception {
+        String key = directory.get(patient.getPatientId());
+        if (key == null) {
+            throw new Exception("Patient not found, could not update.");
+        }
+        Patient stored = PatientVersions.nextVersion(storedPatient(key, patient.getPatientId()), patient);
+        writeChanges(List.of(stored));
+        patient.setVersion(stored.getVersion());
+    }
+
+    @Override
+    public synchronized List<Patient> addPatients(List<Patient> newPatients) throws Exception {
+        if (newPatients.isEmpty()) {
+            return newPatients;
+        }
+        List<String> newIds = idAllocator.reserveBlock(newPatients.size());
+        List<Patient> stored = new ArrayList<>(newPatients.size());
+        for (int i = 0; i < newPatients.size(); i++) {
+            Patient copy = PatientVersions.firstVersion(newPatients.get(i));
+            copy.setPatientId(newIds.get(i));
+            stored.add(copy);
+        }
+
+        writeChanges(stored);
+        for (int i = 0; i < newPatients.size(); i++) {
+            newPatients.get(i).setPatientId(newIds.get(i));
+            newPatients.get(i).setVersion(stored.get(i).getVersion());
+        }
+        return newPatients;
+    }
+
+    @Override
+    public synchronized void updatePatients(List<Patient> changedPatients) throws Exception {
+        List<Patient> stored = new ArrayList<>(changedPatients.size());
+        for (Patient patient : changedPatients) {
+            String key = directory.get(patient.getPatientId());
+            if (key == null) {
+                throw new Exception("Patient " + patient.getPatientId() + " not found, batch not updated.");
+            }
+            stored.add(PatientVersions.nextVersion(storedPatient(key, patient.getPatientId()), patient));
+        }
+        writeChanges(stored);
+        for (int i = 0; i < stored.size(); i++) {
+            changedPatients.get(i).setVersion(stored.get(i).getVersion());
+        }
+    }
+
+    /**
+     * Opens only the partition the patient lives in.
+     */
+    @Override
+    public synchronized Patient getPatient(String patientId) throws Exception {
+        String key = directory.get(patientId);
+        if (key == null) {
+            return null;
+        }
+        Patient patient = partition(key).get(patientId);
+        return (patient != null) ? new Patient(patient) : null;
+    }
+
+    @Override
+    public synchronized List<Patient> getAllPatients() throws Exception {
+        List<Patient> all = new ArrayList<>();
+        for (String key : manifest.keySet()) {
+            for (Patient patient : readPartition(key).values()) {
+                all.add(patient); // Freshly read, so no copy needed
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Streams every partition in month order, reading one partition at a time
+     * (without filling the cache with history).
+     */
+    @Override
+    public synchronized Stream<Patient> streamPatients() throws Exception {
+        List<String> keys = new ArrayList<>(manifest.keySet());
+        return keys.stream().flatMap(key -> readPartitionLocked(key).values().stream());
+    }
+
+    @Override
+    public synchronized int countPatients() throws Exception {
+        int count = 0;
+        for (int partitionCount : manifest.values()) {
+            count += partitionCount;
+        }
+        return count;
+    }
+
+    /**
+     * Storage order is month order, so a page skips whole partitions by their
+     * manifest counts and reads only the ones it overlaps. Sorted pages use the
+     * scan in PatientDAO.
+     */
+    @Override
+    public synchronized List<Patient> getPatients(int offset, int limit, PatientSortKey sortKey, boolean descending)
+            throws Exception {
+        if (sortKey != null || descending || offset < 0 || limit <= 0) {
+            return PatientDAO.super.getPatients(offset, limit, sortKey, descending); // Descending comes back here
+        }
+        List<Patient> page = new ArrayList<>(limit);
+        int skip = offset;
+        for (Map.Entry<String, Integer> entry : manifest.entrySet()) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (skip >= entry.getValue()) {
+                skip -= entry.getValue();
+                continue;
+            }
+            for (Patient patient : partitionForReading(entry.getKey()).values()) {
+                if (skip > 0) {
+                    skip--;
+                } else if (page.size() < limit) {
+                    page.add(new Patient(patient));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Reads only the partitions a query can match: with an admission date range,
+     * just the months in it (undated patients never match a range); otherwise
+     * every partition, one at a time.
+     */
+    @Override
+    public synchronized List<Patient> findPatients(PatientQuery query) throws Exception {
+        List<String> keys = query.hasDateRange()
+                ? datedPartitions(query.getAdmittedFrom(), query.getAdmittedTo())
+                : new ArrayList<>(manifest.keySet());
+        List<Patient> result = new ArrayList<>();
+        for (String key : keys) {
+            for (Patient patient : partitionForReading(key).values()) {
+                if (query.matches(patient)) {
+                    result.add(new Patient(patient));
+                }
+            }
+        }
+        result.sort(PatientSortKey.ADMISSION_DATE.comparator());
+        return result;
+    }
+
+    /**
+     * Returns patients admitted between two dates (inclusive),
+     * reading only the partitions for the months in that range.
+     * @param from First admission date, or null for no lower bound.
+     * @param to Last admission date, or null for no upper bound.
+     * @return Empty if "from" is after "to". Patients without an admission date never match.
+     */
+    public synchronized List<Patient> getPatientsAdmittedBetween(LocalDate from, LocalDate to) throws Exception {
+        List<Patient> result = new ArrayList<>();
+        for (String key : datedPartitions(from, to)) {
+            for (Patient patient : partitionForReading(key).values()) {
+                LocalDate admitted = patient.getDateOfAdmission();
+                if (admitted != null && (from == null || !admitted.isBefore(from))
+                        && (to == null || !admitted.isAfter(to))) {
+                    result.add(new Patient(patient));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The dated partitions whose month overlaps [from, to]; either end may be null.
+     */
+    private List<String> datedPartitions(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        NavigableMap<String, Integer> months = manifest.headMap(NO_DATE_PARTITION, false); // Dated partitions only
+        if (from != null) {
+            months = months.tailMap(partitionKey(from), true);
+        }
+        if (to != null) {
+            months = months.headMap(partitionKey(to), true);
+        }
+        return new ArrayList<>(months.keySet());
+    }
+
+    /**
+     * Records of patients.txt that could not be read when seeding an empty store.
+     */
+    public synchronized List<String> getLoadProblems() {
+        return new ArrayList<>(loadProblems);
+    }
+
+    /**
+     * The partitions currently on disk, with their patient counts.
+     */
+    public synchronized Map<String, Integer> getPartitionCounts() {
+        return new TreeMap<>(manifest);
+    }
+
+    /**
+     * Lets another copy of the app open the partitions.
+     */
+    @Override
+    public synchronized void close() throws Exception {
+        storageLock.release();
+    }
+
+    // --- Writing ---
+
+    /**
+     * Applies a set of new/changed patients, rewriting only the partitions they touch.
+     * A patient whose admission month changed is moved between partitions.
+     * All touched partitions change together (see the class comment).
+     */
+    private void writeChanges(List<Patient> changes) throws Exception {
+        // 1. Work out the new contents of every touched partition (on copies)
+        Map<String, Map<String, Patient>> touched = new TreeMap<>();
+        Map<String, String> newLocations = new LinkedHashMap<>();
+        for (Patient patient : changes) {
+            String id = patient.getPatientId();
+            String newKey = partitionKey(patient.getDateOfAdmission());
+            String oldKey = directory.get(id);
+            if (oldKey != null && !oldKey.equals(newKey)) {
+                touchedPartition(touched, oldKey).remove(id);
+            }
+            touchedPartition(touched, newKey).put(id, patient);
+            if (!newKey.equals(oldKey)) {
+                newLocations.put(id, newKey);
+            }
+        }
+
+        // 2. Stage the new partitions next to the old ones; nothing visible has changed yet
+        try {
+            for (Map.Entry<String, Map<String, Patient>> entry : touched.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    writeStagedPartition(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (Exception e) {
+            discardStagedPartitions();
+            throw e;
+        }
+
+        // 3. Commit point: the intent record says which partitions to swap in
+        List<String> intent = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Patient>> entry : touched.entrySet()) {
+            intent.add((entry.getValue().isEmpty() ? "delete " : "replace ") + entry.getKey());
+        }
+        for (Map.Entry<String, String> entry : newLocations.entrySet()) {
+            intent.add("locate " + entry.getKey() + " " + entry.getValue());
+        }
+        try {
+            writeAtomically(commitFile, intent);
+        } catch (Exception e) {
+            discardStagedPartitions();
+            throw new Exception("Error committing partition write: " + e.getMessage());
+        }
+
+        // 4. Apply it. From here on a crash is finished by the next start (recoverInterruptedWrite)
+        try {
+            applyIntent(intent);
+            directory.putAll(newLocations);
+            for (Map.Entry<String, Map<String, Patient>> entry : touched.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    manifest.remove(entry.getKey());
+                } else {
+                    manifest.put(entry.getKey(), entry.getValue().size());
+                }
+                cachePartition(entry.getKey(), entry.getValue());
+            }
+            saveManifest();
+            Files.delete(commitFile);
+        } catch (Exception e) {
+            // The write is committed: finish it the way a restart would, so memory matches the files
+            loadState();
+            if (Files.exists(commitFile)) {
+                throw new Exception("Error applying partition write: " + e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, Patient> touchedPartition(Map<String, Map<String, Patient>> touched, String key) throws Exception {
+        Map<String, Patient> contents = touched.get(key);
+        if (contents == null) {
+            contents = new LinkedHashMap<>(partition(key));
+            touched.put(key, contents);
+        }
+        return contents;
+    }
+
+    /**
+     * The stored copy of a patient the directory places in this partition.
+     */
+    private Patient storedPatient(String key, String patientId) throws Exception {
+        Patient stored = partition(key).get(patientId);
+        if (stored == null) {
+            throw new Exception("Patient " + patientId + " is listed in partition " + key
+                    + " but is not in its file; restart the app to rebuild the directory.");
+        }
+        return stored;
+    }
+
+    private void writeStagedPartition(String key, Map<String, Patient> contents) throws Exception {
+        List<String> lines = new ArrayList<>(contents.size());
+        for (Patient patient : contents.values()) {
+            lines.add(PatientTextFormat.toText(patient));
+        }
+        Path staged = stagedFile(key);
+        try {
+            writeForced(staged, lines);
+        } catch (IOException e) {
+            throw new Exception("Error saving partition " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Carries out a committed intent record. Safe to repeat: a partition whose
+     * .new file is already gone was swapped in before.
+     */
+    private void applyIntent(List<String> intent) throws Exception {
+        List<String> locations = new ArrayList<>();
+        for (String line : intent) {
+            String[] parts = line.split(" ");
+            try {
+                if (parts[0].equals("replace") && parts.length == 2) {
+                    Path staged = stagedFile(parts[1]);
+                    if (Files.exists(staged)) {
+                        Files.move(staged, partitionFile(parts[1]),
+                                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } else if (parts[0].equals("delete") && parts.length == 2) {
+                    Files.deleteIfExists(partitionFile(parts[1]));
+                } else if (parts[0].equals("locate") && parts.length == 3) {
+                    locations.add(parts[1] + " " + parts[2]);
+                }
+            } catch (IOException e) {
+                throw new Exception("Error applying partition write (" + line + "): " + e.getMessage());
+            }
+        }
+        appendDirectory(locations);
+    }
+
+    /**
+     * Finishes or rolls back a write that was interrupted by a crash.
+     * @return true if a committed write was replayed (so the directory and manifest need rebuilding).
+     */
+    private boolean recoverInterruptedWrite() throws Exception {
+        if (Files.exists(commitFile)) {
+            List<String> intent;
+            try {
+                intent = Files.readAllLines(commitFile, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new Exception("Error reading interrupted partition write: " + e.getMessage());
+            }
+            applyIntent(intent);
+            try {
+                Files.delete(commitFile);
+            } catch (IOException e) {
+                throw new Exception("Error finishing interrupted partition write: " + e.getMessage());
+            }
+            System.err.println("Finished a partition write interrupted by a crash.");
+            discardStagedPartitions(); // Anything left was staged by a later, uncommitted write
+            return true;
+        }
+        discardStagedPartitions(); // Staged but never committed: the old partitions still stand
+        return false;
+    }
+
+    private void discardStagedPartitions() {
+        try (Stream<Path> files = Files.list(partitionDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(PARTITION_SUFFIX + STAGED_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not remove staged partition files: " + e.getMessage());
+        }
+    }
+
+    // --- Partition Cache ---
+
+    /**
+     * Returns a partition's contents, reading it into the LRU cache if needed.
+     * Callers must not modify the returned map.
+     */
+    private Map<String, Patient> partition(String key) throws Exception {
+        Map<String, Patient> contents = partitionCache.get(key);
+        if (contents == null) {
+            contents = readPartition(key);
+            cachePartition(key, contents);
+        }
+        return contents;
+    }
+
+    /**
+     * A partition's contents for reading only: the cached copy if there is one,
+     * otherwise read from disk WITHOUT caching it, so a pass over history does
+     * not push the recent months out of the cache. Callers must not modify it.
+     */
+    private Map<String, Patient> partitionForReading(String key) throws Exception {
+        Map<String, Patient> cached = partitionCache.get(key);
+        return (cached != null) ? cached : readPartition(key);
+    }
+
+    private void cachePartition(String key, Map<String, Patient> contents) {
+        partitionCache.put(key, contents);
+        while (partitionCache.size() > maxCachedPartitions) {
+            String eldest = partitionCache.keySet().iterator().next();
+            partitionCache.remove(eldest);
+        }
+    }
+
+    private Map<String, Patient> readPartition(String key) throws Exception {
+        Map<String, Patient> contents = new LinkedHashMap<>();
+        Path file = partitionFile(key);
+        if (!Files.exists(file)) {
+            return contents;
+        }
+        try (PatientTextScanner scanner = new PatientTextScanner(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            Patient patient;
+            while ((patient = scanner.next()) != null) {
+                contents.put(patient.getPatientId(), patient);
+            }
+        } catch (IOException e) {
+            throw new Exception("Error loading partition " + key + ": " + e.getMessage());
+        }
+        return contents;
+    }
+
+    private synchronized Map<String, Patient> readPartitionLocked(String key) {
+        try {
+            return readPartition(key);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    // --- Manifest & Directory ---
+
+    private void loadManifest() throws Exception {
+        if (!Files.exists(manifestFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length == 2) {
+                    manifest.put(parts[0], Integer.parseInt(parts[1]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new Exception("Error loading partition manifest: " + e.getMessage());
+        }
+    }
+
+    private void saveManifest() throws Exception {
+        List<String> lines = new ArrayList<>(manifest.size());
+        for (Map.Entry<String, Integer> entry : manifest.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        try {
+            writeAtomically(manifestFile, lines);
+        } catch (Exception e) {
+            throw new Exception("Error saving partition manifest: " + e.getMessage());
+        }
+    }
+
+    /**
+     * True if directory.txt places exactly as many patients in each partition as
+     * the manifest counts (a cheap check that both survived the last write).
+     */
+    private boolean isDirectoryConsistent() throws Exception {
+        Map<String, Integer> located = new HashMap<>();
+        for (String key : directory.values()) {
+            located.merge(key, 1, Integer::sum);
+        }
+        if (!located.equals(manifest)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(partitionDir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PARTITION_PREFIX) && name.endsWith(PARTITION_SUFFIX))
+                    .count() == manifest.size();
+        } catch (IOException e) {
+            throw new Exception("Error listing partitions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuilds directory.txt and manifest.txt from the partition files themselves,
+     * which are always the source of truth.
+     */
+    private void reconcile() throws Exception {
+        TreeMap<String, Integer> counts = new TreeMap<>();
+        Map<String, String> locations = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>();
+        try (Stream<Path> files = Files.list(partitionDir)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PARTITION_PREFIX) && name.endsWith(PARTITION_SUFFIX))
+                    .map(name -> name.substring(PARTITION_PREFIX.length(), name.length() - PARTITION_SUFFIX.length()))
+                    .sorted()
+                    .forEach(keys::add);
+        } catch (IOException e) {
+            throw new Exception("Error listing partitions: " + e.getMessage());
+        }
+        for (String key : keys) {
+            Map<String, Patient> contents = readPartition(key);
+            if (!contents.isEmpty()) {
+                counts.put(key, contents.size());
+                for (String id : contents.keySet()) {
+                    locations.put(id, key);
+                }
+            }
+        }
+
+        List<String> lines = new ArrayList<>(locations.size());
+        for (Map.Entry<String, String> entry : locations.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        try {
+            writeAtomically(directoryFile, lines);
+        } catch (Exception e) {
+            throw new Exception("Error rebuilding patient directory: " + e.getMessage());
+        }
+        manifest.clear();
+        manifest.putAll(counts);
+        directory.clear();
+        directory.putAll(locations);
+        partitionCache.clear();
+        saveManifest();
+        System.err.println("Rebuilt the partition directory and manifest from " + keys.size() + " partition files.");
+    }
+
+    private void loadDirectory() throws Exception {
+        if (!Files.exists(directoryFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(directoryFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    directory.put(line.substring(0, space), line.substring(space + 1));
+                }
+            }
+        } catch (IOException e) {
+            throw new Exception("Error loading patient directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends "patientId key" lines to directory.txt (the caller updates the map).
+     */
+    private void appendDirectory(List<String> lines) throws Exception {
+        if (lines.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(directoryFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new Exception("Error updating patient directory: " + e.getMessage());
+        }
+    }
+
+    // --- File Helpers ---
+
+    /**
+     * Writes lines to a temp file, forces it to disk and moves it over the target.
+     */
+    private void writeAtomically(Path target, List<String> lines) throws Exception {
+        Path tempFile = partitionDir.resolve(target.getFileName() + ".tmp");
+        try {
+            writeForced(tempFile, lines);
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new Exception(e.getMessage());
+        }
+    }
+
+    private static void writeForced(Path file, List<String> lines) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // --- Key Helpers ---
+
+    private static String partitionKey(LocalDate admissionDate) {
+        return (admissionDate != null) ? YearMonth.from(admissionDate).toString() : NO_DATE_PARTITION;
+    }
+
+    private Path partitionFile(String key) {
+        return partitionDir.resolve(PARTITION_PREFIX + key + PARTITION_SUFFIX);
+    }
+
+    private Path stagedFile(String key) {
+        return partitionDir.resolve(PARTITION_PREFIX + key + PARTITION_SUFFIX + STAGED_SUFFIX);
+    }
+}
@@ -0,0 +1,135 @@
+package com.hospital.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * PatientPrefixIndex.java
+ * A case-folded, sorted prefix index over patient names and IDs,
+ * used by the live filter in the patient table.
+ *
+ * Each patient is indexed under:
+ *   - the patient ID            ("20261018-004")
+ *   - the full name             ("ravi kumar sharma")
+ *   - every later word of it    ("kumar sharma", "sharma")
+ * so "sha", "ravi k" and "20261018" all find the patient above.
+ *
+ * A search is one range lookup in the sorted map: O(log n + matches),
+ * and no regex is involved, so input like "(" is just text.
+ */
+public class PatientPrefixIndex {
+
+    // Folded key -> IDs indexed under that key
+    private final TreeMap<String, Set<String>> keys = new TreeMap<>();
+
+    /**
+     * Adds a patient under its ID and name.
+     */
+    public void add(String patientId, String name) {
+        for (String key : keysFor(patientId, name)) {
+            keys.computeIfAbsent(key, k -> new HashSet<>(2)).add(patientId);
+        }
+    }
+
+    /**
+     * Removes every patient.
+     */
+    public void clear() {
+        keys.clear();
+    }
+
+    /**
+     * Removes a patient that was added with this ID and name.
+     */
+    public void remove(String patientId, String name) {
+        for (String key : keysFor(patientId, name)) {
+            Set<String> ids = keys.get(key);
+            if (ids != null) {
+                ids.remove(patientId);
+                if (ids.isEmpty()) {
+                    keys.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds every patient whose ID, name, or any word of the name starts with the text.
+     * @return The matching IDs (empty for blank text).
+     */
+    public Set<String> search(String text) {
+        Set<String> matches = new LinkedHashSet<>();
+        String prefix = fold(text);
+        if (prefix.isEmpty()) {
+            return matches;
+        }
+        // Every key starting with the prefix sorts between prefix and prefix + Character.MAX_VALUE
+        SortedMap<String, Set<String>> range = keys.subMap(prefix, prefix + Character.MAX_VALUE);
+        for (Collection<String> ids : range.values()) {
+            matches.addAll(ids);
+        }
+        return matches;
+    }
+
+    /**
+     * The same matching rule as search(), for one patient (used when no index is available).
+     */
+    public static boolean matches(String text, String patientId, String name) {
+        String prefix = fold(text);
+        if (prefix.isEmpty()) {
+            return false;
+        }
+        for (String key : keysFor(patientId, name)) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- Key Helpers ---
+
+    private static List<String> keysFor(String patientId, String name) {
+        List<String> result = new ArrayList<>(4);
+        result.add(fold(patientId));
+        String folded = fold(name);
+        if (!folded.isEmpty()) {
+            result.add(folded);
+            for (int i = folded.indexOf(' '); i >= 0; i = folded.indexOf(' ', i + 1)) {
+                result.add(folded.substring(i + 1)); // The name from each later word onward
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lower-cases and collapses whitespace, so "  Ravi   KUMAR" and "ravi kumar" compare equal.
+     */
+    private static String fold(String s) {
+        if (s == null) {
+            return "";
+        }
+        StringBuilder folded = new StringBuilder(s.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = folded.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    folded.append(' ');
+                    pendingSpace = false;
+                }
+                folded.append(c);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+}
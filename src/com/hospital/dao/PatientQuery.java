@@ -0,0 +1,97 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.time.LocalDate;
+
+/**
+ * PatientQuery.java
+ * A combination of filters for finding patients, e.g.
+ *   new PatientQuery().doctor("Dr. Mehta").admittedOnly()
+ *   new PatientQuery().admittedBetween(lastMonday, today)
+ * Any filter left unset matches every patient.
+ */
+public class PatientQuery {
+
+    private String doctor = null;          // Matched case-insensitively, ignoring surrounding spaces
+    private Boolean discharged = null;     // null = either status
+    private LocalDate admittedFrom = null; // Inclusive
+    private LocalDate admittedTo = null;   // Inclusive
+
+    public PatientQuery doctor(String doctor) {
+        this.doctor = doctor;
+        return this;
+    }
+
+    public PatientQuery admittedOnly() {
+        this.discharged = false;
+        return this;
+    }
+
+    public PatientQuery dischargedOnly() {
+        this.discharged = true;
+        return this;
+    }
+
+    /**
+     * Only patients admitted between these dates (inclusive). Either end may be null for "open".
+     */
+    public PatientQuery admittedBetween(LocalDate from, LocalDate to) {
+        this.admittedFrom = from;
+        this.admittedTo = to;
+        return this;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public Boolean getDischarged() {
+        return discharged;
+    }
+
+    public LocalDate getAdmittedFrom() {
+        return admittedFrom;
+    }
+
+    public LocalDate getAdmittedTo() {
+        return admittedTo;
+    }
+
+    public boolean hasDateRange() {
+        return admittedFrom != null || admittedTo != null;
+    }
+
+    /**
+     * Checks one patient against every filter (used when no index is available).
+     */
+    public boolean matches(Patient p) {
+        return matches(doctorKey(p.getDoctorAssigned()), p.isDischarged(), p.getDateOfAdmission());
+    }
+
+    /**
+     * Checks already-indexed values against every filter.
+     */
+    boolean matches(String patientDoctorKey, boolean isDischarged, LocalDate admitted) {
+        if (doctor != null && !doctorKey(doctor).equals(patientDoctorKey)) {
+            return false;
+        }
+        if (discharged != null && discharged != isDischarged) {
+            return false;
+        }
+        if (hasDateRange()) {
+            if (admitted == null
+                    || (admittedFrom != null && admitted.isBefore(admittedFrom))
+                    || (admittedTo != null && admitted.isAfter(admittedTo))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The normalized form doctor names are compared (and indexed) by.
+     */
+    static String doctorKey(String doctor) {
+        return (doctor != null) ? doctor.trim().toLowerCase() : "";
+    }
+}
@@ -0,0 +1,48 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PatientSeedData.java
+ * Reads the patients another storage engine left behind, so a new engine's
+ * files can be seeded from them: patients.txt if there is one, otherwise the
+ * .dat backup. Used by the journal, mapped and partitioned engines, so
+ * switching -Dhospital.storage keeps the data.
+ */
+final class PatientSeedData {
+
+    private PatientSeedData() {}
+
+    /**
+     * @param problems Receives one entry per patients.txt record that could not be read.
+     * @return The patients (with their IDs and versions), or an empty list on a fresh install.
+     */
+    static List<Patient> load(Path textFile, PatientDatBackup datBackup, List<String> problems) throws Exception {
+        if (Files.exists(textFile)) {
+            List<Patient> seed = new ArrayList<>();
+            // patients.txt is written in the platform charset (see PatientTextFileDAO)
+            try (PatientTextScanner scanner = new PatientTextScanner(Files.newInputStream(textFile), Charset.defaultCharset())) {
+                Patient patient;
+                while ((patient = scanner.next()) != null) {
+                    seed.add(patient);
+                }
+                for (PatientTextScanner.ParseProblem problem : scanner.getProblems()) {
+                    problems.add("patients.txt " + problem);
+                }
+            } catch (IOException e) {
+                throw new Exception("Error reading patients.txt to seed the patient store: " + e.getMessage());
+            }
+            return seed;
+        }
+        if (datBackup.hasBackup()) {
+            return datBackup.loadBackup();
+        }
+        return new ArrayList<>();
+    }
+}
@@ -0,0 +1,91 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+/**
+ * PatientSortKey.java
+ * The orders a page of patients can be listed in.
+ * Ties are always broken by patient ID, so paging is stable. Patient IDs
+ * are compared with ID_ORDER, not as plain strings.
+ */
+public enum PatientSortKey {
+
+    PATIENT_ID(Comparator.comparing(Patient::getPatientId, PatientSortKey::compareIds)),
+    NAME(Comparator.comparing(Patient::getName, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(Patient::getPatientId, PatientSortKey::compareIds)),
+    ADMISSION_DATE(Comparator.comparing(Patient::getDateOfAdmission,
+            Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+            .thenComparing(Patient::getPatientId, PatientSortKey::compareIds)),
+    DOCTOR(Comparator.comparing(Patient::getDoctorAssigned, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(Patient::getPatientId, PatientSortKey::compareIds));
+
+    /**
+     * Patient IDs in the order they were issued: by the date part, then by the
+     * number after the dash, so "20240101-1000" follows "20240101-999" (the number
+     * gets wider after 999, see PatientIdAllocator). IDs of any other shape are
+     * compared as plain strings.
+     */
+    public static final Comparator<String> ID_ORDER = PatientSortKey::compareIds;
+
+    private final Comparator<Patient> comparator;
+
+    PatientSortKey(Comparator<Patient> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<Patient> comparator() {
+        return comparator;
+    }
+
+    private static int compareIds(String a, String b) {
+        int dashA = a.lastIndexOf('-');
+        int dashB = b.lastIndexOf('-');
+        if (!isNumberAfter(a, dashA) || !isNumberAfter(b, dashB)) {
+            return a.compareTo(b);
+        }
+        // Date part, compared like a string
+        for (int i = 0; i < Math.min(dashA, dashB); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return a.charAt(i) - b.charAt(i);
+            }
+        }
+        if (dashA != dashB) {
+            return dashA - dashB;
+        }
+        // Number part: more significant digits is larger, otherwise digit by digit
+        int startA = skipZeros(a, dashA + 1);
+        int startB = skipZeros(b, dashB + 1);
+        int lengthA = a.length() - startA;
+        int lengthB = b.length() - startB;
+        if (lengthA != lengthB) {
+            return lengthA - lengthB;
+        }
+        for (int i = 0; i < lengthA; i++) {
+            if (a.charAt(startA + i) != b.charAt(startB + i)) {
+                return a.charAt(startA + i) - b.charAt(startB + i);
+            }
+        }
+        return a.compareTo(b); // Same number with different zero padding
+    }
+
+    private static boolean isNumberAfter(String id, int dash) {
+        if (dash < 0 || dash == id.length() - 1) {
+            return false;
+        }
+        for (int i = dash + 1; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipZeros(String id, int start) {
+        while (start < id.length() - 1 && id.charAt(start) == '0') {
+            start++;
+        }
+        return start;
+    }
+}
@@ -1,37 +1,120 @@
 package com.hospital.dao;
 
 import com.hospital.model.Patient;
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 /**
  * PatientTextFileDAO.java
  * This is the PRIMARY DAO for the application.
  * It reads and writes to the human-readable patients.txt file.
- * It ALSO calls the PatientDatBackup helper to save a .dat backup.
+ * It ALSO saves a .dat backup, through a background BackupScheduler.
+ *
+ * The file is parsed once into an in-memory index (patientId -> Patient).
+ * All reads are served from that index, and the file is only parsed again
+ * when its size or modified time changes on disk (e.g. edited by hand).
+ *
+ * Thread-safe: reads share a read lock, so readers (the UI, reports,
+ * backups) never block each other; writes take the write lock, so they run
+ * one at a time. Every write rewrites the whole file, so writers cannot be
+ * striped by patient. A reader that finds the file changed on disk briefly
+ * takes the write lock to re-parse it.
+ *
+ * Several copies of the app (e.g. reception and billing desks) may share
+ * one .hospitalapp folder. Each write therefore also holds an exclusive
+ * FileChannel lock on patients.lock, re-reads patients.txt if another
+ * process changed it, and only then applies the change. Updates are
+ * optimistic: a patient carrying an older version than the stored one is
+ * rejected with StalePatientException instead of overwriting newer data.
+ * Time spent waiting for both locks is kept in LockWaitStats. The .dat
+ * backup is also written under patients.lock, so it never interleaves with
+ * a save from another process.
+ *
+ * patients.lock also holds a generation counter (its first 8 bytes) that
+ * every save bumps. Readers compare it with the one their index was built
+ * from, so a change by another process is noticed even if it left
+ * patients.txt with the same size and modified time. They read it through a
+ * memory-mapped view of those 8 bytes, taking no lock at all: a read that
+ * races a save at worst costs one extra re-parse. Lock regions: a save locks
+ * the whole file and the backup thread only the 8 bytes after the counter,
+ * so a running backup never holds up readers.
+ *
+ * Closing any channel on patients.lock drops every lock this process holds
+ * on it, so the file keeps one channel, and nothing on the read path does
+ * I/O on it (an interrupt during channel I/O closes the channel). If the
+ * channel is closed anyway, the next save or backup opens a new one.
  */
 public class PatientTextFileDAO implements PatientDAO {
 
     private final String DATA_FILE_NAME = "patients.txt"; // The .txt main file
     private final String DATA_DIR_NAME = ".hospitalapp";
+    private final String LOCK_FILE_NAME = "patients.lock"; // Locked by whichever process is writing
     private final Path dataFile;
-    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private final String DELIMITER = "||"; // A robust delimiter
+    private final Path lockFile;
+    private FileChannel lockChannel; // Opened on first use (guarded by lockChannelGuard)
+    private volatile MappedByteBuffer generationView; // The counter bytes of patients.lock (set under lockChannelGuard)
+    private final Object lockChannelGuard = new Object();
+    // A JVM may only hold one lock on patients.lock at a time, so the save path and the
+    // backup thread take turns through this before locking the file
+    private final ReentrantLock fileLockTurn = new ReentrantLock();
+    private FileLock backupFileLock = null; // Held by the backup thread while it writes
 
-    // The new backup helper
+    // --- Regions of patients.lock ---
+    private static final long GENERATION_POSITION = 0; // long: bumped by every save
+    private static final long GENERATION_SIZE = 8;
+    private static final long BACKUP_POSITION = 8;     // Locked while the .dat backup is written
+    private static final long BACKUP_SIZE = 8;
+
+    // The new backup helper, and the scheduler that runs it off the save path
     private PatientDatBackup datBackup;
+    private final BackupScheduler backupScheduler;
+
+    // Hands out new IDs without scanning every patient
+    private final PatientIdAllocator idAllocator = new PatientIdAllocator();
+
+    // --- In-memory index ---
+    // Insertion order is kept so getAllPatients() matches the file order.
+    private final Map<String, Patient> patientIndex = new LinkedHashMap<>();
+    private FileTime indexedModifiedTime = null; // Modified time of the file we last parsed
+    private long indexedFileSize = -1;           // Size of the file we last parsed
+    private FileTime savedModifiedTime = null;   // Modified time of the file we last wrote (guarded by fileLockTurn)
+    private long savedFileSize = -1;             // Size of the file we last wrote (guarded by fileLockTurn)
+    private long indexedGeneration = -1;         // patients.lock generation the index was built from
+    private long savedGeneration = -1;           // Generation of our last save (guarded by fileLockTurn)
+    private List<String> loadProblems = Collections.emptyList(); // Lines skipped by the last parse
+    private long externalLoads = 0; // Times the index was re-read from a file we did not write
+
+    // The .dat backup that last failed to restore; not retried until it changes
+    private FileTime failedRestoreModifiedTime = null;
+    private long failedRestoreSize = -1;
+
+    // Guards the index and the file: shared for reads, exclusive for writes and re-parses
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LockWaitStats writeLockWaits = new LockWaitStats("in-process write lock");
+    private final LockWaitStats fileLockWaits = new LockWaitStats("patients.lock file lock");
 
     public PatientTextFileDAO() {
         // 1. Set up the main .txt file path
@@ -45,9 +128,48 @@ public class PatientTextFileDAO implements PatientDAO {
             }
         }
         this.dataFile = dataDir.resolve(DATA_FILE_NAME);
+        this.lockFile = dataDir.resolve(LOCK_FILE_NAME);
 
         // 2. Initialize the .dat backup helper
         this.datBackup = new PatientDatBackup();
+        this.backupScheduler = new BackupScheduler(datBackup, new BackupScheduler.WriteGuard() {
+            @Override
+            public boolean lockIfCurrent() throws Exception {
+                return lockForBackup();
+            }
+
+            @Override
+            public void unlock() {
+                unlockForBackup();
+            }
+        });
+    }
+
+    /**
+     * Writes any pending .dat backup and releases patients.lock.
+     */
+    @Override
+    public void close() throws Exception {
+        backupScheduler.shutdown();
+        fileLockTurn.lock();
+        try {
+            synchronized (lockChannelGuard) {
+                if (lockChannel != null) {
+                    lockChannel.close();
+                    lockChannel = null;
+                }
+                generationView = null;
+            }
+        } finally {
+            fileLockTurn.unlock();
+        }
+    }
+
+    /**
+     * The scheduler that writes the .dat backup, for checking backup lag.
+     */
+    public BackupScheduler getBackupScheduler() {
+        return backupScheduler;
     }
 
     /**
@@ -55,15 +177,26 @@ public class PatientTextFileDAO implements PatientDAO {
      */
     @Override
     public Patient addPatient(Patient patient) throws Exception {
-        List<Patient> patients = getAllPatients();
+        FileLock fileLock = lockForWrite();
+        try {
+            loadIndexIfChanged();
+            List<Patient> patients = new ArrayList<>(patientIndex.values());
         
-        // Generate a new ID (this logic can be complex, e.g., based on date/count)
-        String newId = generatePatientId(patients);
-        patient.setPatientId(newId);
+            // Generate a new ID from the persisted per-day counter
+            String newId = idAllocator.nextId();
+            patient.setPatientId(newId);
         
-        patients.add(patient);
-        savePatients(patients); // This will save to both .txt and .dat
-        return patient;
+            // The list only ever holds index-owned copies, so the backup thread can keep it safely
+            Patient stored = PatientVersions.firstVersion(patient);
+            patients.add(stored);
+            savePatients(patients); // This will save to .txt and schedule the .dat backup
+
+            patientIndex.put(newId, stored);
+            patient.setVersion(stored.getVersion());
+            return patient;
+        } finally {
+            unlockForWrite(fileLock);
+        }
     }
 
     /**
@@ -71,81 +204,517 @@ public class PatientTextFileDAO implements PatientDAO {
      */
     @Override
     public void updatePatient(Patient patient) throws Exception {
-        List<Patient> patients = getAllPatients();
-        boolean found = false;
-        
-        // Find the patient in the list and replace them
-        for (int i = 0; i < patients.size(); i++) {
-            if (patients.get(i).getPatientId().equals(patient.getPatientId())) {
-                patients.set(i, patient);
-                found = true;
-                break;
+        FileLock fileLock = lockForWrite();
+        try {
+            loadIndexIfChanged();
+            Patient current = patientIndex.get(patient.getPatientId());
+            if (current == null) {
+                throw new Exception("Patient not found, could not update.");
+            }
+
+            // Replace the patient in a copy of the list, so a failed save leaves the index untouched
+            Patient stored = PatientVersions.nextVersion(current, patient);
+            List<Patient> patients = new ArrayList<>(patientIndex.size());
+            for (Patient existing : patientIndex.values()) {
+                patients.add(existing.getPatientId().equals(patient.getPatientId()) ? stored : existing);
             }
+            savePatients(patients); // This will save to .txt and schedule the .dat backup
+
+            patientIndex.put(patient.getPatientId(), stored);
+            patient.setVersion(stored.getVersion());
+        } finally {
+            unlockForWrite(fileLock);
         }
-        
-        if (!found) {
-            throw new Exception("Patient not found, could not update.");
+    }
+
+    /**
+     * Adds a whole batch of patients with a single rewrite of the .txt file.
+     * The file is replaced atomically, so a failed batch leaves it untouched.
+     */
+    @Override
+    public List<Patient> addPatients(List<Patient> newPatients) throws Exception {
+        FileLock fileLock = lockForWrite();
+        try {
+            if (newPatients.isEmpty()) {
+                return newPatients;
+            }
+            loadIndexIfChanged();
+            List<String> newIds = idAllocator.reserveBlock(newPatients.size());
+
+            List<Patient> patients = new ArrayList<>(patientIndex.size() + newPatients.size());
+            patients.addAll(patientIndex.values());
+            List<Patient> stored = new ArrayList<>(newPatients.size());
+            for (int i = 0; i < newPatients.size(); i++) {
+                Patient copy = PatientVersions.firstVersion(newPatients.get(i));
+                copy.setPatientId(newIds.get(i));
+                stored.add(copy);
+            }
+            patients.addAll(stored);
+            savePatients(patients); // One write for the whole batch
+
+            // Only hand out the IDs once the batch is safely on disk
+            for (int i = 0; i < newPatients.size(); i++) {
+                newPatients.get(i).setPatientId(newIds.get(i));
+                newPatients.get(i).setVersion(stored.get(i).getVersion());
+                patientIndex.put(newIds.get(i), stored.get(i));
+            }
+            return newPatients;
+        } finally {
+            unlockForWrite(fileLock);
+        }
+    }
+
+    /**
+     * Updates a whole batch of patients with a single rewrite of the .txt file.
+     */
+    @Override
+    public void updatePatients(List<Patient> changedPatients) throws Exception {
+        FileLock fileLock = lockForWrite();
+        try {
+            if (changedPatients.isEmpty()) {
+                return;
+            }
+            loadIndexIfChanged();
+            Map<String, Patient> changes = new LinkedHashMap<>();
+            for (Patient patient : changedPatients) {
+                Patient current = patientIndex.get(patient.getPatientId());
+                if (current == null) {
+                    throw new Exception("Patient " + patient.getPatientId() + " not found, batch not updated.");
+                }
+                changes.put(patient.getPatientId(), PatientVersions.nextVersion(current, patient));
+            }
+
+            List<Patient> patients = new ArrayList<>(patientIndex.size());
+            for (Patient existing : patientIndex.values()) {
+                patients.add(changes.getOrDefault(existing.getPatientId(), existing));
+            }
+            savePatients(patients); // One write for the whole batch
+
+            patientIndex.putAll(changes);
+            for (Patient patient : changedPatients) {
+                patient.setVersion(changes.get(patient.getPatientId()).getVersion());
+            }
+        } finally {
+            unlockForWrite(fileLock);
         }
-        savePatients(patients); // This will save to both .txt and .dat
     }
 
     /**
-     * Retrieves a single patient from the .txt file.
+     * Retrieves a single patient from the in-memory index.
      */
     @Override
     public Patient getPatient(String patientId) throws Exception {
-        return getAllPatients().stream()
-            .filter(p -> p.getPatientId().equals(patientId))
-            .findFirst()
-            .orElse(null); // Return null if not found
+        lockForRead();
+        try {
+            Patient patient = patientIndex.get(patientId);
+            return (patient != null) ? new Patient(patient) : null; // Return null if not found
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
-     * Retrieves all patients from the .txt file.
-     * This is the "source of truth".
+     * Retrieves all patients from the in-memory index.
+     * The .txt file is still the "source of truth"; the index is refreshed from it when it changes.
      */
     @Override
     public List<Patient> getAllPatients() throws Exception {
-        List<Patient> patients = new ArrayList<>();
+        lockForRead();
+        try {
+            List<Patient> patients = new ArrayList<>(patientIndex.size());
+            for (Patient patient : patientIndex.values()) {
+                patients.add(new Patient(patient)); // Hand out copies, never the cached objects
+            }
+            return patients;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Streams copies of the indexed patients one at a time, without building a full copied list.
+     */
+    @Override
+    public Stream<Patient> streamPatients() throws Exception {
+        lockForRead();
+        try {
+            // Snapshot the references so later writes don't disturb an open stream
+            return new ArrayList<>(patientIndex.values()).stream().map(Patient::new);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countPatients() throws Exception {
+        lockForRead();
+        try {
+            return patientIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Re-reads patients.txt if someone else changed it, and counts how often that happened.
+     */
+    @Override
+    public long getExternalChangeCount() throws Exception {
+        lockForRead();
+        try {
+            return externalLoads;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Corrupt lines skipped the last time patients.txt was parsed,
+     * e.g. "line 12 (byte 3480): bad date in field 8".
+     */
+    public List<String> getLoadProblems() {
+        lock.readLock().lock();
+        try {
+            return Collections.unmodifiableList(loadProblems);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Locking ---
+
+    /**
+     * Takes the read lock with an up-to-date index. If patients.txt changed on
+     * disk, the write lock is taken just long enough to re-parse it, then
+     * downgraded to the read lock. The caller must release the read lock.
+     */
+    private void lockForRead() throws Exception {
+        lock.readLock().lock();
+        boolean current;
+        try {
+            current = isIndexCurrent();
+        } catch (Exception e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+        if (current) {
+            return;
+        }
+
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            loadIndexIfChanged(); // Checks again: another thread may have loaded it already
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the in-process write lock, then the cross-process patients.lock file lock.
+     * Wait times for both are recorded. Release with unlockForWrite().
+     */
+    private FileLock lockForWrite() throws Exception {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        long locked = System.nanoTime();
+        writeLockWaits.record(locked - start);
+        try {
+            FileLock fileLock = lockFile(); // Blocks while another process (or our backup) is writing
+            fileLockWaits.record(System.nanoTime() - locked);
+            return fileLock;
+        } catch (IOException e) {
+            lock.writeLock().unlock();
+            throw new Exception("Could not lock patient data for writing: " + e.getMessage());
+        }
+    }
+
+    private void unlockForWrite(FileLock fileLock) {
+        try {
+            unlockFile(fileLock);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes patients.lock for the backup thread, without the in-process write lock,
+     * so readers keep going while the backup is written.
+     * @return false (holding nothing) if patients.txt changed since our last save,
+     *         i.e. another process saved newer data and will back it up itself.
+     */
+    private boolean lockForBackup() throws Exception {
+        FileLock fileLock;
+        try {
+            fileLock = lockFile(BACKUP_POSITION, BACKUP_SIZE); // Excludes saves, not readers
+        } catch (IOException e) {
+            throw new Exception("Could not lock patient data for backup: " + e.getMessage());
+        }
+        boolean current = false;
+        try {
+            if (Files.exists(dataFile)) {
+                BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+                current = attrs.lastModifiedTime().equals(savedModifiedTime) && attrs.size() == savedFileSize
+                    && readGeneration() == savedGeneration;
+            }
+        } catch (IOException e) {
+            throw new Exception("Could not check patient data for backup: " + e.getMessage());
+        } finally {
+            if (current) {
+                backupFileLock = fileLock;
+            } else {
+                unlockFile(fileLock);
+            }
+        }
+        return current;
+    }
+
+    private void unlockForBackup() {
+        FileLock fileLock = backupFileLock;
+        backupFileLock = null;
+        unlockFile(fileLock);
+    }
+
+    /**
+     * Takes this JVM's turn on patients.lock, then an exclusive lock on the whole file.
+     */
+    private FileLock lockFile() throws IOException {
+        return lockFile(0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Takes this JVM's turn on patients.lock, then an exclusive lock on part of it.
+     * A channel found closed (e.g. by an interrupt on another thread) is
+     * replaced once; this thread's own interrupt is passed on.
+     */
+    private FileLock lockFile(long position, long size) throws IOException {
+        fileLockTurn.lock();
+        try {
+            try {
+                return openLockChannel().lock(position, size, false);
+            } catch (ClosedChannelException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                return openLockChannel().lock(position, size, false);
+            }
+        } catch (IOException | RuntimeException e) {
+            fileLockTurn.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * The open channel on patients.lock, opening a new one if there is none or
+     * it was closed.
+     */
+    private FileChannel openLockChannel() throws IOException {
+        synchronized (lockChannelGuard) {
+            if (lockChannel == null || !lockChannel.isOpen()) {
+                lockChannel = FileChannel.open(lockFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            return lockChannel;
+        }
+    }
+
+    /**
+     * The mapped counter bytes. Mapping them read-write grows a new or older
+     * lock file to hold them, with zeros, which reads as generation 0 as before.
+     * The view stays valid if the channel is later closed.
+     */
+    private MappedByteBuffer generationView() throws IOException {
+        MappedByteBuffer view = generationView;
+        if (view != null) {
+            return view;
+        }
+        synchronized (lockChannelGuard) {
+            if (generationView == null) {
+                generationView = openLockChannel().map(FileChannel.MapMode.READ_WRITE,
+                    GENERATION_POSITION, GENERATION_SIZE);
+            }
+            return generationView;
+        }
+    }
+
+    /**
+     * Reads the counter. A plain memory read: no lock, no system call.
+     */
+    private long readGeneration() throws IOException {
+        return generationView().getLong(0);
+    }
+
+    /**
+     * Writes the counter. The caller holds the exclusive lock on the whole file.
+     */
+    private void writeGeneration(long generation) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) GENERATION_SIZE);
+        buf.putLong(generation).flip();
+        while (buf.hasRemaining()) {
+            openLockChannel().write(buf, GENERATION_POSITION + buf.position());
+        }
+    }
+
+    private void unlockFile(FileLock fileLock) {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            System.err.println("Could not release patients.lock: " + e.getMessage());
+        } finally {
+            fileLockTurn.unlock();
+        }
+    }
+
+    /**
+     * Time writers spent waiting for other threads in this app.
+     */
+    public LockWaitStats getWriteLockWaits() {
+        return writeLockWaits;
+    }
+
+    /**
+     * Time writers spent waiting for other processes (workstations) sharing the folder.
+     */
+    public LockWaitStats getFileLockWaits() {
+        return fileLockWaits;
+    }
+
+    /**
+     * True if the index already matches patients.txt (no re-parse or restore needed):
+     * the same save generation, and the same size and modified time (a hand edit
+     * does not bump the generation).
+     */
+    private boolean isIndexCurrent() throws IOException {
         if (!Files.exists(dataFile)) {
-            // If the .txt file is missing, try to restore from the .dat backup
-            // This is a more advanced recovery feature
-            return new ArrayList<>(); // For now, just return an empty list
+            return indexedFileSize == -1 && patientIndex.isEmpty()
+                && (!datBackup.hasBackup() || isFailedRestore(backupAttributes()));
         }
+        long generation = readGeneration();
+        BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+        return generation == indexedGeneration
+            && attrs.lastModifiedTime().equals(indexedModifiedTime) && attrs.size() == indexedFileSize;
+    }
 
-        // Use try-with-resources to read the .txt file
-        try (BufferedReader reader = new BufferedReader(new FileReader(dataFile.toFile()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Patient patient = fromText(line);
-                if (patient != null) {
-                    patients.add(patient);
+    /**
+     * Re-parses patients.txt into the index, but only if the file has changed
+     * since the last time we read (or wrote) it. Called with the write lock held.
+     */
+    private void loadIndexIfChanged() throws Exception {
+        if (!Files.exists(dataFile)) {
+            patientIndex.clear();
+            indexedModifiedTime = null;
+            indexedFileSize = -1;
+            indexedGeneration = -1;
+
+            // If the .txt file is missing, try to restore it from the .dat backup
+            if (datBackup.hasBackup()) {
+                BasicFileAttributes backupAttrs = backupAttributes();
+                if (isFailedRestore(backupAttrs)) {
+                    return; // Same damaged backup as last time, don't re-read it on every call
+                }
+                List<Patient> restored;
+                try {
+                    restored = datBackup.loadBackup();
+                } catch (Exception e) {
+                    System.err.println("Could not restore from .dat backup: " + e.getMessage());
+                    failedRestoreModifiedTime = backupAttrs.lastModifiedTime();
+                    failedRestoreSize = backupAttrs.size();
+                    return; // Start with an empty list, as before
                 }
+                failedRestoreModifiedTime = null;
+                failedRestoreSize = -1;
+                saveRestored(restored); // Re-creates patients.txt
+                for (Patient patient : restored) {
+                    patientIndex.put(patient.getPatientId(), patient);
+                }
+                idAllocator.seedFrom(patientIndex.keySet());
+                externalLoads++;
+            }
+            return;
+        }
+
+        // Generation first: if a save lands while we parse, the next check sees a newer one
+        long generation = readGeneration();
+        BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+        if (generation == indexedGeneration
+                && attrs.lastModifiedTime().equals(indexedModifiedTime) && attrs.size() == indexedFileSize) {
+            return; // Index is up to date
+        }
+
+        Map<String, Patient> loaded = new LinkedHashMap<>();
+        List<String> problems = new ArrayList<>();
+        // Use try-with-resources to read the .txt file
+        // (FileWriter writes it in the platform charset, so read it back the same way)
+        try (PatientTextScanner scanner = new PatientTextScanner(Files.newInputStream(dataFile), Charset.defaultCharset())) {
+            Patient patient;
+            while ((patient = scanner.next()) != null) {
+                loaded.put(patient.getPatientId(), patient);
+            }
+            for (PatientTextScanner.ParseProblem problem : scanner.getProblems()) {
+                problems.add(problem.toString());
             }
         } catch (Exception e) {
             throw new Exception("Error loading patients from file: " + e.getMessage());
         }
-        return patients;
+        loadProblems = problems;
+
+        patientIndex.clear();
+        patientIndex.putAll(loaded);
+        idAllocator.seedFrom(patientIndex.keySet());
+        indexedModifiedTime = attrs.lastModifiedTime();
+        indexedFileSize = attrs.size();
+        indexedGeneration = generation;
+        externalLoads++;
+    }
+
+    /**
+     * Writes patients restored from the .dat backup back to patients.txt, under
+     * patients.lock like any other save (the caller may only hold the write lock).
+     */
+    private void saveRestored(List<Patient> restored) throws Exception {
+        if (fileLockTurn.isHeldByCurrentThread()) {
+            savePatients(restored); // Already inside a save
+            return;
+        }
+        FileLock fileLock;
+        try {
+            fileLock = lockFile();
+        } catch (IOException e) {
+            throw new Exception("Could not lock patient data for restore: " + e.getMessage());
+        }
+        try {
+            savePatients(restored);
+        } finally {
+            unlockFile(fileLock);
+        }
+    }
+
+    private BasicFileAttributes backupAttributes() throws IOException {
+        return Files.readAttributes(datBackup.getBackupFile(), BasicFileAttributes.class);
     }
 
     /**
-     * Generates a new unique patient ID.
-     * Format: YYYYMMDD-001
+     * True if this is the same .dat backup (size and modified time) that already failed to restore.
      */
-    private String generatePatientId(List<Patient> patients) {
-        LocalDate today = LocalDate.now();
-        String prefix = today.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        
-        // Count how many patients already exist from today
-        long count = patients.stream()
-            .filter(p -> p.getPatientId().startsWith(prefix))
-            .count();
-            
-        return prefix + "-" + String.format("%03d", count + 1);
+    private boolean isFailedRestore(BasicFileAttributes backupAttrs) {
+        return backupAttrs.lastModifiedTime().equals(failedRestoreModifiedTime)
+            && backupAttrs.size() == failedRestoreSize;
     }
 
     /**
-     * Saves the patient list to both the .txt file and the .dat backup.
+     * Records the current size/modified time of patients.txt after we wrote it ourselves,
+     * so our own save does not trigger a full re-parse.
+     */
+    private void markIndexCurrent() throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
+        indexedModifiedTime = attrs.lastModifiedTime();
+        indexedFileSize = attrs.size();
+    }
+
+    /**
+     * Saves the patient list to the .txt file, bumps the generation in
+     * patients.lock and schedules the .dat backup. Called holding patients.lock.
      */
     private void savePatients(List<Patient> patients) throws Exception {
         // --- 1. Save to main .txt file (Atomic Write) ---
@@ -153,7 +722,7 @@ public class PatientTextFileDAO implements PatientDAO {
         
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile.toFile()))) {
             for (Patient patient : patients) {
-                writer.write(toText(patient));
+                writer.write(PatientTextFormat.toText(patient));
                 writer.newLine(); // Add a new line for each patient
             }
         } catch (IOException e) {
@@ -166,80 +735,21 @@ public class PatientTextFileDAO implements PatientDAO {
         } catch (IOException e) {
             throw new Exception("Error finalizing patient data .txt save: " + e.getMessage());
         }
-
-        // --- 2. Save to .dat backup file ---
-        // This is the new step
-        datBackup.saveBackup(patients);
-    }
-
-    /**
-     * Converts a Patient object into a single line of text for the .txt file.
-     */
-    private String toText(Patient p) {
-        String[] parts = {
-            p.getPatientId(),
-            p.getName(),
-            String.valueOf(p.getAge()),
-            p.getContact(),
-            p.getAddress().replace("\n", "<NL>"), // Handle newlines
-            p.getMedicalHistory().replace("\n", "<NL>"), // Handle newlines
-            p.getDoctorAssigned(),
-            p.getTreatmentGiven(),
-            formatDate(p.getDateOfAdmission()),
-            formatDate(p.getDateOfDischarge()),
-            String.valueOf(p.isDischarged()),
-            String.valueOf(p.getBaseBillAmount()),
-            String.valueOf(p.getInsuranceDiscountPercent()),
-            String.valueOf(p.getFinalBillAmount())
-        };
-        // Join all parts with our delimiter
-        return String.join(DELIMITER, parts);
-    }
-
-    /**
-     * Converts a single line of text from the .txt file into a Patient object.
-     */
-    private Patient fromText(String line) {
-        try {
-            String[] parts = line.split("\\|\\|"); // Must escape the pipe
-            if (parts.length < 14) return null; // Corrupted line
-            
-            Patient p = new Patient();
-            p.setPatientId(parts[0]);
-            p.setName(parts[1]);
-            p.setAge(Integer.parseInt(parts[2]));
-            p.setContact(parts[3]);
-            p.setAddress(parts[4].replace("<NL>", "\n"));
-            p.setMedicalHistory(parts[5].replace("<NL>", "\n"));
-            p.setDoctorAssigned(parts[6]);
-            p.setTreatmentGiven(parts[7]);
-            p.setDateOfAdmission(parseDate(parts[8]));
-            p.setDateOfDischarge(parseDate(parts[9]));
-            p.setDischarged(Boolean.parseBoolean(parts[10]));
-            p.setBaseBillAmount(Double.parseDouble(parts[11]));
-            p.setInsuranceDiscountPercent(Double.parseDouble(parts[12]));
-            p.setFinalBillAmount(Double.parseDouble(parts[13]));
-            return p;
-        } catch (Exception e) {
-            // If one line is bad, just skip it
-            System.err.println("Skipping corrupted line in patients.txt: " + line);
-            return null;
+        markIndexCurrent();
+        try {
+            indexedGeneration = readGeneration() + 1;
+            writeGeneration(indexedGeneration);
+        } catch (IOException e) {
+            // The save itself succeeded; other copies still see the new size and modified time
+            System.err.println("Could not update the save generation in patients.lock: " + e.getMessage());
+            indexedGeneration = -1; // Re-read on the next access, to be safe
         }
-    }
-
-    // --- Date Helper Utilities ---
-
-    private String formatDate(LocalDate date) {
-        // Only format if the date is not null
-        return (date != null) ? date.format(dateFormatter) : "null";
-    }
+        savedModifiedTime = indexedModifiedTime;
+        savedFileSize = indexedFileSize;
+        savedGeneration = indexedGeneration;
 
-    private LocalDate parseDate(String dateStr) {
-        // Handle "null" strings or empty strings
-        if (dateStr == null || dateStr.equals("null") || dateStr.isEmpty()) {
-            return null;
-        }
-        return LocalDate.parse(dateStr, dateFormatter);
+        // --- 2. Schedule the .dat backup ---
+        // Runs on the backup thread; bursts of saves are coalesced into one backup
+        backupScheduler.changed(patients);
     }
 }
-
@@ -0,0 +1,54 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * PatientTextFormat.java
+ * The "||"-delimited, one-patient-per-line text format used by patients.txt.
+ * The 15th field (record version) was added later; lines without it read as version 0,
+ * and older readers simply ignore it.
+ * It is shared by every DAO that stores patients as text lines
+ * (the main .txt file and the append-only journal).
+ * Reading the format back is done by PatientTextScanner.
+ */
+final class PatientTextFormat {
+
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final String DELIMITER = "||"; // A robust delimiter
+
+    private PatientTextFormat() {}
+
+    /**
+     * Converts a Patient object into a single line of text for the .txt file.
+     */
+    static String toText(Patient p) {
+        String[] parts = {
+            p.getPatientId(),
+            p.getName(),
+            String.valueOf(p.getAge()),
+            p.getContact(),
+            p.getAddress().replace("\n", "<NL>"), // Handle newlines
+            p.getMedicalHistory().replace("\n", "<NL>"), // Handle newlines
+            p.getDoctorAssigned(),
+            p.getTreatmentGiven(),
+            formatDate(p.getDateOfAdmission()),
+            formatDate(p.getDateOfDischarge()),
+            String.valueOf(p.isDischarged()),
+            String.valueOf(p.getBaseBillAmount()),
+            String.valueOf(p.getInsuranceDiscountPercent()),
+            String.valueOf(p.getFinalBillAmount()),
+            String.valueOf(p.getVersion())
+        };
+        // Join all parts with our delimiter
+        return String.join(DELIMITER, parts);
+    }
+
+    // --- Date Helper Utilities ---
+
+    private static String formatDate(LocalDate date) {
+        // Only format if the date is not null
+        return (date != null) ? date.format(dateFormatter) : "null";
+    }
+}
@@ -0,0 +1,374 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PatientTextScanner.java
+ * A hand-rolled, streaming reader for the "||"-delimited patient text format
+ * (patients.txt and patients.journal).
+ *
+ * It scans raw bytes straight out of a reusable buffer: no regex split,
+ * no substring per field, and numbers/dates are parsed from the bytes directly.
+ * Only the text fields themselves become Strings.
+ *
+ * Corrupt lines are skipped and recorded as ParseProblems (with the byte offset
+ * of the line) instead of being printed to System.err.
+ */
+final class PatientTextScanner implements Closeable {
+
+    private static final int FIELD_COUNT = 14;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    // The format patients.txt has always been read with (default SMART resolution)
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * One skipped line: where it starts in the file and why it was rejected.
+     */
+    static final class ParseProblem {
+        final long byteOffset;
+        final long lineNumber;
+        final String reason;
+
+        ParseProblem(long byteOffset, long lineNumber, String reason) {
+            this.byteOffset = byteOffset;
+            this.lineNumber = lineNumber;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + " (byte " + byteOffset + "): " + reason;
+        }
+    }
+
+    private final InputStream in;
+    private final Charset charset;
+    private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+    private int pos = 0;          // Start of the unread data in buf
+    private int limit = 0;        // End of the valid data in buf
+    private long bufferStartOffset = 0; // File offset of buf[0]
+    private boolean eof = false;
+    private long lineNumber = 0;
+
+    // Field boundaries of the current line (reused for every line)
+    private static final int VERSION_FIELD = FIELD_COUNT; // Optional, after the required fields
+    private final int[] fieldStart = new int[FIELD_COUNT + 1];
+    private final int[] fieldEnd = new int[FIELD_COUNT + 1];
+
+    private final List<ParseProblem> problems = new ArrayList<>();
+
+    PatientTextScanner(InputStream in, Charset charset) {
+        this.in = in;
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the next valid patient, or null at the end of the input.
+     */
+    Patient next() throws IOException {
+        while (true) {
+            int lineEnd = findLineEnd();
+            if (lineEnd < 0) {
+                return null; // End of input
+            }
+            int lineStart = pos;
+            long lineOffset = bufferStartOffset + lineStart;
+            pos = lineEnd + 1; // Skip the '\n' (or step past the end for the last line)
+            lineNumber++;
+
+            int end = lineEnd;
+            if (end > lineStart && buf[end - 1] == '\r') {
+                end--; // Written on Windows
+            }
+            if (end == lineStart) {
+                continue; // Blank line
+            }
+
+            try {
+                Patient patient = parseLine(lineStart, end);
+                if (patient != null) {
+                    return patient;
+                }
+                problems.add(new ParseProblem(lineOffset, lineNumber, "fewer than " + FIELD_COUNT + " fields"));
+            } catch (NumberFormatException | DateTimeException e) {
+                problems.add(new ParseProblem(lineOffset, lineNumber, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Every line skipped so far.
+     */
+    List<ParseProblem> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // --- Buffer Management ---
+
+    /**
+     * Finds the '\n' ending the line that starts at pos, reading more input as needed.
+     * Returns limit if the last line has no '\n', or -1 if there is nothing left.
+     */
+    private int findLineEnd() throws IOException {
+        int scanFrom = pos;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    return i;
+                }
+            }
+            if (eof) {
+                return (pos < limit) ? limit : -1;
+            }
+            scanFrom = limit - pos; // Where to resume after the compact below
+            fill();
+            scanFrom += pos;
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the front (growing the buffer for very long lines) and reads more.
+     */
+    private void fill() throws IOException {
+        int unread = limit - pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, unread);
+            bufferStartOffset += pos;
+            pos = 0;
+            limit = unread;
+        } else if (limit == buf.length) {
+            byte[] bigger = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    // --- Line Parsing ---
+
+    private Patient parseLine(int start, int end) {
+        // Split on "||", scanning left to right like the old regex split did
+        int field = 0;
+        int fieldBegin = start;
+        for (int i = start; i < end - 1 && field < FIELD_COUNT - 1; i++) {
+            if (buf[i] == '|' && buf[i + 1] == '|') {
+                fieldStart[field] = fieldBegin;
+                fieldEnd[field] = i;
+                field++;
+                i++;
+                fieldBegin = i + 1;
+            }
+        }
+        if (field < FIELD_COUNT - 1) {
+            return null; // Corrupted line
+        }
+        // The last field runs to the next "||" or the end of the line
+        int lastEnd = fieldEndFrom(fieldBegin, end);
+        fieldStart[FIELD_COUNT - 1] = fieldBegin;
+        fieldEnd[FIELD_COUNT - 1] = lastEnd;
+
+        // Then the optional version field (any further fields are ignored)
+        boolean hasVersion = lastEnd < end;
+        if (hasVersion) {
+            fieldStart[VERSION_FIELD] = lastEnd + 2;
+            fieldEnd[VERSION_FIELD] = fieldEndFrom(lastEnd + 2, end);
+        }
+
+        Patient p = new Patient();
+        p.setPatientId(string(0));
+        p.setName(string(1));
+        p.setAge(parseInt(2));
+        p.setContact(string(3));
+        p.setAddress(multiLineString(4));
+        p.setMedicalHistory(multiLineString(5));
+        p.setDoctorAssigned(string(6));
+        p.setTreatmentGiven(string(7));
+        p.setDateOfAdmission(parseDate(8));
+        p.setDateOfDischarge(parseDate(9));
+        p.setDischarged(parseBoolean(10));
+        p.setBaseBillAmount(parseDouble(11));
+        p.setInsuranceDiscountPercent(parseDouble(12));
+        p.setFinalBillAmount(parseDouble(13));
+        p.setVersion(hasVersion ? parseLong(VERSION_FIELD) : 0);
+        return p;
+    }
+
+    private int fieldEndFrom(int from, int end) {
+        for (int i = from; i < end - 1; i++) {
+            if (buf[i] == '|' && buf[i + 1] == '|') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private String string(int field) {
+        return new String(buf, fieldStart[field], fieldEnd[field] - fieldStart[field], charset);
+    }
+
+    /**
+     * Decodes a field that may contain "<NL>" placeholders for newlines.
+     */
+    private String multiLineString(int field) {
+        for (int i = fieldStart[field]; i < fieldEnd[field]; i++) {
+            if (buf[i] == '<') {
+                return string(field).replace("<NL>", "\n"); // Rare: only pay for replace() when needed
+            }
+        }
+        return string(field);
+    }
+
+    private int parseInt(int field) {
+        long value = parseLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("bad whole number in field " + field);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a whole number like Long.parseLong (optional sign, up to 18 digits
+     * on the fast path); longer values fall back to Long.parseLong itself.
+     */
+    private long parseLong(int field) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        boolean negative = i < end && buf[i] == '-';
+        if (negative || (i < end && buf[i] == '+')) i++;
+        if (i == end) {
+            throw new NumberFormatException("bad whole number in field " + field);
+        }
+        if (end - i > 18) {
+            try {
+                return Long.parseLong(string(field)); // Near the long range: let the JDK check it
+            } catch (NumberFormatException e) {
+                throw new NumberFormatException("bad whole number in field " + field);
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("bad whole number in field " + field);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses plain decimals ("1500.0", "12.5") directly from the bytes.
+     * When the digits fit exactly in a double this gives the same, correctly
+     * rounded result as Double.parseDouble; anything else (exponents like
+     * "1.0E7", very long fractions) falls back to Double.parseDouble.
+     */
+    private double parseDouble(int field) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        boolean negative = i < end && buf[i] == '-';
+        if (negative) i++;
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1; // -1 until we see the '.'
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) fractionDigits++;
+                if (digits > 15) break; // May no longer be exact
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break; // Exponent or junk
+            }
+        }
+        if (i == end && digits > 0) {
+            int scale = Math.max(fractionDigits, 0);
+            double value = (scale == 0) ? mantissa : mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        String text = string(field);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("bad number in field " + field + ": " + text);
+        }
+    }
+
+    /**
+     * Parses "yyyy-MM-dd" (or "null" / empty for no date) directly from the bytes.
+     * Anything the fast path does not handle, such as a day past the end of the
+     * month ("2023-02-30"), goes through the same formatter as before, whose
+     * SMART resolution clamps it to the last day of the month.
+     */
+    private LocalDate parseDate(int field) {
+        int s = fieldStart[field];
+        int len = fieldEnd[field] - s;
+        if (len == 0 || (len == 4 && buf[s] == 'n' && buf[s + 1] == 'u' && buf[s + 2] == 'l' && buf[s + 3] == 'l')) {
+            return null;
+        }
+        if (len == 10 && buf[s + 4] == '-' && buf[s + 7] == '-') {
+            int year = digits(s, 4);
+            int month = digits(s + 5, 2);
+            int day = digits(s + 8, 2);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1
+                    && day <= Month.of(month).length(Year.isLeap(year))) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(string(field), DATE_FORMAT);
+    }
+
+    /**
+     * The value of a run of digits, or -1 if it contains anything else.
+     */
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1; // Let the formatter report it
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Matches Boolean.parseBoolean: only "true" (any case) is true.
+     */
+    private boolean parseBoolean(int field) {
+        int s = fieldStart[field];
+        return fieldEnd[field] - s == 4
+            && (buf[s] | 0x20) == 't' && (buf[s + 1] | 0x20) == 'r'
+            && (buf[s + 2] | 0x20) == 'u' && (buf[s + 3] | 0x20) == 'e';
+    }
+}
@@ -0,0 +1,37 @@
+package com.hospital.dao;
+
+import com.hospital.model.Patient;
+
+/**
+ * PatientVersions.java
+ * The optimistic-versioning rule shared by every storage engine:
+ *   - a new patient is stored as version 1
+ *   - an update must carry the version currently stored, and is stored as version + 1
+ * Engines call these while holding their write lock, then copy the new
+ * version back onto the caller's object once the write has succeeded.
+ */
+final class PatientVersions {
+
+    private PatientVersions() {}
+
+    /**
+     * The copy to store for a new patient.
+     */
+    static Patient firstVersion(Patient incoming) {
+        Patient stored = new Patient(incoming);
+        stored.setVersion(1);
+        return stored;
+    }
+
+    /**
+     * Checks the update is based on the stored version and returns the copy to store.
+     */
+    static Patient nextVersion(Patient current, Patient incoming) throws StalePatientException {
+        if (incoming.getVersion() != current.getVersion()) {
+            throw new StalePatientException(incoming.getPatientId(), current.getVersion(), incoming.getVersion());
+        }
+        Patient stored = new Patient(incoming);
+        stored.setVersion(current.getVersion() + 1);
+        return stored;
+    }
+}
@@ -0,0 +1,37 @@
+package com.hospital.dao;
+
+/**
+ * StalePatientException.java
+ * Thrown when an update is based on an old copy of a patient: someone else
+ * (another window, thread or workstation) saved the patient in the meantime.
+ * Nothing is written; reload the patient and apply the change again.
+ */
+public class StalePatientException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String patientId;
+    private final long currentVersion;
+    private final long staleVersion;
+
+    public StalePatientException(String patientId, long currentVersion, long staleVersion) {
+        super("Patient " + patientId + " was changed by someone else since it was opened"
+                + " (saved version " + currentVersion + ", yours " + staleVersion + ")."
+                + " Reload it and try again.");
+        this.patientId = patientId;
+        this.currentVersion = currentVersion;
+        this.staleVersion = staleVersion;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public long getStaleVersion() {
+        return staleVersion;
+    }
+}
@@ -0,0 +1,17 @@
+package com.hospital.dao;
+
+/**
+ * StorageInUseException.java
+ * Thrown when a storage engine that only one copy of the app may open at a
+ * time (journal, mapped, partitioned) is already open elsewhere. Unlike other
+ * start-up failures this is not answered by falling back to patients.txt,
+ * which would quietly show a different set of patients.
+ */
+public class StorageInUseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public StorageInUseException(String message) {
+        super(message);
+    }
+}
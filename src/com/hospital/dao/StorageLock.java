@@ -0,0 +1,101 @@
+package com.hospital.dao;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StorageLock.java
+ * An exclusive lock on a storage engine's files, taken when the DAO opens and
+ * held until close(). The journal, mapped and partitioned engines keep their
+ * data in memory and never re-read what another process wrote, so a second
+ * copy of the app on the same folder would overwrite the first one's changes.
+ * This makes that second copy fail at start-up instead.
+ *
+ * The text engine does not need it: it shares patients.txt through patients.lock.
+ */
+final class StorageLock {
+
+    // Lock files held by this JVM. A second DAO must be turned away before it opens
+    // the file: on some systems closing any channel on it drops the first one's lock.
+    private static final Set<Path> HELD = ConcurrentHashMap.newKeySet();
+
+    private final Path key;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private StorageLock(Path key, FileChannel channel, FileLock fileLock) {
+        this.key = key;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Takes the lock without waiting.
+     * @param engine The engine's name for the message, e.g. "journal".
+     * @throws StorageInUseException if another process (or another DAO in this one) holds it.
+     * @throws Exception if the lock file cannot be opened.
+     */
+    static StorageLock acquire(Path lockFile, String engine) throws Exception {
+        Path key = lockFile.toAbsolutePath().normalize();
+        if (!HELD.add(key)) {
+            throw inUse(lockFile, engine);
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            HELD.remove(key);
+            throw new Exception("Could not open " + lockFile.getFileName() + ": " + e.getMessage());
+        }
+        FileLock fileLock = null;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Locked through some other channel of this JVM
+        } catch (IOException e) {
+            close(channel);
+            HELD.remove(key);
+            throw new Exception("Could not lock " + lockFile.getFileName() + ": " + e.getMessage());
+        }
+        if (fileLock == null) {
+            close(channel);
+            HELD.remove(key);
+            throw inUse(lockFile, engine);
+        }
+        return new StorageLock(key, channel, fileLock);
+    }
+
+    private static StorageInUseException inUse(Path lockFile, String engine) {
+        return new StorageInUseException("The " + engine + " patient store in " + lockFile.getParent()
+                + " is already open in another copy of the app. It can only be used by one copy at a time:"
+                + " close the other copy, or run every copy with -D" + PatientDAOFactory.STORAGE_PROPERTY
+                + "=text to share the folder.");
+    }
+
+    /**
+     * Releases the lock; the engine must not write afterwards.
+     */
+    void release() {
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            System.err.println("Could not release storage lock: " + e.getMessage());
+        }
+        close(channel);
+        HELD.remove(key);
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Could not close storage lock file: " + e.getMessage());
+        }
+    }
+}
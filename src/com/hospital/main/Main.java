@@ -1,17 +1,26 @@
 package com.hospital.main;
 
+import com.hospital.server.PatientHttpServer;
 import com.hospital.ui.LoginDialog;
 import com.hospital.ui.MainFrame;
 
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.BorderFactory;
 import java.awt.Color;
 import java.awt.Font;
+import java.util.Arrays;
 
 public class Main {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+
+        // --- Headless mode: JSON service for ward tablets and the kiosk, no window ---
+        if (args.length > 0 && args[0].equals("--server")) {
+            PatientHttpServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         
         SwingUtilities.invokeLater(() -> {
             
@@ -55,7 +64,16 @@ public class Main {
 
             // --- 3. LAUNCH MAIN APP ON SUCCESS ---
             if (loginDialog.isLoginSuccessful()) {
-                MainFrame mainFrame = new MainFrame();
+                MainFrame mainFrame;
+                try {
+                    mainFrame = new MainFrame();
+                } catch (IllegalStateException e) {
+                    // e.g. the chosen storage is already open in another copy of the app
+                    JOptionPane.showMessageDialog(null, e.getMessage(), "Cannot open patient data",
+                            JOptionPane.ERROR_MESSAGE);
+                    System.exit(1);
+                    return;
+                }
                 mainFrame.setVisible(true);
             } else {
                 // If login is cancelled or failed, exit the application
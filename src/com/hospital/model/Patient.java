@@ -29,8 +29,33 @@ public class Patient implements Serializable {
     private double insuranceDiscountPercent;
     private double finalBillAmount;
 
+    // Bumped by the DAO on every save; an update carrying an older version is rejected
+    private long version;
+
     public Patient() {}
 
+    /**
+     * Copy constructor.
+     * Used by the DAO cache so callers never hold a reference to the cached record.
+     */
+    public Patient(Patient other) {
+        this.patientId = other.patientId;
+        this.name = other.name;
+        this.age = other.age;
+        this.contact = other.contact;
+        this.address = other.address;
+        this.medicalHistory = other.medicalHistory;
+        this.doctorAssigned = other.doctorAssigned;
+        this.treatmentGiven = other.treatmentGiven;
+        this.dateOfAdmission = other.dateOfAdmission;
+        this.dateOfDischarge = other.dateOfDischarge;
+        this.isDischarged = other.isDischarged;
+        this.baseBillAmount = other.baseBillAmount;
+        this.insuranceDiscountPercent = other.insuranceDiscountPercent;
+        this.finalBillAmount = other.finalBillAmount;
+        this.version = other.version;
+    }
+
     /**
      * Calculates the final bill based on the base bill and insurance.
      */
@@ -152,5 +177,16 @@ public class Patient implements Serializable {
     public void setFinalBillAmount(double finalBillAmount) {
         this.finalBillAmount = finalBillAmount;
     }
+
+    /**
+     * The record version this copy was read at (0 = never saved, or saved before versions existed).
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
 
@@ -0,0 +1,113 @@
+package com.hospital.report;
+
+import com.hospital.controller.PatientController;
+import com.hospital.dao.BillingAggregates;
+import com.hospital.model.Patient;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * PatientAnalytics.java
+ * Builds PatientReports (census, length of stay, revenue per doctor,
+ * insurance discounts) on top of PatientController.
+ *
+ * The patients are read once, as a parallel stream: the common fork-join
+ * pool splits them into chunks, each chunk fills its own PatientReport,
+ * and the chunks are merged. Nothing is shared between threads while
+ * counting, so this scales with the number of cores.
+ *
+ * For repeated reports, take a PatientColumns snapshot once and pass it to
+ * buildReport(columns, ...): the chunks then loop over primitive arrays
+ * instead of Patient objects.
+ *
+ * Can also be run from the command line:
+ *   java -cp ... com.hospital.report.PatientAnalytics 2024-01-01 2024-12-31
+ */
+public class PatientAnalytics {
+
+    private static final int CHUNK_ROWS = 64 * 1024;
+
+    private final PatientController controller;
+
+    public PatientAnalytics(PatientController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Builds the report for the given dates (both inclusive).
+     */
+    public PatientReport buildReport(LocalDate from, LocalDate to) throws Exception {
+        if (from == null || to == null) {
+            throw new Exception("Report start and end dates are required.");
+        }
+        if (from.isAfter(to)) {
+            throw new Exception("Report start date cannot be after its end date.");
+        }
+
+        long start = System.nanoTime();
+        PatientReport report;
+        try (Stream<Patient> patients = controller.streamPatients()) {
+            report = patients.parallel()
+                    .collect(() -> new PatientReport(from, to), PatientReport::add, PatientReport::merge);
+        }
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Builds the report from a columnar snapshot, in parallel chunks of rows.
+     */
+    public PatientReport buildReport(PatientColumns columns, LocalDate from, LocalDate to) throws Exception {
+        if (from == null || to == null) {
+            throw new Exception("Report start and end dates are required.");
+        }
+        if (from.isAfter(to)) {
+            throw new Exception("Report start date cannot be after its end date.");
+        }
+
+        long start = System.nanoTime();
+        int rows = columns.size();
+        int chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        PatientReport report = IntStream.range(0, chunks).parallel()
+                .collect(() -> new PatientReport(from, to),
+                         (chunkReport, chunk) -> chunkReport.addRows(columns,
+                                 chunk * CHUNK_ROWS, Math.min(rows, (chunk + 1) * CHUNK_ROWS)),
+                         PatientReport::merge);
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    // --- Command Line ---
+
+    public static void main(String[] args) throws Exception {
+        LocalDate to = (args.length > 1) ? LocalDate.parse(args[1]) : LocalDate.now();
+        LocalDate from = (args.length > 0) ? LocalDate.parse(args[0]) : to.minusYears(1);
+
+        PatientController controller = new PatientController();
+        PatientReport report = new PatientAnalytics(controller).buildReport(from, to);
+        printReport(report, controller);
+    }
+
+    static void printReport(PatientReport report, PatientController controller) {
+        System.out.println("Patient report " + report.getFrom() + " to " + report.getTo()
+                + " (" + report.getPatientsScanned() + " patients scanned in " + report.getElapsedMillis() + " ms)");
+        System.out.println("  Census: peak " + report.getPeakCensus()
+                + ", average " + controller.formatDouble(report.getAverageCensus()));
+        System.out.println("  Discharges: " + report.getDischargeCount()
+                + ", average length of stay " + controller.formatDouble(report.getAverageLengthOfStay()) + " days");
+        System.out.println("  Collected: " + money(report.getCollectedPaise(), controller));
+        System.out.println("  Insurance discounts: " + money(report.getInsuranceDiscountPaise(), controller)
+                + " over " + report.getInsuredCount() + " insured patients");
+        System.out.println("  Revenue by doctor:");
+        for (Map.Entry<String, Long> entry : report.getRevenuePaiseByDoctor().entrySet()) {
+            System.out.println("    " + entry.getKey() + ": " + money(entry.getValue(), controller));
+        }
+    }
+
+    private static String money(long paise, PatientController controller) {
+        return controller.formatCurrency(BillingAggregates.fromPaise(paise));
+    }
+}
@@ -0,0 +1,180 @@
+package com.hospital.report;
+
+import com.hospital.controller.PatientController;
+import com.hospital.dao.BillingAggregates;
+import com.hospital.model.Patient;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * PatientColumns.java
+ * A read-only, column-by-column snapshot of the patients for analytics.
+ *
+ * Instead of one Patient object per record (14 reference fields, scattered
+ * around the heap), each field is a primitive array indexed by row:
+ *   ages          int[]
+ *   admitted on   int[]  (epoch day, NO_DATE if missing)
+ *   discharged on int[]  (epoch day, NO_DATE if missing)
+ *   final bill    long[] (paise)
+ *   base bill     long[] (paise)
+ *   discharged    BitSet
+ *   insured       BitSet (insurance discount > 0)
+ *   doctor        int[]  (index into a dictionary of doctor names)
+ *
+ * Scans over these are tight loops over contiguous memory with no
+ * per-record allocation. The snapshot does not change after it is built;
+ * take a new one to see later writes.
+ */
+public class PatientColumns {
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private int size = 0;
+    String[] patientIds;
+    int[] ages;
+    int[] admittedDays;
+    int[] dischargedDays;
+    long[] finalBillPaise;
+    long[] baseBillPaise;
+    final BitSet discharged = new BitSet();
+    final BitSet insured = new BitSet();
+    int[] doctorIds;
+
+    // Doctor dictionary: case-insensitive key -> ID, and ID -> name as first seen
+    private final Map<String, Integer> doctorKeys = new HashMap<>();
+    private final List<String> doctorNames = new ArrayList<>();
+
+    private PatientColumns(int capacity) {
+        capacity = Math.max(capacity, 16);
+        patientIds = new String[capacity];
+        ages = new int[capacity];
+        admittedDays = new int[capacity];
+        dischargedDays = new int[capacity];
+        finalBillPaise = new long[capacity];
+        baseBillPaise = new long[capacity];
+        doctorIds = new int[capacity];
+    }
+
+    // --- Building ---
+
+    /**
+     * Snapshots every patient the controller can see (one sequential pass).
+     */
+    public static PatientColumns snapshot(PatientController controller) throws Exception {
+        int expected = controller.countPatients();
+        try (Stream<Patient> patients = controller.streamPatients()) {
+            return of(patients, expected);
+        }
+    }
+
+    /**
+     * Snapshots the given patients. expectedSize only sizes the arrays up front.
+     */
+    public static PatientColumns of(Stream<Patient> patients, int expectedSize) {
+        PatientColumns columns = new PatientColumns(expectedSize);
+        patients.forEach(columns::append);
+        return columns;
+    }
+
+    private void append(Patient p) {
+        if (size == ages.length) {
+            grow();
+        }
+        int row = size++;
+        patientIds[row] = p.getPatientId();
+        ages[row] = p.getAge();
+        admittedDays[row] = epochDay(p.getDateOfAdmission());
+        dischargedDays[row] = epochDay(p.getDateOfDischarge());
+        finalBillPaise[row] = BillingAggregates.toPaise(p.getFinalBillAmount());
+        baseBillPaise[row] = BillingAggregates.toPaise(p.getBaseBillAmount());
+        discharged.set(row, p.isDischarged());
+        insured.set(row, p.getInsuranceDiscountPercent() > 0);
+        doctorIds[row] = doctorId(p.getDoctorAssigned());
+    }
+
+    private void grow() {
+        int capacity = ages.length * 2;
+        patientIds = Arrays.copyOf(patientIds, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        admittedDays = Arrays.copyOf(admittedDays, capacity);
+        dischargedDays = Arrays.copyOf(dischargedDays, capacity);
+        finalBillPaise = Arrays.copyOf(finalBillPaise, capacity);
+        baseBillPaise = Arrays.copyOf(baseBillPaise, capacity);
+        doctorIds = Arrays.copyOf(doctorIds, capacity);
+    }
+
+    private int doctorId(String doctor) {
+        String name = (doctor != null) ? doctor.trim() : "";
+        return doctorKeys.computeIfAbsent(name.toLowerCase(), key -> {
+            doctorNames.add(name);
+            return doctorNames.size() - 1;
+        });
+    }
+
+    private static int epochDay(LocalDate date) {
+        return (date != null) ? (int) date.toEpochDay() : NO_DATE;
+    }
+
+    // --- Reading ---
+
+    public int size() {
+        return size;
+    }
+
+    public String getPatientId(int row) {
+        return patientIds[row];
+    }
+
+    public int getAge(int row) {
+        return ages[row];
+    }
+
+    /**
+     * Admission date as an epoch day, or NO_DATE.
+     */
+    public int getAdmittedDay(int row) {
+        return admittedDays[row];
+    }
+
+    /**
+     * Discharge date as an epoch day, or NO_DATE.
+     */
+    public int getDischargedDay(int row) {
+        return dischargedDays[row];
+    }
+
+    public long getFinalBillPaise(int row) {
+        return finalBillPaise[row];
+    }
+
+    public long getBaseBillPaise(int row) {
+        return baseBillPaise[row];
+    }
+
+    public boolean isDischarged(int row) {
+        return discharged.get(row);
+    }
+
+    public boolean isInsured(int row) {
+        return insured.get(row);
+    }
+
+    public int getDoctorId(int row) {
+        return doctorIds[row];
+    }
+
+    public int getDoctorCount() {
+        return doctorNames.size();
+    }
+
+    public String getDoctorName(int doctorId) {
+        return doctorNames.get(doctorId);
+    }
+}
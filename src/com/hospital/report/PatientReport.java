@@ -0,0 +1,256 @@
+package com.hospital.report;
+
+import com.hospital.dao.BillingAggregates;
+import com.hospital.model.Patient;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * PatientReport.java
+ * Management figures for a date range, built in one pass over the patients:
+ *   - daily census     (patients in a bed at midnight, for each day in the range)
+ *   - length of stay   (discharge date - admission date, for patients discharged in the range)
+ *   - revenue by doctor (final bills of patients discharged in the range)
+ *   - insurance discount totals (base bill - final bill, same patients)
+ *
+ * This is also the accumulator for the parallel pass: each chunk of patients
+ * gets its own PatientReport, and the chunks are combined with merge().
+ * Every field is a plain sum (or an array/map of sums), so merging in any
+ * order gives the same answer. Money is summed in whole paise.
+ */
+public class PatientReport {
+
+    private final LocalDate from;
+    private final LocalDate to;
+    private final long fromDay;
+    private final long toDay;
+
+    // Census as +1 on the admission day and -1 on the discharge day; summed up in finish()
+    private final int[] census;
+    private boolean finished = false;
+
+    private long patientsScanned = 0;
+    private long dischargeCount = 0;
+    private long stayDays = 0;
+    private long stayCount = 0;
+    private long collectedPaise = 0;
+    private long insuranceDiscountPaise = 0;
+    private long insuredCount = 0;
+    private Map<String, Long> revenueByDoctor = new HashMap<>();
+    private long elapsedNanos = 0;
+
+    public PatientReport(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        this.fromDay = from.toEpochDay();
+        this.toDay = to.toEpochDay();
+        this.census = new int[(int) (toDay - fromDay) + 2];
+    }
+
+    // --- Accumulating (one chunk of patients) ---
+
+    /**
+     * Adds one patient to this chunk's totals.
+     */
+    public void add(Patient patient) {
+        LocalDate admitted = patient.getDateOfAdmission();
+        LocalDate discharged = patient.getDateOfDischarge();
+        add(admitted != null ? admitted.toEpochDay() : Long.MIN_VALUE,
+            discharged != null ? discharged.toEpochDay() : Long.MIN_VALUE,
+            patient.isDischarged(),
+            patient.getDoctorAssigned(),
+            BillingAggregates.toPaise(patient.getFinalBillAmount()),
+            BillingAggregates.toPaise(patient.getBaseBillAmount()),
+            patient.getInsuranceDiscountPercent() > 0);
+    }
+
+    /**
+     * Adds one patient given as plain values. Long.MIN_VALUE means "no date".
+     */
+    void add(long admittedDay, long dischargedDay, boolean discharged, String doctor,
+             long finalPaise, long basePaise, boolean insured) {
+        if (count(admittedDay, dischargedDay, discharged, finalPaise, basePaise, insured)) {
+            String doctorName = (doctor != null) ? doctor.trim() : "";
+            revenueByDoctor.merge(doctorName, finalPaise, Long::sum);
+        }
+    }
+
+    /**
+     * Adds rows [start, end) of a columnar snapshot. Revenue is summed per
+     * doctor ID in a local array, so the loop allocates nothing per row.
+     */
+    void addRows(PatientColumns columns, int start, int end) {
+        long[] doctorPaise = new long[columns.getDoctorCount()];
+        boolean[] doctorSeen = new boolean[doctorPaise.length];
+        for (int row = start; row < end; row++) {
+            int admitted = columns.admittedDays[row];
+            int dischargedOn = columns.dischargedDays[row];
+            long finalPaise = columns.finalBillPaise[row];
+            if (count(admitted != PatientColumns.NO_DATE ? admitted : Long.MIN_VALUE,
+                      dischargedOn != PatientColumns.NO_DATE ? dischargedOn : Long.MIN_VALUE,
+                      columns.discharged.get(row), finalPaise, columns.baseBillPaise[row],
+                      columns.insured.get(row))) {
+                int doctorId = columns.doctorIds[row];
+                doctorPaise[doctorId] += finalPaise;
+                doctorSeen[doctorId] = true;
+            }
+        }
+        for (int doctorId = 0; doctorId < doctorPaise.length; doctorId++) {
+            if (doctorSeen[doctorId]) {
+                revenueByDoctor.merge(columns.getDoctorName(doctorId), doctorPaise[doctorId], Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Counts one patient towards everything except revenue by doctor.
+     * @return true if the patient was discharged inside the range (and so earns revenue).
+     */
+    private boolean count(long admittedDay, long dischargedDay, boolean discharged,
+                          long finalPaise, long basePaise, boolean insured) {
+        patientsScanned++;
+
+        // Census: in a bed from the admission day up to (not including) the discharge day
+        if (admittedDay != Long.MIN_VALUE) {
+            long start = Math.max(admittedDay, fromDay);
+            long end = (discharged && dischargedDay != Long.MIN_VALUE) ? dischargedDay : toDay + 1;
+            end = Math.min(end, toDay + 1);
+            if (start < end) {
+                census[(int) (start - fromDay)]++;
+                census[(int) (end - fromDay)]--;
+            }
+        }
+
+        // Everything else counts patients discharged inside the range
+        if (!discharged || dischargedDay < fromDay || dischargedDay > toDay) {
+            return false;
+        }
+        dischargeCount++;
+        if (admittedDay != Long.MIN_VALUE && dischargedDay >= admittedDay) {
+            stayDays += dischargedDay - admittedDay;
+            stayCount++;
+        }
+        collectedPaise += finalPaise;
+        insuranceDiscountPaise += basePaise - finalPaise;
+        if (insured) {
+            insuredCount++;
+        }
+        return true;
+    }
+
+    /**
+     * Folds another chunk's totals into this one.
+     */
+    public void merge(PatientReport other) {
+        for (int i = 0; i < census.length; i++) {
+            census[i] += other.census[i];
+        }
+        patientsScanned += other.patientsScanned;
+        dischargeCount += other.dischargeCount;
+        stayDays += other.stayDays;
+        stayCount += other.stayCount;
+        collectedPaise += other.collectedPaise;
+        insuranceDiscountPaise += other.insuranceDiscountPaise;
+        insuredCount += other.insuredCount;
+        other.revenueByDoctor.forEach((doctor, paise) -> revenueByDoctor.merge(doctor, paise, Long::sum));
+    }
+
+    /**
+     * Turns the census deltas into per-day counts and groups doctors case-insensitively.
+     * Called once, after every chunk has been merged.
+     */
+    void finish(long elapsedNanos) {
+        if (finished) {
+            return;
+        }
+        for (int i = 1; i < census.length; i++) {
+            census[i] += census[i - 1];
+        }
+        Map<String, Long> byDoctor = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        revenueByDoctor.forEach((doctor, paise) -> byDoctor.merge(doctor, paise, Long::sum));
+        this.revenueByDoctor = byDoctor;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = true;
+    }
+
+    // --- Results ---
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public long getPatientsScanned() {
+        return patientsScanned;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * Patients in a bed at midnight on the given day (0 outside the range).
+     */
+    public int getCensus(LocalDate day) {
+        long index = day.toEpochDay() - fromDay;
+        return (index < 0 || day.toEpochDay() > toDay) ? 0 : census[(int) index];
+    }
+
+    public Map<LocalDate, Integer> getCensusByDay() {
+        Map<LocalDate, Integer> result = new TreeMap<>();
+        for (long day = fromDay; day <= toDay; day++) {
+            result.put(LocalDate.ofEpochDay(day), census[(int) (day - fromDay)]);
+        }
+        return result;
+    }
+
+    public int getPeakCensus() {
+        int peak = 0;
+        for (int i = 0; i <= toDay - fromDay; i++) {
+            peak = Math.max(peak, census[i]);
+        }
+        return peak;
+    }
+
+    public double getAverageCensus() {
+        long total = 0;
+        for (int i = 0; i <= toDay - fromDay; i++) {
+            total += census[i];
+        }
+        return (double) total / (toDay - fromDay + 1);
+    }
+
+    public long getDischargeCount() {
+        return dischargeCount;
+    }
+
+    /**
+     * Average length of stay in days, for patients discharged in the range.
+     */
+    public double getAverageLengthOfStay() {
+        return (stayCount == 0) ? 0 : (double) stayDays / stayCount;
+    }
+
+    public long getCollectedPaise() {
+        return collectedPaise;
+    }
+
+    public Map<String, Long> getRevenuePaiseByDoctor() {
+        return Collections.unmodifiableMap(revenueByDoctor);
+    }
+
+    public long getInsuranceDiscountPaise() {
+        return insuranceDiscountPaise;
+    }
+
+    public long getInsuredCount() {
+        return insuredCount;
+    }
+}
@@ -0,0 +1,225 @@
+package com.hospital.server;
+
+import com.hospital.model.Patient;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Json.java
+ * Just enough JSON for the HTTP service, without a library:
+ *   - writing patients, strings and numbers straight to a response Writer
+ *   - reading flat request bodies ({"name": "A", "age": 40, "discharged": false})
+ * Nested objects and arrays are not accepted in request bodies.
+ */
+final class Json {
+
+    private Json() {}
+
+    // --- Writing ---
+
+    static void writePatient(Appendable out, Patient p) throws IOException {
+        out.append('{');
+        field(out, "patientId", p.getPatientId()).append(',');
+        field(out, "name", p.getName()).append(',');
+        out.append("\"age\":").append(String.valueOf(p.getAge())).append(',');
+        field(out, "contact", p.getContact()).append(',');
+        field(out, "address", p.getAddress()).append(',');
+        field(out, "medicalHistory", p.getMedicalHistory()).append(',');
+        field(out, "doctorAssigned", p.getDoctorAssigned()).append(',');
+        field(out, "treatmentGiven", p.getTreatmentGiven()).append(',');
+        field(out, "dateOfAdmission", date(p.getDateOfAdmission())).append(',');
+        field(out, "dateOfDischarge", date(p.getDateOfDischarge())).append(',');
+        out.append("\"discharged\":").append(String.valueOf(p.isDischarged())).append(',');
+        number(out, "baseBillAmount", p.getBaseBillAmount()).append(',');
+        number(out, "insuranceDiscountPercent", p.getInsuranceDiscountPercent()).append(',');
+        number(out, "finalBillAmount", p.getFinalBillAmount()).append(',');
+        out.append("\"version\":").append(String.valueOf(p.getVersion()));
+        out.append('}');
+    }
+
+    /**
+     * Appends "name":"value" (or "name":null).
+     */
+    static Appendable field(Appendable out, String name, String value) throws IOException {
+        quote(out, name).append(':');
+        return (value != null) ? quote(out, value) : out.append("null");
+    }
+
+    /**
+     * Appends "name":number. NaN and Infinity have no JSON form, so they are written
+     * as null rather than as text no client could parse.
+     */
+    static Appendable number(Appendable out, String name, double value) throws IOException {
+        quote(out, name).append(':');
+        return out.append(Double.isFinite(value) ? String.valueOf(value) : "null");
+    }
+
+    static Appendable quote(Appendable out, String s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"');
+    }
+
+    private static String date(LocalDate date) {
+        return (date != null) ? date.toString() : null;
+    }
+
+    // --- Reading ---
+
+    /**
+     * Parses a flat JSON object. Values come back as text: strings as-is, numbers as
+     * written, true/false as "true"/"false"; null values are left out.
+     */
+    static Map<String, String> parseObject(String body) throws Exception {
+        Parser parser = new Parser(body);
+        Map<String, String> values = parser.object();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw new Exception("Unexpected text after the JSON object.");
+        }
+        return values;
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() throws Exception {
+            Map<String, String> values = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return values;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                String value = value();
+                if (value != null) {
+                    values.put(name, value);
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return values;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private String value() throws Exception {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("Nested JSON values are not supported");
+            }
+            int start = pos;
+            while (!atEnd() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                return literal;
+            }
+            throw error("Invalid JSON value '" + literal + "'");
+        }
+
+        private String string() throws Exception {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                            throw error("Invalid \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: sb.append(escaped); // \" \\ \/
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        boolean atEnd() {
+            return pos >= text.length();
+        }
+
+        private char peek() throws Exception {
+            if (atEnd()) {
+                throw error("Unexpected end of JSON");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() throws Exception {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) throws Exception {
+            if (next() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private Exception error(String message) {
+            return new Exception("Invalid JSON request body: " + message + " at character " + pos + ".");
+        }
+    }
+}
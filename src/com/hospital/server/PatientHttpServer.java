@@ -0,0 +1,625 @@
+package com.hospital.server;
+
+import com.hospital.controller.PatientController;
+import com.hospital.controller.TaskExecutors;
+import com.hospital.dao.BillingAggregates;
+import com.hospital.dao.PatientQuery;
+import com.hospital.dao.PatientSortKey;
+import com.hospital.dao.StalePatientException;
+import com.hospital.model.Patient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * PatientHttpServer.java
+ * Headless mode: serves the patient, query and billing operations of
+ * PatientController as JSON over HTTP, for ward tablets and the kiosk.
+ *
+ *   GET  /api/patients                  every patient (streamed)
+ *        ?q=text                        live-filter search by ID or name
+ *        ?doctor=&status=admitted|discharged&from=&to=   PatientQuery
+ *        ?offset=&limit=&sort=NAME      one page (&desc=true for descending)
+ *        ?after={id}&limit=&sort=NAME   the page after that patient (keyset paging)
+ *   POST /api/patients                  add (body: Patient fields)
+ *   GET  /api/patients/{id}
+ *   PUT  /api/patients/{id}             update; fields left out keep their value.
+ *                                       Send "version" to reject the edit (409) if
+ *                                       someone else saved the patient since the
+ *                                       client read it; without it, the version the
+ *                                       server just read is used.
+ *   POST /api/patients/{id}/discharge   body optional: {"version": n}, as for PUT
+ *   POST /api/patients/{id}/bill        print (archive) and return the bill
+ *   GET  /api/patients/{id}/bill        the last printed bill
+ *   GET  /api/billing/summary           collected/outstanding totals, per doctor
+ *
+ * All requests share ONE controller and so one in-memory store (the indexed
+ * DAO), whatever the number of clients. Each request is handled on its own
+ * thread from TaskExecutors (virtual threads where the JDK has them). Listings
+ * are written as they are read: searches and queries first collect only the
+ * matching IDs and look each patient up as it is written, so a large listing
+ * never sits in memory.
+ *
+ * The service listens on this machine only (127.0.0.1) unless -Dhospital.server.bind
+ * names another address, which it refuses without an access token. If
+ * -Dhospital.server.token is set, requests need "Authorization: Bearer <token>".
+ * So that a web page open in a browser on the same machine cannot use the
+ * service, every POST and PUT must be sent as "Content-Type: application/json"
+ * (a page can only send plain forms cross-origin), a request from another
+ * site's page (a foreign Origin header) is refused, and so is a Host header
+ * that does not name the bind address (DNS rebinding).
+ */
+public class PatientHttpServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final String DEFAULT_BIND_ADDRESS = "127.0.0.1";
+    private static final String PORT_PROPERTY = "hospital.server.port";
+    private static final String BIND_PROPERTY = "hospital.server.bind";
+    private static final String TOKEN_PROPERTY = "hospital.server.token";
+    private static final String API_PREFIX = "/api/";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final int MAX_BODY_BYTES = 1 << 20;
+
+    private final PatientController controller;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] expectedAuthorization; // "Bearer <token>"; null = no access token required
+    private final Set<String> allowedHosts;     // Host header names we answer to; null = any (bound to all addresses)
+
+    /**
+     * An error with its HTTP status (404, 405, 400, ...).
+     */
+    private static class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * A server on this machine's loopback address only.
+     */
+    public PatientHttpServer(PatientController controller, int port, String token) throws IOException {
+        this(controller, DEFAULT_BIND_ADDRESS, port, token);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code host} is reachable from other machines
+     *         (anything but a loopback address) and no token is given.
+     */
+    public PatientHttpServer(PatientController controller, String host, int port, String token) throws IOException {
+        InetAddress address = InetAddress.getByName(host);
+        boolean hasToken = token != null && !token.isEmpty();
+        if (!address.isLoopbackAddress() && !hasToken) {
+            throw new IllegalArgumentException("Refusing to serve patient data on " + host
+                    + " without an access token. Set -D" + TOKEN_PROPERTY + ", or leave -D" + BIND_PROPERTY
+                    + " unset to serve this machine only.");
+        }
+        this.controller = controller;
+        this.expectedAuthorization = hasToken ? ("Bearer " + token).getBytes(StandardCharsets.UTF_8) : null;
+        this.allowedHosts = address.isAnyLocalAddress() ? null : allowedHosts(host, address);
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        this.executor = TaskExecutors.newPerTaskExecutor("http-request");
+        this.server.setExecutor(executor);
+        this.server.createContext(API_PREFIX, this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting connections, gives open requests up to a second, then stops.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // --- Request Handling ---
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            checkOrigin(exchange);
+            if (expectedAuthorization != null && !isAuthorized(exchange)) {
+                throw new HttpError(401, "Missing or wrong access token.");
+            }
+            route(exchange);
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (StalePatientException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " failed: " + e);
+            sendError(exchange, 500, "Internal error.");
+        } catch (Exception e) {
+            // The controller's own messages (validation, not found, ...)
+            sendError(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Refuses requests a browser could have been tricked into sending: a Host
+     * that is not this server (DNS rebinding), an Origin of another site, and
+     * a write that is not JSON (the content types a page may send cross-origin
+     * without asking first).
+     */
+    private void checkOrigin(HttpExchange exchange) throws HttpError {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (allowedHosts != null && (host == null || !allowedHosts.contains(hostName(host)))) {
+            throw new HttpError(403, "Unknown host.");
+        }
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !origin.equalsIgnoreCase("http://" + host)) {
+            throw new HttpError(403, "Requests from other sites are not accepted.");
+        }
+        String method = exchange.getRequestMethod();
+        if ((method.equals("POST") || method.equals("PUT"))
+                && !isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+            throw new HttpError(415, "Send " + method + " requests as Content-Type: application/json.");
+        }
+    }
+
+    /**
+     * The names a client may use for the bind address: as configured, as an IP,
+     * and for loopback also "localhost".
+     */
+    private static Set<String> allowedHosts(String host, InetAddress address) {
+        Set<String> hosts = new HashSet<>();
+        hosts.add(hostName(host));
+        hosts.add(address.getHostAddress().toLowerCase(Locale.ROOT));
+        if (address.isLoopbackAddress()) {
+            hosts.add("localhost");
+            hosts.add("127.0.0.1");
+            hosts.add("::1");
+        }
+        return hosts;
+    }
+
+    /**
+     * "Example:8080" -> "example", "[::1]:8080" -> "::1".
+     */
+    private static String hostName(String host) {
+        String name = host.trim().toLowerCase(Locale.ROOT);
+        if (name.startsWith("[")) {
+            int end = name.indexOf(']');
+            return (end < 0) ? name.substring(1) : name.substring(1, end);
+        }
+        int colon = name.indexOf(':');
+        return (colon >= 0 && colon == name.lastIndexOf(':')) ? name.substring(0, colon) : name;
+    }
+
+    private static boolean isJson(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mediaType = (semicolon < 0) ? contentType : contentType.substring(0, semicolon);
+        return mediaType.trim().equalsIgnoreCase("application/json");
+    }
+
+    /**
+     * Compares the Authorization header in constant time, so response timing
+     * does not reveal how much of a guessed token was right.
+     */
+    private boolean isAuthorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        byte[] given = (header != null) ? header.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        return MessageDigest.isEqual(expectedAuthorization, given);
+    }
+
+    private void route(HttpExchange exchange) throws Exception {
+        String method = exchange.getRequestMethod();
+        List<String> path = new ArrayList<>();
+        for (String part : exchange.getRequestURI().getPath().substring(API_PREFIX.length()).split("/")) {
+            if (!part.isEmpty()) {
+                path.add(URLDecoder.decode(part, StandardCharsets.UTF_8));
+            }
+        }
+
+        if (path.size() == 2 && path.get(0).equals("billing") && path.get(1).equals("summary")) {
+            requireMethod(method, "GET");
+            sendBillingSummary(exchange);
+            return;
+        }
+        if (path.isEmpty() || !path.get(0).equals("patients")) {
+            throw new HttpError(404, "Unknown path.");
+        }
+
+        if (path.size() == 1) {
+            if (method.equals("GET")) {
+                listPatients(exchange);
+            } else {
+                requireMethod(method, "POST");
+                addPatient(exchange);
+            }
+            return;
+        }
+
+        String patientId = path.get(1);
+        if (path.size() == 2) {
+            if (method.equals("GET")) {
+                sendPatient(exchange, 200, requirePatient(patientId));
+            } else {
+                requireMethod(method, "PUT");
+                updatePatient(exchange, patientId);
+            }
+            return;
+        }
+        if (path.size() == 3 && path.get(2).equals("discharge")) {
+            requireMethod(method, "POST");
+            Map<String, String> body = readBody(exchange);
+            Patient current = requirePatient(patientId);
+            if (current.isDischarged()) {
+                throw new HttpError(409, "Patient " + patientId + " is already discharged.");
+            }
+            controller.dischargePatient(patientId, version(body, current));
+            sendPatient(exchange, 200, requirePatient(patientId));
+            return;
+        }
+        if (path.size() == 3 && path.get(2).equals("bill")) {
+            requirePatient(patientId);
+            String bill;
+            if (method.equals("GET")) {
+                if (controller.getBillArchive().getLatestBill(patientId) == null) {
+                    throw new HttpError(404, "No bill has been printed for this patient yet.");
+                }
+                bill = controller.reprintBill(patientId);
+            } else {
+                requireMethod(method, "POST");
+                bill = controller.printBill(patientId);
+            }
+            StringBuilder json = new StringBuilder("{");
+            Json.field(json, "patientId", patientId).append(',');
+            Json.field(json, "bill", bill).append('}');
+            sendJson(exchange, 200, json.toString());
+            return;
+        }
+        throw new HttpError(404, "Unknown path.");
+    }
+
+    // --- Patients ---
+
+    private void listPatients(HttpExchange exchange) throws Exception {
+        Map<String, String> params = queryParams(exchange);
+
+        if (params.containsKey("q")) {
+            List<String> ids = new ArrayList<>(controller.searchPatientIds(params.get("q")));
+            ids.sort(PatientSortKey.ID_ORDER);
+            streamPatients(exchange, lookUp(ids.iterator()));
+            return;
+        }
+
+        if (params.containsKey("doctor") || params.containsKey("status")
+                || params.containsKey("from") || params.containsKey("to")) {
+            streamPatients(exchange, lookUp(controller.findPatientIds(toQuery(params)).iterator()));
+            return;
+        }
+
+        if (params.containsKey("offset") || params.containsKey("limit") || params.containsKey("sort")
+                || params.containsKey("after")) {
+            int offset = intParam(params, "offset", 0);
+            int limit = intParam(params, "limit", 100);
+            PatientSortKey sortKey = null;
+            if (params.containsKey("sort")) {
+                try {
+                    sortKey = PatientSortKey.valueOf(params.get("sort").toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new HttpError(400, "Unknown sort '" + params.get("sort") + "'.");
+                }
+            }
+            boolean descending = Boolean.parseBoolean(params.get("desc"));
+            if (params.containsKey("after")) {
+                Patient after = requirePatient(params.get("after"));
+                streamPatients(exchange, controller.getPatientPageAfter(after, limit, sortKey, descending).iterator());
+            } else {
+                streamPatients(exchange, controller.getPatientPage(offset, limit, sortKey, descending).iterator());
+            }
+            return;
+        }
+
+        try (Stream<Patient> patients = controller.streamPatients()) {
+            streamPatients(exchange, patients.iterator());
+        }
+    }
+
+    /**
+     * Looks each patient up as it is written, not all up front.
+     */
+    private Iterator<Patient> lookUp(Iterator<String> ids) {
+        return new Iterator<Patient>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public Patient next() {
+                try {
+                    return controller.getPatient(ids.next());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        };
+    }
+
+    private PatientQuery toQuery(Map<String, String> params) throws HttpError {
+        PatientQuery query = new PatientQuery();
+        if (params.containsKey("doctor")) {
+            query.doctor(params.get("doctor"));
+        }
+        String status = params.getOrDefault("status", "");
+        if (status.equalsIgnoreCase("admitted")) {
+            query.admittedOnly();
+        } else if (status.equalsIgnoreCase("discharged")) {
+            query.dischargedOnly();
+        } else if (!status.isEmpty()) {
+            throw new HttpError(400, "status must be 'admitted' or 'discharged'.");
+        }
+        if (params.containsKey("from") || params.containsKey("to")) {
+            query.admittedBetween(dateParam(params, "from", LocalDate.MIN), dateParam(params, "to", LocalDate.MAX));
+        }
+        return query;
+    }
+
+    private void addPatient(HttpExchange exchange) throws Exception {
+        Map<String, String> body = readBody(exchange);
+        Patient saved = controller.addNewPatient(
+                body.getOrDefault("name", ""),
+                body.getOrDefault("age", ""),
+                body.getOrDefault("contact", ""),
+                body.getOrDefault("address", ""),
+                body.getOrDefault("dateOfAdmission", controller.formatDate(LocalDate.now())),
+                body.getOrDefault("doctorAssigned", ""),
+                body.getOrDefault("treatmentGiven", ""),
+                body.getOrDefault("medicalHistory", ""),
+                body.getOrDefault("baseBillAmount", "0"),
+                body.getOrDefault("insuranceDiscountPercent", "0"));
+        exchange.getResponseHeaders().set("Location", API_PREFIX + "patients/" + saved.getPatientId());
+        sendPatient(exchange, 201, saved);
+    }
+
+    private void updatePatient(HttpExchange exchange, String patientId) throws Exception {
+        Map<String, String> body = readBody(exchange);
+        Patient current = requirePatient(patientId);
+        controller.updatePatient(
+                patientId,
+                body.getOrDefault("name", current.getName()),
+                body.getOrDefault("age", String.valueOf(current.getAge())),
+                body.getOrDefault("contact", current.getContact()),
+                body.getOrDefault("address", current.getAddress()),
+                body.getOrDefault("dateOfAdmission", controller.formatDate(current.getDateOfAdmission())),
+                body.getOrDefault("doctorAssigned", current.getDoctorAssigned()),
+                body.getOrDefault("treatmentGiven", current.getTreatmentGiven()),
+                body.getOrDefault("medicalHistory", current.getMedicalHistory()),
+                body.getOrDefault("baseBillAmount", String.valueOf(current.getBaseBillAmount())),
+                body.getOrDefault("insuranceDiscountPercent", String.valueOf(current.getInsuranceDiscountPercent())),
+                Boolean.parseBoolean(body.getOrDefault("discharged", String.valueOf(current.isDischarged()))),
+                body.getOrDefault("dateOfDischarge", controller.formatDate(current.getDateOfDischarge())),
+                version(body, current));
+        sendPatient(exchange, 200, requirePatient(patientId));
+    }
+
+    private Patient requirePatient(String patientId) throws Exception {
+        Patient patient = controller.getPatient(patientId);
+        if (patient == null) {
+            throw new HttpError(404, "Patient " + patientId + " not found.");
+        }
+        return patient;
+    }
+
+    /**
+     * The version the client sent, or else that of the patient the defaults were
+     * read from, so a save in between is still rejected (409) rather than overwritten.
+     */
+    private static long version(Map<String, String> body, Patient current) throws HttpError {
+        String version = body.get("version");
+        if (version == null) {
+            return current.getVersion();
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "version must be a whole number.");
+        }
+    }
+
+    // --- Billing ---
+
+    private void sendBillingSummary(HttpExchange exchange) throws Exception {
+        BillingAggregates totals = controller.getBillingAggregates();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"collected\":").append(rupees(totals.getCollectedPaise())).append(',');
+        json.append("\"outstanding\":").append(rupees(totals.getOutstandingPaise())).append(',');
+        json.append("\"dischargedCount\":").append(totals.getDischargedCount()).append(',');
+        json.append("\"admittedCount\":").append(totals.getAdmittedCount()).append(',');
+        json.append("\"collectedByDoctor\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : totals.getCollectedPaiseByDoctor().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Json.quote(json, entry.getKey());
+            json.append(':').append(rupees(entry.getValue()));
+        }
+        json.append("}}");
+        sendJson(exchange, 200, json.toString());
+    }
+
+    /**
+     * Paise as a plain decimal rupee amount ("1112189978.44", never "1.11E9").
+     */
+    private static String rupees(long paise) {
+        return BigDecimal.valueOf(paise, 2).toPlainString();
+    }
+
+    // --- Responses ---
+
+    /**
+     * Writes a JSON array as the patients are produced, with chunked encoding,
+     * so neither the list nor the response body is built in memory first.
+     */
+    private static void streamPatients(HttpExchange exchange, Iterator<Patient> patients) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(200, 0); // 0 = chunked
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024)) {
+            out.write('[');
+            boolean first = true;
+            while (patients.hasNext()) {
+                Patient patient = patients.next();
+                if (patient == null) {
+                    continue; // Removed between the search and the lookup
+                }
+                if (!first) {
+                    out.write(",\n");
+                }
+                first = false;
+                Json.writePatient(out, patient);
+            }
+            out.write("]\n");
+        }
+    }
+
+    private static void sendPatient(HttpExchange exchange, int status, Patient patient) throws IOException {
+        StringBuilder json = new StringBuilder();
+        Json.writePatient(json, patient);
+        sendJson(exchange, status, json.toString());
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            return; // Already streaming a response; the client sees a truncated body
+        }
+        StringBuilder json = new StringBuilder("{");
+        Json.field(json, "error", (message != null) ? message : "Request failed.").append('}');
+        sendJson(exchange, status, json.toString());
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // --- Request Helpers ---
+
+    private static void requireMethod(String method, String allowed) throws HttpError {
+        if (!method.equals(allowed)) {
+            throw new HttpError(405, method + " is not supported here.");
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws Exception {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new HttpError(413, "Request body is too large.");
+            }
+            String body = new String(bytes, StandardCharsets.UTF_8).trim();
+            return body.isEmpty() ? new HashMap<>() : Json.parseObject(body);
+        }
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = (eq < 0) ? pair : pair.substring(0, eq);
+            String value = (eq < 0) ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) throws HttpError {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new NumberFormatException();
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, name + " must be a whole number of 0 or more.");
+        }
+    }
+
+    private static LocalDate dateParam(Map<String, String> params, String name, LocalDate defaultValue) throws HttpError {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (RuntimeException e) {
+            throw new HttpError(400, name + " must be in YYYY-MM-DD format.");
+        }
+    }
+
+    /**
+     * Usage: PatientHttpServer [port]   (or -Dhospital.server.port; -Dhospital.server.bind for the address)
+     * Storage is chosen by -Dhospital.storage, like the desktop app.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+        String host = System.getProperty(BIND_PROPERTY, DEFAULT_BIND_ADDRESS);
+        PatientHttpServer server;
+        try {
+            server = new PatientHttpServer(new PatientController(), host, port, System.getProperty(TOKEN_PROPERTY));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "http-shutdown"));
+        server.start();
+        System.out.println("Patient service listening on " + host + ":" + server.getPort()
+                + (TaskExecutors.usesVirtualThreads() ? " (virtual threads)" : " (thread per request)"));
+    }
+}
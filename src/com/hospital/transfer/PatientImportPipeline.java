@@ -0,0 +1,415 @@
+package com.hospital.transfer;
+
+import com.hospital.controller.PatientController;
+import com.hospital.model.Patient;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PatientImportPipeline.java
+ * Imports patient records transferred from other hospitals (CSV or legacy
+ * "||" files, see PatientRecordParser) in three stages:
+ *
+ *   reader  --chunks of lines-->  validators (N threads)  --checked rows-->  writer
+ *
+ * 1. The reader streams the file and hands out chunks of lines.
+ * 2. Each validator parses its chunk and runs PatientController's rules
+ *    (validateNewPatient / validateDischarge) on every row.
+ * 3. A single writer saves valid rows with addNewPatients, a whole batch per
+ *    write, and appends rejected rows (line number, reason, original text) to
+ *    the error file. It restores file order, so patients are saved and errors
+ *    listed in the order they appear in the source.
+ *
+ * Both queues are bounded: if the writer falls behind, the validators block,
+ * and then the reader does, so memory stays flat however large the file is.
+ * Chunks waiting for their turn at the writer are bounded too: the reader takes
+ * a permit per chunk and the writer gives it back once that chunk is written,
+ * so one slow chunk cannot let the others pile up behind it.
+ * A bad row never stops the import; a failed save does (rows already saved stay).
+ */
+public class PatientImportPipeline {
+
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    public static final int DEFAULT_CHUNKS_IN_FLIGHT_PER_WORKER = 4;
+
+    private final PatientController controller;
+    private final int validatorThreads;
+    private final int batchSize;
+    private final int chunkSize;
+
+    public PatientImportPipeline(PatientController controller) {
+        this(controller, Math.max(1, Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("hospital.import.batchSize", DEFAULT_BATCH_SIZE), DEFAULT_CHUNK_SIZE);
+    }
+
+    public PatientImportPipeline(PatientController controller, int validatorThreads, int batchSize, int chunkSize) {
+        this.controller = controller;
+        this.validatorThreads = Math.max(1, validatorThreads);
+        this.batchSize = Math.max(1, batchSize);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    // --- Queue items ---
+
+    /** Lines handed from the reader to a validator. An END chunk has no lines. */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(-1, 0, null);
+
+        final long sequence;
+        final long firstLineNumber;
+        final List<String> lines;
+
+        Chunk(long sequence, long firstLineNumber, List<String> lines) {
+            this.sequence = sequence;
+            this.firstLineNumber = firstLineNumber;
+            this.lines = lines;
+        }
+    }
+
+    /** A validated chunk handed to the writer. An END result has no rows. */
+    private static final class CheckedChunk {
+        static final CheckedChunk END = new CheckedChunk(-1, null, null);
+
+        final long sequence;
+        final List<Patient> valid;
+        final List<String> rejected; // Lines for the error file
+
+        CheckedChunk(long sequence, List<Patient> valid, List<String> rejected) {
+            this.sequence = sequence;
+            this.valid = valid;
+            this.rejected = rejected;
+        }
+    }
+
+    /** Busy/wait counters for one stage; shared by all threads of that stage. */
+    private static final class StageClock {
+        final AtomicLong items = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final AtomicLong waitNanos = new AtomicLong();
+
+        PatientImportReport.StageStats stats(String name, int threads) {
+            return new PatientImportReport.StageStats(name, threads, items.get(), busyNanos.get(), waitNanos.get());
+        }
+    }
+
+    /**
+     * Imports every record in {@code source}. Rejected rows go to {@code errorFile},
+     * which is only created if there are any (one left by an earlier run is deleted).
+     * @throws Exception if the file cannot be read or a batch cannot be saved; the
+     *         message says how many patients had already been saved.
+     */
+    public PatientImportReport run(Path source, Path errorFile) throws Exception {
+        BlockingQueue<Chunk> lineQueue = new ArrayBlockingQueue<>(validatorThreads * DEFAULT_CHUNKS_IN_FLIGHT_PER_WORKER);
+        BlockingQueue<CheckedChunk> rowQueue = new ArrayBlockingQueue<>(validatorThreads * DEFAULT_CHUNKS_IN_FLIGHT_PER_WORKER);
+        // Chunks read but not yet written, including those the writer holds back to restore order
+        Semaphore chunksInFlight = new Semaphore(lineQueue.remainingCapacity() + rowQueue.remainingCapacity());
+        AtomicReference<Exception> failure = new AtomicReference<>(); // First fatal error; stops the reader
+        StageClock readerClock = new StageClock();
+        StageClock validatorClock = new StageClock();
+        StageClock writerClock = new StageClock();
+        AtomicLong imported = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        int[] batches = new int[1];
+
+        try {
+            Files.deleteIfExists(errorFile);
+        } catch (IOException e) {
+            throw new Exception("Could not remove the old error file " + errorFile + ": " + e.getMessage(), e);
+        }
+
+        long start = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String firstLine = in.readLine();
+            if (firstLine == null) {
+                throw new Exception("The transfer file is empty: " + source);
+            }
+            firstLine = firstLine.replace("\uFEFF", ""); // Byte order mark written by spreadsheet tools
+            PatientRecordParser parser = PatientRecordParser.forFirstLine(firstLine);
+
+            // --- Stage 1: reader ---
+            String firstRecord = parser.hasHeader() ? null : firstLine;
+            Thread reader = new Thread(() -> read(in, firstRecord, lineQueue, chunksInFlight, failure, readerClock),
+                    "import-reader");
+
+            // --- Stage 2: validators ---
+            List<Thread> validators = new ArrayList<>();
+            for (int i = 0; i < validatorThreads; i++) {
+                validators.add(new Thread(() -> validate(parser, lineQueue, rowQueue, chunksInFlight, failure, validatorClock),
+                        "import-validator-" + (i + 1)));
+            }
+
+            // --- Stage 3: writer ---
+            Thread writer = new Thread(() -> write(rowQueue, errorFile, chunksInFlight, failure, writerClock, imported, rejected,
+                    batches), "import-writer");
+
+            reader.start();
+            validators.forEach(Thread::start);
+            writer.start();
+            reader.join();
+            for (Thread validator : validators) {
+                validator.join();
+            }
+            writer.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (failure.get() != null) {
+            throw new Exception("Import stopped after " + imported.get() + " patients were saved: "
+                    + failure.get().getMessage(), failure.get());
+        }
+        return new PatientImportReport(readerClock.items.get(), imported.get(), rejected.get(), batches[0], elapsed,
+                errorFile, readerClock.stats("reader", 1), validatorClock.stats("validate", validatorThreads),
+                writerClock.stats("write", 1));
+    }
+
+    private void read(BufferedReader in, String firstRecord, BlockingQueue<Chunk> lineQueue, Semaphore chunksInFlight,
+                      AtomicReference<Exception> failure, StageClock clock) {
+        long lineNumber = (firstRecord != null) ? 1 : 2; // Line 1 is the header when there is one
+        long sequence = 0;
+        try {
+            List<String> lines = new ArrayList<>(chunkSize);
+            long chunkFirstLine = lineNumber;
+            long busyStart = System.nanoTime();
+            String line = (firstRecord != null) ? firstRecord : in.readLine();
+            while (line != null && failure.get() == null) {
+                lines.add(line);
+                if (!line.trim().isEmpty()) {
+                    clock.items.incrementAndGet();
+                }
+                lineNumber++;
+                if (lines.size() == chunkSize) {
+                    clock.busyNanos.addAndGet(System.nanoTime() - busyStart);
+                    acquire(chunksInFlight, clock);
+                    put(lineQueue, new Chunk(sequence++, chunkFirstLine, lines), clock);
+                    lines = new ArrayList<>(chunkSize);
+                    chunkFirstLine = lineNumber;
+                    busyStart = System.nanoTime();
+                }
+                line = in.readLine();
+            }
+            clock.busyNanos.addAndGet(System.nanoTime() - busyStart);
+            if (!lines.isEmpty()) {
+                acquire(chunksInFlight, clock);
+                put(lineQueue, new Chunk(sequence, chunkFirstLine, lines), clock);
+            }
+        } catch (IOException | InterruptedException e) {
+            failure.compareAndSet(null, new Exception("Could not read the transfer file: " + e.getMessage(), e));
+        } finally {
+            // One END per validator, so each of them stops
+            for (int i = 0; i < validatorThreads; i++) {
+                putQuietly(lineQueue, Chunk.END);
+            }
+        }
+    }
+
+    private void validate(PatientRecordParser parser, BlockingQueue<Chunk> lineQueue,
+                          BlockingQueue<CheckedChunk> rowQueue, Semaphore chunksInFlight,
+                          AtomicReference<Exception> failure, StageClock clock) {
+        try {
+            while (true) {
+                Chunk chunk = take(lineQueue, clock);
+                if (chunk == Chunk.END) {
+                    break;
+                }
+                if (failure.get() != null) {
+                    chunksInFlight.release(); // Dropped here, so the writer will not release it
+                    continue; // Drain without working so the reader is never left blocked
+                }
+                long busyStart = System.nanoTime();
+                List<Patient> valid = new ArrayList<>(chunk.lines.size());
+                List<String> rejectedLines = new ArrayList<>();
+                for (int i = 0; i < chunk.lines.size(); i++) {
+                    String line = chunk.lines.get(i);
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        valid.add(toPatient(parser.parse(line)));
+                    } catch (Exception e) {
+                        rejectedLines.add((chunk.firstLineNumber + i) + "\t" + e.getMessage() + "\t" + line);
+                    }
+                }
+                clock.items.addAndGet(valid.size() + rejectedLines.size());
+                clock.busyNanos.addAndGet(System.nanoTime() - busyStart);
+                put(rowQueue, new CheckedChunk(chunk.sequence, valid, rejectedLines), clock);
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new Exception("Import interrupted.", e));
+        } finally {
+            putQuietly(rowQueue, CheckedChunk.END);
+        }
+    }
+
+    private Patient toPatient(String[] fields) throws Exception {
+        Patient patient = controller.validateNewPatient(
+                fields[PatientRecordParser.NAME], fields[PatientRecordParser.AGE],
+                fields[PatientRecordParser.CONTACT], fields[PatientRecordParser.ADDRESS],
+                fields[PatientRecordParser.ADMISSION_DATE], fields[PatientRecordParser.DOCTOR],
+                fields[PatientRecordParser.TREATMENT], fields[PatientRecordParser.HISTORY],
+                fields[PatientRecordParser.BASE_BILL], fields[PatientRecordParser.INSURANCE]);
+        String dischargeDate = fields[PatientRecordParser.DISCHARGE_DATE];
+        if (dischargeDate != null && !dischargeDate.trim().isEmpty()) {
+            controller.validateDischarge(patient, dischargeDate);
+        }
+        return patient;
+    }
+
+    private void write(BlockingQueue<CheckedChunk> rowQueue, Path errorFile, Semaphore chunksInFlight,
+                       AtomicReference<Exception> failure, StageClock clock, AtomicLong imported,
+                       AtomicLong rejected, int[] batches) {
+        Map<Long, CheckedChunk> outOfOrder = new TreeMap<>();
+        long nextSequence = 0;
+        int validatorsRunning = validatorThreads;
+        List<Patient> batch = new ArrayList<>(batchSize);
+        BufferedWriter errors = null;
+        try {
+            while (validatorsRunning > 0) {
+                CheckedChunk checked = take(rowQueue, clock);
+                if (checked == CheckedChunk.END) {
+                    validatorsRunning--;
+                    continue;
+                }
+                if (failure.get() != null) {
+                    chunksInFlight.release();
+                    continue; // Keep draining so no validator stays blocked
+                }
+                outOfOrder.put(checked.sequence, checked);
+
+                long busyStart = System.nanoTime();
+                CheckedChunk next;
+                while ((next = outOfOrder.remove(nextSequence)) != null) {
+                    nextSequence++;
+                    chunksInFlight.release();
+                    if (!next.rejected.isEmpty()) {
+                        if (errors == null) {
+                            errors = openErrorFile(errorFile);
+                        }
+                        for (String line : next.rejected) {
+                            errors.write(line);
+                            errors.newLine();
+                        }
+                        rejected.addAndGet(next.rejected.size());
+                    }
+                    for (Patient patient : next.valid) {
+                        batch.add(patient);
+                        if (batch.size() == batchSize) {
+                            saveBatch(batch, clock, imported, batches);
+                        }
+                    }
+                }
+                clock.busyNanos.addAndGet(System.nanoTime() - busyStart);
+            }
+            if (failure.get() == null && !batch.isEmpty()) {
+                long busyStart = System.nanoTime();
+                saveBatch(batch, clock, imported, batches);
+                clock.busyNanos.addAndGet(System.nanoTime() - busyStart);
+            }
+        } catch (Exception e) {
+            failure.compareAndSet(null, e);
+            chunksInFlight.release(outOfOrder.size());
+            outOfOrder.clear();
+            // Drain what is left so the validators (and a reader waiting for a permit) can finish
+            while (validatorsRunning > 0) {
+                try {
+                    if (rowQueue.take() == CheckedChunk.END) {
+                        validatorsRunning--;
+                    } else {
+                        chunksInFlight.release();
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        } finally {
+            if (errors != null) {
+                try {
+                    errors.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close the import error file: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void saveBatch(List<Patient> batch, StageClock clock, AtomicLong imported, int[] batches) throws Exception {
+        controller.addNewPatients(batch);
+        clock.items.addAndGet(batch.size());
+        imported.addAndGet(batch.size());
+        batches[0]++;
+        batch.clear();
+    }
+
+    private static BufferedWriter openErrorFile(Path errorFile) throws IOException {
+        Path parent = errorFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter errors = Files.newBufferedWriter(errorFile, StandardCharsets.UTF_8);
+        errors.write("# line\terror\trecord");
+        errors.newLine();
+        return errors;
+    }
+
+    // --- Queue helpers (time spent blocked counts as waiting) ---
+
+    private static <T> void put(BlockingQueue<T> queue, T item, StageClock clock) throws InterruptedException {
+        long waitStart = System.nanoTime();
+        queue.put(item);
+        clock.waitNanos.addAndGet(System.nanoTime() - waitStart);
+    }
+
+    private static void acquire(Semaphore permits, StageClock clock) throws InterruptedException {
+        long waitStart = System.nanoTime();
+        permits.acquire();
+        clock.waitNanos.addAndGet(System.nanoTime() - waitStart);
+    }
+
+    private static <T> T take(BlockingQueue<T> queue, StageClock clock) throws InterruptedException {
+        long waitStart = System.nanoTime();
+        T item = queue.take();
+        clock.waitNanos.addAndGet(System.nanoTime() - waitStart);
+        return item;
+    }
+
+    private static <T> void putQuietly(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Usage: PatientImportPipeline <transfer file> [error file]
+     * Imports into the storage chosen by -Dhospital.storage, like the app itself.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: PatientImportPipeline <transfer file> [error file]");
+            System.exit(2);
+        }
+        Path source = Paths.get(args[0]);
+        Path errorFile = (args.length > 1) ? Paths.get(args[1]) : Paths.get(args[0] + ".errors.txt");
+
+        PatientImportReport report = new PatientImportPipeline(new PatientController()).run(source, errorFile);
+        System.out.println(report);
+        System.exit(0); // Exit now rather than wait for the backup thread's delay
+    }
+}
@@ -0,0 +1,150 @@
+package com.hospital.transfer;
+
+import java.nio.file.Path;
+
+/**
+ * PatientImportReport.java
+ * What a PatientImportPipeline run did, overall and per stage.
+ *
+ * For each stage, "busy" is time spent doing its own work and "waiting" is time
+ * blocked on a queue (empty input, or full output = backpressure). The stage
+ * with the most busy time per thread is the bottleneck.
+ */
+public class PatientImportReport {
+
+    /**
+     * Counters for one stage. The validator stage sums over all its threads.
+     */
+    public static class StageStats {
+        private final String name;
+        private final int threads;
+        private final long items;
+        private final long busyNanos;
+        private final long waitNanos;
+
+        StageStats(String name, int threads, long items, long busyNanos, long waitNanos) {
+            this.name = name;
+            this.threads = threads;
+            this.items = items;
+            this.busyNanos = busyNanos;
+            this.waitNanos = waitNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getItems() {
+            return items;
+        }
+
+        public long getBusyMillis() {
+            return busyNanos / 1_000_000;
+        }
+
+        public long getWaitMillis() {
+            return waitNanos / 1_000_000;
+        }
+
+        /**
+         * Items per second of busy time, i.e. what one thread of this stage can sustain
+         * (busy time is summed over the stage's threads).
+         */
+        public double getItemsPerBusySecond() {
+            return (busyNanos == 0) ? 0 : items * 1_000_000_000.0 / busyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %2d thread(s) %,10d records  busy %,7d ms  waiting %,7d ms  (%,.0f records/s per thread)",
+                    name, threads, items, getBusyMillis(), getWaitMillis(), getItemsPerBusySecond());
+        }
+    }
+
+    private final long linesRead;
+    private final long imported;
+    private final long rejected;
+    private final int batches;
+    private final long elapsedNanos;
+    private final Path errorFile;
+    private final StageStats reader;
+    private final StageStats validators;
+    private final StageStats writer;
+
+    PatientImportReport(long linesRead, long imported, long rejected, int batches, long elapsedNanos,
+                        Path errorFile, StageStats reader, StageStats validators, StageStats writer) {
+        this.linesRead = linesRead;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+        this.errorFile = errorFile;
+        this.reader = reader;
+        this.validators = validators;
+        this.writer = writer;
+    }
+
+    /**
+     * Records read from the file (header and blank lines not counted).
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public double getRecordsPerMinute() {
+        return (elapsedNanos == 0) ? 0 : linesRead * 60_000_000_000.0 / elapsedNanos;
+    }
+
+    /**
+     * Where rejected rows were written, or null if there were none.
+     */
+    public Path getErrorFile() {
+        return (rejected > 0) ? errorFile : null;
+    }
+
+    public StageStats getReaderStats() {
+        return reader;
+    }
+
+    public StageStats getValidatorStats() {
+        return validators;
+    }
+
+    public StageStats getWriterStats() {
+        return writer;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%,d records read, %,d imported in %d batches, %,d rejected, in %,d ms (%,.0f records/min)%n",
+                linesRead, imported, batches, rejected, getElapsedMillis(), getRecordsPerMinute()));
+        sb.append("  ").append(reader).append(System.lineSeparator());
+        sb.append("  ").append(validators).append(System.lineSeparator());
+        sb.append("  ").append(writer);
+        if (rejected > 0) {
+            sb.append(System.lineSeparator()).append("  Rejected rows: ").append(errorFile);
+        }
+        return sb.toString();
+    }
+}
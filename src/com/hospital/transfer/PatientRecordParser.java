@@ -0,0 +1,175 @@
+package com.hospital.transfer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * PatientRecordParser.java
+ * Splits one line of a transfer file into the raw text inputs that
+ * PatientController.validateNewPatient expects. Two formats are understood:
+ *
+ *   - CSV with a header row. Columns are matched by name in any order
+ *     (name, age, contact, address, admission_date, doctor, treatment,
+ *     history, base_bill, insurance, discharge_date); only name, age and
+ *     admission_date are required. Fields may be quoted ("a, b" / "say ""hi""").
+ *   - Legacy: lines of another installation's "||"-delimited patients.txt.
+ *     The old patient ID is dropped; the patient gets a new ID here.
+ *
+ * Parsing is stateless once the header has been read, so one parser is shared
+ * by every validator thread.
+ */
+final class PatientRecordParser {
+
+    // --- Positions in the array returned by parse() ---
+    static final int NAME = 0;
+    static final int AGE = 1;
+    static final int CONTACT = 2;
+    static final int ADDRESS = 3;
+    static final int ADMISSION_DATE = 4;
+    static final int DOCTOR = 5;
+    static final int TREATMENT = 6;
+    static final int HISTORY = 7;
+    static final int BASE_BILL = 8;
+    static final int INSURANCE = 9;
+    static final int DISCHARGE_DATE = 10; // Empty when the patient is still admitted
+    static final int FIELD_COUNT = 11;
+
+    private static final String[] CSV_COLUMNS = {
+        "name", "age", "contact", "address", "admissiondate", "doctor",
+        "treatment", "history", "basebill", "insurance", "dischargedate"
+    };
+    private static final String[] CSV_DEFAULTS = {"", "", "", "", "", "", "", "", "0", "0", ""};
+    private static final int[] REQUIRED_CSV = {NAME, AGE, ADMISSION_DATE};
+
+    private static final String LEGACY_DELIMITER = "\\|\\|";
+    private static final int LEGACY_MIN_FIELDS = 14;
+
+    private final int[] csvColumnOf; // Field -> CSV column, -1 if absent; null for legacy files
+    private final int csvColumnCount;
+
+    private PatientRecordParser(int[] csvColumnOf, int csvColumnCount) {
+        this.csvColumnOf = csvColumnOf;
+        this.csvColumnCount = csvColumnCount;
+    }
+
+    /**
+     * Picks the format from the first line of the file.
+     * @throws Exception if it is neither a legacy record nor a usable CSV header.
+     */
+    static PatientRecordParser forFirstLine(String firstLine) throws Exception {
+        if (firstLine.contains("||")) {
+            return new PatientRecordParser(null, 0);
+        }
+        List<String> header = splitCsv(firstLine);
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            positions.put(normalize(header.get(i)), i);
+        }
+        positions.putIfAbsent("insurance", positions.getOrDefault("insurancepercent", -1));
+        positions.putIfAbsent("admissiondate", positions.getOrDefault("admitted", -1));
+
+        int[] columnOf = new int[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            columnOf[field] = positions.getOrDefault(CSV_COLUMNS[field], -1);
+        }
+        for (int field : REQUIRED_CSV) {
+            if (columnOf[field] < 0) {
+                throw new Exception("Not a patient transfer file: the first line must be a CSV header with "
+                        + "name, age and admission_date columns, or a \"||\"-delimited patient record.");
+            }
+        }
+        return new PatientRecordParser(columnOf, header.size());
+    }
+
+    /**
+     * True if the first line was a header (and so is not a record itself).
+     */
+    boolean hasHeader() {
+        return csvColumnOf != null;
+    }
+
+    /**
+     * The validateNewPatient inputs for one line, indexed by the constants above.
+     * @throws Exception describing why the line cannot be split (not why it is invalid).
+     */
+    String[] parse(String line) throws Exception {
+        return (csvColumnOf != null) ? parseCsv(line) : parseLegacy(line);
+    }
+
+    private String[] parseCsv(String line) throws Exception {
+        List<String> columns = splitCsv(line);
+        if (columns.size() != csvColumnCount) {
+            throw new Exception("Expected " + csvColumnCount + " columns but found " + columns.size() + ".");
+        }
+        String[] fields = new String[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            int column = csvColumnOf[field];
+            fields[field] = (column >= 0) ? columns.get(column) : CSV_DEFAULTS[field];
+        }
+        return fields;
+    }
+
+    private String[] parseLegacy(String line) throws Exception {
+        String[] parts = line.split(LEGACY_DELIMITER, -1);
+        if (parts.length < LEGACY_MIN_FIELDS) {
+            throw new Exception("Expected at least " + LEGACY_MIN_FIELDS + " \"||\" fields but found "
+                    + parts.length + ".");
+        }
+        String[] fields = new String[FIELD_COUNT];
+        fields[NAME] = parts[1];
+        fields[AGE] = parts[2];
+        fields[CONTACT] = parts[3];
+        fields[ADDRESS] = parts[4].replace("<NL>", "\n");
+        fields[HISTORY] = parts[5].replace("<NL>", "\n");
+        fields[DOCTOR] = parts[6];
+        fields[TREATMENT] = parts[7];
+        fields[ADMISSION_DATE] = parts[8];
+        fields[DISCHARGE_DATE] = Boolean.parseBoolean(parts[10]) ? parts[9] : "";
+        fields[BASE_BILL] = parts[11];
+        fields[INSURANCE] = parts[12];
+        return fields;
+    }
+
+    /**
+     * Splits one CSV line, honouring double quotes. Records spanning lines are not supported.
+     */
+    private static List<String> splitCsv(String line) throws Exception {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"'); // Escaped quote
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new Exception("Unterminated quoted field.");
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+
+    private static String normalize(String columnName) {
+        return columnName.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+    }
+}
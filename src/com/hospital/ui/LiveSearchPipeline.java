@@ -0,0 +1,212 @@
+package com.hospital.ui;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * LiveSearchPipeline.java
+ * Runs the live filter off the Swing event dispatch thread.
+ *
+ * 1. Each keystroke restarts a short debounce timer, so a fast typist
+ *    triggers one search instead of one per key.
+ * 2. When the timer fires, the search runs on a background thread; a newer
+ *    query cancels any search still in flight. Cancelling only raises a flag
+ *    that the search checks between patients - the thread is never
+ *    interrupted, since an interrupt during file I/O would close the DAO's
+ *    channels.
+ * 3. Only the result of the LATEST query is handed back to the EDT.
+ *
+ * Latency and cancellation counters are kept so the debounce window can be tuned.
+ */
+public class LiveSearchPipeline {
+
+    /**
+     * The search itself. Runs on the background thread, and should give up
+     * (e.g. with a CancellationException) once {@code cancelled} returns true.
+     */
+    public interface SearchFunction {
+        Set<String> search(String text, BooleanSupplier cancelled) throws Exception;
+    }
+
+    public static final int DEFAULT_DEBOUNCE_MILLIS = 150;
+
+    private final SearchFunction searchFunction;
+    private final Consumer<Set<String>> resultHandler; // Called on the EDT; null result = clear the filter
+    private final Consumer<Exception> errorHandler;    // Called on the EDT
+    private final Timer debounceTimer;
+    private final ExecutorService worker;
+
+    // --- State (EDT only) ---
+    private String pendingText = "";
+    private long lastKeystrokeNanos = 0;
+    private Future<?> inFlight = null;
+    private AtomicBoolean inFlightCancelled = null; // Raised to stop the in-flight search
+    private long generation = 0; // Bumped for every query; stale results are dropped
+
+    // --- Metrics ---
+    private long keystrokes = 0;
+    private long searchesStarted = 0;
+    private long searchesCancelled = 0;
+    private long resultsPublished = 0;
+    private volatile long lastSearchMillis = 0;    // Time spent in the search function
+    private long lastEndToEndMillis = 0;           // Last keystroke -> result shown
+    private long totalEndToEndMillis = 0;
+
+    public LiveSearchPipeline(SearchFunction searchFunction,
+                              Consumer<Set<String>> resultHandler,
+                              Consumer<Exception> errorHandler) {
+        this(Integer.getInteger("hospital.search.debounceMs", DEFAULT_DEBOUNCE_MILLIS),
+             searchFunction, resultHandler, errorHandler);
+    }
+
+    public LiveSearchPipeline(int debounceMillis, SearchFunction searchFunction,
+                              Consumer<Set<String>> resultHandler,
+                              Consumer<Exception> errorHandler) {
+        this.searchFunction = searchFunction;
+        this.resultHandler = resultHandler;
+        this.errorHandler = errorHandler;
+        this.debounceTimer = new Timer(debounceMillis, e -> startSearch());
+        this.debounceTimer.setRepeats(false);
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "live-search");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Call on the EDT whenever the search text changes.
+     */
+    public void queryChanged(String text) {
+        keystrokes++;
+        pendingText = text.trim();
+        lastKeystrokeNanos = System.nanoTime();
+        generation++;
+        debounceTimer.restart();
+    }
+
+    /**
+     * Changes the debounce window (takes effect from the next keystroke).
+     */
+    public void setDebounceMillis(int debounceMillis) {
+        debounceTimer.setInitialDelay(debounceMillis);
+    }
+
+    public int getDebounceMillis() {
+        return debounceTimer.getInitialDelay();
+    }
+
+    /**
+     * Fired by the debounce timer on the EDT.
+     */
+    private void startSearch() {
+        if (inFlight != null && !inFlight.isDone()) {
+            inFlightCancelled.set(true); // A newer query supersedes it
+            inFlight.cancel(false);
+            searchesCancelled++;
+        }
+        final String text = pendingText;
+        final long myGeneration = generation;
+        final long keystrokeNanos = lastKeystrokeNanos;
+
+        if (text.isEmpty()) {
+            inFlight = null;
+            inFlightCancelled = null;
+            publish(null, keystrokeNanos); // Nothing to search: just clear the filter
+            return;
+        }
+
+        searchesStarted++;
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        inFlightCancelled = cancelled;
+        inFlight = worker.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                Set<String> result = searchFunction.search(text, cancelled::get);
+                lastSearchMillis = (System.nanoTime() - start) / 1_000_000;
+                if (cancelled.get()) {
+                    return; // Cancelled while running
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (myGeneration == generation) { // Still the latest query?
+                        publish(result, keystrokeNanos);
+                    }
+                });
+            } catch (CancellationException e) {
+                // Cancelled mid-scan; a newer query (or shutdown) took over
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> {
+                    if (myGeneration == generation) {
+                        errorHandler.accept(e);
+                    }
+                });
+            }
+        });
+    }
+
+    private void publish(Set<String> result, long keystrokeNanos) {
+        resultsPublished++;
+        lastEndToEndMillis = (System.nanoTime() - keystrokeNanos) / 1_000_000;
+        totalEndToEndMillis += lastEndToEndMillis;
+        resultHandler.accept(result);
+    }
+
+    /**
+     * Stops the background thread (e.g. when the window closes). A search still
+     * running is asked to stop and the thread exits once it has; results that
+     * arrive afterwards are dropped.
+     */
+    public void shutdown() {
+        debounceTimer.stop();
+        generation++;
+        if (inFlightCancelled != null) {
+            inFlightCancelled.set(true);
+        }
+        worker.shutdown();
+    }
+
+    // --- Metrics (read on the EDT) ---
+
+    public long getKeystrokes() {
+        return keystrokes;
+    }
+
+    public long getSearchesStarted() {
+        return searchesStarted;
+    }
+
+    /**
+     * Searches cancelled because a newer query arrived while they were running.
+     */
+    public long getSearchesCancelled() {
+        return searchesCancelled;
+    }
+
+    public long getResultsPublished() {
+        return resultsPublished;
+    }
+
+    public long getLastSearchMillis() {
+        return lastSearchMillis;
+    }
+
+    /**
+     * Time from the last keystroke to its result being shown (includes the debounce wait).
+     */
+    public long getLastEndToEndMillis() {
+        return lastEndToEndMillis;
+    }
+
+    public long getAverageEndToEndMillis() {
+        return (resultsPublished == 0) ? 0 : totalEndToEndMillis / resultsPublished;
+    }
+}
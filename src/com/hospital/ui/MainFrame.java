@@ -10,6 +10,8 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Color;
 import java.awt.Image;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 public class MainFrame extends JFrame {
 
@@ -43,6 +45,12 @@ public class MainFrame extends JFrame {
         
         // --- 2. PATIENT PANEL (Center) ---
         PatientPanel patientPanel = new PatientPanel();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                patientPanel.shutdown(); // Stop background searches before the app exits
+            }
+        });
         
         // --- 3. FOOTER PANEL (South) ---
         JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
@@ -1,6 +1,12 @@
 package com.hospital.ui;
 
+import com.hospital.controller.AsyncPatientController;
+import com.hospital.controller.PatientChangeEvent;
 import com.hospital.controller.PatientController;
+import com.hospital.dao.BillingAggregates;
+import com.hospital.dao.PatientPrefixIndex;
+import com.hospital.dao.PatientSortKey;
+import com.hospital.dao.StalePatientException;
 import com.hospital.model.Patient;
 
 import javax.swing.JPanel;
@@ -10,15 +16,17 @@ import javax.swing.JTextField;
 import javax.swing.JLabel;
 import javax.swing.JButton;
 import javax.swing.JOptionPane;
+import javax.swing.JFileChooser;
 import javax.swing.BorderFactory;
 import javax.swing.ListSelectionModel;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
-import javax.swing.RowFilter;
 import javax.swing.JTextArea;
 import javax.swing.JCheckBox;
+import javax.swing.JProgressBar;
 import javax.swing.ImageIcon;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import java.awt.BorderLayout;
 import java.awt.GridLayout;
@@ -30,12 +38,14 @@ import java.awt.Font;
 import java.awt.Color;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 
+import java.io.File;
 import java.time.LocalDate;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class PatientPanel extends JPanel {
 
@@ -49,26 +59,33 @@ public class PatientPanel extends JPanel {
     private JButton btnAdd, btnUpdate, btnDischarge, btnClear, btnPrintBill;
 
     private JTextField txtSearch;
+    private LiveSearchPipeline searchPipeline;
     
     private JTable patientTable;
-    private DefaultTableModel tableModel;
-    private TableRowSorter<DefaultTableModel> tableSorter;
+    private PatientTableModel tableModel;
 
     private JLabel lblTotalCollected;
+    private JLabel lblTotalOutstanding;
+    private JProgressBar progressBar;
     
     private PatientController controller;
+    private AsyncPatientController asyncController; // Saves, loads and bills run off the EDT
     private Patient selectedPatient = null;
-
-    private final String[] columnNames = {
-        "ID", "Name", "Age", "Contact", "Doctor", "Admitted On", "Status"
-    };
+    private boolean newPatientMode = true;
+    private int tasksInFlight = 0; // EDT only
+    private boolean summaryLoading = false; // EDT only
+    private boolean summaryStale = false;   // Totals changed while summaryLoading
 
     public PatientPanel() {
         this.controller = new PatientController();
+        this.asyncController = new AsyncPatientController(controller);
         
         initUI();
         addListeners();
         
+        // Saved changes patch single rows instead of reloading the table
+        controller.addPatientChangeListener(this::patientChanged);
+        
         refreshTableData(); 
         clearForm();
     }
@@ -305,27 +322,32 @@ public class PatientPanel extends JPanel {
         
         searchPanel.add(txtSearch);
         
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Rows are fetched page by page as they are painted (see PatientTableModel)
+        tableModel = new PatientTableModel(asyncController);
         patientTable = new JTable(tableModel);
         patientTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         patientTable.getTableHeader().setReorderingAllowed(false);
-        
-        tableSorter = new TableRowSorter<>(tableModel);
-        patientTable.setRowSorter(tableSorter);
+        patientTable.getTableHeader().setDefaultRenderer(
+            new SortHeaderRenderer(patientTable.getTableHeader().getDefaultRenderer(), tableModel));
         
         JScrollPane tableScrollPane = new JScrollPane(patientTable);
 
         JPanel summaryPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
-        summaryPanel.add(new JLabel("Total Bill Collected (Discharged):"));
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        summaryPanel.add(progressBar);
+        summaryPanel.add(new JLabel("   Total Bill Collected (Discharged):"));
         lblTotalCollected = new JLabel("₹ 0.00");
         lblTotalCollected.setFont(new Font("Segoe UI", Font.BOLD, 14));
         lblTotalCollected.setForeground(new Color(0, 100, 0));
         summaryPanel.add(lblTotalCollected);
+        summaryPanel.add(new JLabel("   Outstanding (Admitted):"));
+        lblTotalOutstanding = new JLabel("₹ 0.00");
+        lblTotalOutstanding.setFont(new Font("Segoe UI", Font.BOLD, 14));
+        lblTotalOutstanding.setForeground(new Color(150, 80, 0));
+        summaryPanel.add(lblTotalOutstanding);
         
         tablePanel.add(searchPanel, BorderLayout.NORTH);
         tablePanel.add(tableScrollPane, BorderLayout.CENTER);
@@ -341,6 +363,23 @@ public class PatientPanel extends JPanel {
         btnClear.addActionListener(e -> clearForm());
         btnPrintBill.addActionListener(e -> printBill());
 
+        // Clicking a column header sorts through the DAO instead of a TableRowSorter;
+        // clicking it again flips between ascending and descending
+        patientTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = patientTable.convertColumnIndexToModel(patientTable.columnAtPoint(e.getPoint()));
+                PatientSortKey sortKey = PatientTableModel.sortKeyForColumn(column);
+                if (sortKey != null) {
+                    tableModel.toggleSort(sortKey);
+                    patientTable.getTableHeader().repaint(); // Move the sort arrow
+                    if (tableModel.isFiltered()) {
+                        searchPipeline.queryChanged(txtSearch.getText()); // Re-order the matches off the EDT
+                    }
+                }
+            }
+        });
+
         patientTable.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
@@ -350,39 +389,52 @@ public class PatientPanel extends JPanel {
             }
         });
         
-        txtSearch.addKeyListener(new KeyAdapter() {
+        // Searches are debounced and run off the EDT; only the latest result is applied
+        searchPipeline = new LiveSearchPipeline(
+            (text, cancelled) -> tableModel.orderIds(controller.searchPatientIds(text, cancelled), cancelled),
+            this::applyFilter,
+            e -> showError("Error filtering patients: " + e.getMessage())
+        );
+        txtSearch.getDocument().addDocumentListener(new DocumentListener() {
             @Override
-            public void keyReleased(KeyEvent e) {
-                filterTable();
+            public void insertUpdate(DocumentEvent e) {
+                searchPipeline.queryChanged(txtSearch.getText());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchPipeline.queryChanged(txtSearch.getText());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchPipeline.queryChanged(txtSearch.getText());
             }
         });
     }
 
     private void addPatient() {
-        try {
-            String name = txtName.getText();
-            String age = txtAge.getText();
-            String contact = txtContact.getText();
-            String address = txtAddress.getText();
-            String admissionDate = txtAdmissionDate.getText();
-            String doctor = txtDoctor.getText();
-            String treatment = txtTreatment.getText();
-            String history = txtHistory.getText();
-            String baseBill = txtBaseBill.getText();
-            String insurance = txtInsurancePercent.getText();
-
-            Patient newPatient = controller.addNewPatient(
+        String name = txtName.getText();
+        String age = txtAge.getText();
+        String contact = txtContact.getText();
+        String address = txtAddress.getText();
+        String admissionDate = txtAdmissionDate.getText();
+        String doctor = txtDoctor.getText();
+        String treatment = txtTreatment.getText();
+        String history = txtHistory.getText();
+        String baseBill = txtBaseBill.getText();
+        String insurance = txtInsurancePercent.getText();
+
+        runInBackground("Saving patient...",
+            () -> asyncController.addNewPatient(
                 name, age, contact, address, admissionDate,
                 doctor, treatment, history, baseBill, insurance
-            );
-
-            refreshTableData();
-            clearForm();
-            showMessage("Patient added successfully! ID: " + newPatient.getPatientId());
-
-        } catch (Exception e) {
-            showError("Error adding patient: " + e.getMessage());
-        }
+            ),
+            newPatient -> {
+                clearForm();
+                showMessage("Patient added successfully! ID: " + newPatient.getPatientId());
+            },
+            "Error adding patient: ");
     }
 
     private void updatePatient() {
@@ -391,34 +443,33 @@ public class PatientPanel extends JPanel {
             return;
         }
 
-        try {
-            String patientId = txtPatientId.getText();
-            String name = txtName.getText();
-            String age = txtAge.getText();
-            String contact = txtContact.getText();
-            String address = txtAddress.getText();
-            String admissionDate = txtAdmissionDate.getText();
-            String doctor = txtDoctor.getText();
-            String treatment = txtTreatment.getText();
-            String history = txtHistory.getText();
-            String baseBill = txtBaseBill.getText();
-            String insurance = txtInsurancePercent.getText();
-            boolean isDischarged = chkDischarged.isSelected();
-            String dischargeDate = txtDischargeDate.getText();
-
-            controller.updatePatient(
+        String patientId = txtPatientId.getText();
+        String name = txtName.getText();
+        String age = txtAge.getText();
+        String contact = txtContact.getText();
+        String address = txtAddress.getText();
+        String admissionDate = txtAdmissionDate.getText();
+        String doctor = txtDoctor.getText();
+        String treatment = txtTreatment.getText();
+        String history = txtHistory.getText();
+        String baseBill = txtBaseBill.getText();
+        String insurance = txtInsurancePercent.getText();
+        boolean isDischarged = chkDischarged.isSelected();
+        String dischargeDate = txtDischargeDate.getText();
+
+        long version = selectedPatient.getVersion();
+
+        runInBackground("Saving patient...",
+            () -> asyncController.updatePatient(
                 patientId, name, age, contact, address, admissionDate,
                 doctor, treatment, history, baseBill, insurance,
-                isDischarged, dischargeDate
-            );
-            
-            refreshTableData();
-            clearForm();
-            showMessage("Patient updated successfully!");
-
-        } catch (Exception e) {
-            showError("Error updating patient: " + e.getMessage());
-        }
+                isDischarged, dischargeDate, version
+            ),
+            done -> {
+                clearForm();
+                showMessage("Patient updated successfully!");
+            },
+            "Error updating patient: ");
     }
 
     private void dischargePatient() {
@@ -442,16 +493,13 @@ public class PatientPanel extends JPanel {
         );
 
         if (choice == JOptionPane.YES_OPTION) {
-            try {
-                controller.dischargePatient(selectedPatient.getPatientId());
-
-                refreshTableData();
-                clearForm();
-                showMessage("Patient discharged successfully.");
-                
-            } catch (Exception e) {
-                showError("Error discharging patient: " + e.getMessage());
-            }
+            runInBackground("Discharging patient...",
+                () -> asyncController.dischargePatient(selectedPatient.getPatientId(), selectedPatient.getVersion()),
+                done -> {
+                    clearForm();
+                    showMessage("Patient discharged successfully.");
+                },
+                "Error discharging patient: ");
         }
     }
     
@@ -461,45 +509,97 @@ public class PatientPanel extends JPanel {
             return;
         }
         
-        try {
-            String filePath = controller.printBill(selectedPatient.getPatientId());
-            showMessage("Bill saved successfully!\n" +
-                        "File created at: " + filePath);
-        } catch (Exception e) {
-            showError("Error printing bill: " + e.getMessage());
+        runInBackground("Printing bill...",
+            () -> asyncController.printBill(selectedPatient.getPatientId()),
+            this::showBill,
+            "Error printing bill: ");
+    }
+
+    /**
+     * Bills are kept in the bill archive; shows this one and offers a file copy.
+     */
+    private void showBill(String bill) {
+        JTextArea billText = new JTextArea(bill, 24, 44);
+        billText.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        billText.setEditable(false);
+        Object[] options = {"Export to File...", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, new JScrollPane(billText),
+            "Bill saved to archive", JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE,
+            null, options, options[1]);
+        if (choice == 0) {
+            exportBill();
         }
     }
 
-    private void filterTable() {
-        String searchText = txtSearch.getText().trim();
-        if (searchText.isEmpty()) {
-            tableSorter.setRowFilter(null);
-        } else {
-            RowFilter<DefaultTableModel, Object> nameFilter = RowFilter.regexFilter("(?i)" + searchText, 1);
-            RowFilter<DefaultTableModel, Object> idFilter = RowFilter.regexFilter("(?i)" + searchText, 0);
-            
-            List<RowFilter<DefaultTableModel, Object>> filters = new ArrayList<>();
-            filters.add(nameFilter);
-            filters.add(idFilter);
-            
-            tableSorter.setRowFilter(RowFilter.orFilter(filters));
+    private void exportBill() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("Bill_" + selectedPatient.getPatientId() + ".txt"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
+        runInBackground("Exporting bill...",
+            () -> asyncController.exportBill(selectedPatient.getPatientId(), chooser.getSelectedFile().toPath()),
+            filePath -> showMessage("Bill exported successfully!\n" +
+                                    "File created at: " + filePath),
+            "Error exporting bill: ");
+    }
+
+    /**
+     * Shows only the rows whose ID is in the set (null shows every row).
+     * Called on the EDT by the search pipeline.
+     */
+    private void applyFilter(Set<String> matchingIds) {
+        tableModel.setFilter(matchingIds);
+    }
+
+    /**
+     * Stops the panel's background threads (the live search and the controller's
+     * worker). Called when the window closes.
+     */
+    public void shutdown() {
+        searchPipeline.shutdown();
+        asyncController.shutdown();
+    }
+
+    /**
+     * The live filter's search pipeline (for checking search latency and cancellations).
+     */
+    public LiveSearchPipeline getSearchPipeline() {
+        return searchPipeline;
     }
     
     private void loadSelectedPatientDataToForm() {
-        try {
-            int viewRow = patientTable.getSelectedRow();
-            if (viewRow == -1) return; 
-            
-            int modelRow = patientTable.convertRowIndexToModel(viewRow);
-            String patientId = (String) tableModel.getValueAt(modelRow, 0);
+        int viewRow = patientTable.getSelectedRow();
+        if (viewRow == -1) return; 
+        
+        Patient rowPatient = tableModel.getPatientAt(viewRow);
+        if (!tableModel.isRowLoaded(viewRow)) {
+            return; // Still a placeholder row
+        }
+        if (rowPatient == null) {
+            showPatientNotFound();
+            return;
+        }
+        // Re-read the stored patient (fresh version number) before editing it
+        runInBackground("Loading patient...",
+            () -> asyncController.getPatient(rowPatient.getPatientId()),
+            this::showPatientInForm,
+            "Error loading patient data: ");
+    }
 
-            this.selectedPatient = controller.getPatient(patientId);
-            if (this.selectedPatient == null) {
-                showError("Could not find patient data. They may have been deleted.");
-                refreshTableData();
-                return;
-            }
+    private void showPatientNotFound() {
+        this.selectedPatient = null;
+        showError("Could not find patient data. They may have been deleted.");
+        refreshTableData();
+    }
+
+    private void showPatientInForm(Patient patient) {
+        if (patient == null) {
+            showPatientNotFound();
+            return;
+        }
+        try {
+            this.selectedPatient = patient;
 
             txtPatientId.setText(selectedPatient.getPatientId());
             txtName.setText(selectedPatient.getName());
@@ -551,33 +651,94 @@ public class PatientPanel extends JPanel {
         setFormState(true); 
     }
 
+    /**
+     * Reloads the table and the totals. Both are read in the background; the
+     * table shows placeholder rows until its pages arrive.
+     */
     private void refreshTableData() {
-        try {
-            tableModel.setRowCount(0);
-
-            List<Patient> allPatients = controller.getAllPatients();
-
-            for (Patient p : allPatients) {
-                tableModel.addRow(new Object[]{
-                    p.getPatientId(),
-                    p.getName(),
-                    p.getAge(),
-                    p.getContact(),
-                    p.getDoctorAssigned(),
-                    controller.formatDate(p.getDateOfAdmission()),
-                    p.isDischarged() ? "Discharged" : "Admitted"
-                });
+        tableModel.refresh();
+        updateSummary();
+
+        // Re-run an active filter so new/changed patients are matched too
+        if (!txtSearch.getText().trim().isEmpty()) {
+            searchPipeline.queryChanged(txtSearch.getText());
+        }
+    }
+
+    /**
+     * Applies one saved change to the table, touching only that patient's row.
+     * Called on the thread that saved the patient: a new patient's row is looked
+     * up in the index there, and the change is then handed over to the EDT.
+     */
+    private void patientChanged(PatientChangeEvent event) {
+        PatientTableModel.RowPosition position = null;
+        if (event.getType() == PatientChangeEvent.Type.INSERTED) {
+            try {
+                position = tableModel.locate(event.getPatient());
+            } catch (Exception e) {
+                System.err.println("Could not locate new patient row: " + e.getMessage());
             }
-            
-            double total = controller.getTotalCollectedBills();
-            lblTotalCollected.setText(controller.formatCurrency(total));
-            
-        } catch (Exception e) {
-            showError("Failed to refresh patient table: " + e.getMessage());
         }
+        PatientTableModel.RowPosition located = position;
+        if (SwingUtilities.isEventDispatchThread()) {
+            applyPatientChange(event, located);
+        } else {
+            SwingUtilities.invokeLater(() -> applyPatientChange(event, located));
+        }
+    }
+
+    private void applyPatientChange(PatientChangeEvent event, PatientTableModel.RowPosition position) {
+        Patient patient = event.getPatient();
+        if (event.getType() == PatientChangeEvent.Type.INSERTED) {
+            if (tableModel.isFiltered()) {
+                // Re-run the search (debounced, off the EDT) so a matching patient is placed in order
+                String filterText = txtSearch.getText().trim();
+                if (PatientPrefixIndex.matches(filterText, patient.getPatientId(), patient.getName())) {
+                    searchPipeline.queryChanged(txtSearch.getText());
+                }
+            } else if (position != null) {
+                tableModel.patientInserted(patient, position);
+            } else {
+                tableModel.refresh();
+            }
+        } else {
+            tableModel.patientUpdated(patient);
+        }
+        updateSummary();
+    }
+
+    /**
+     * Reads the running billing totals in the background and shows them when they
+     * arrive. Usually O(1), but the first read (or one after another process saved)
+     * goes through storage. Requests made while a read is running are folded into
+     * one more read after it. Called on the EDT.
+     */
+    private void updateSummary() {
+        if (summaryLoading) {
+            summaryStale = true;
+            return;
+        }
+        summaryLoading = true;
+        asyncController.getBillingAggregates().whenComplete((totals, error) -> SwingUtilities.invokeLater(() -> {
+            summaryLoading = false;
+            if (error != null) {
+                System.err.println("Could not read billing totals: " + error.getMessage());
+            } else {
+                lblTotalCollected.setText(controller.formatCurrency(BillingAggregates.fromPaise(totals.getCollectedPaise())));
+                lblTotalOutstanding.setText(controller.formatCurrency(BillingAggregates.fromPaise(totals.getOutstandingPaise())));
+            }
+            if (summaryStale) {
+                summaryStale = false;
+                updateSummary();
+            }
+        }));
     }
     
     private void setFormState(boolean isNewPatient) {
+        newPatientMode = isNewPatient;
+        if (tasksInFlight > 0) {
+            return; // Buttons are re-enabled from newPatientMode when the work finishes
+        }
         btnAdd.setEnabled(isNewPatient);
         btnUpdate.setEnabled(!isNewPatient);
         btnDischarge.setEnabled(!isNewPatient && (selectedPatient != null && !selectedPatient.isDischarged()));
@@ -586,6 +747,54 @@ public class PatientPanel extends JPanel {
         txtAdmissionDate.setEditable(!isNewPatient); 
     }
 
+    // --- Background Work ---
+
+    /**
+     * Starts an operation off the EDT. While it runs the buttons and table are disabled
+     * and the progress bar shows {@code status}; the result (or error) is handled back
+     * on the EDT. Called on the EDT.
+     */
+    private <T> void runInBackground(String status, Supplier<CompletableFuture<T>> operation,
+                                     Consumer<T> onSuccess, String errorPrefix) {
+        tasksInFlight++;
+        setBusy(status);
+        operation.get().whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            tasksInFlight--;
+            if (tasksInFlight == 0) {
+                setIdle();
+            }
+            if (error == null) {
+                onSuccess.accept(result);
+                return;
+            }
+            Throwable cause = (error instanceof CompletionException && error.getCause() != null)
+                    ? error.getCause() : error;
+            if (cause instanceof StalePatientException) {
+                showError(cause.getMessage()); // Already says what to do
+            } else {
+                showError(errorPrefix + cause.getMessage());
+            }
+        }));
+    }
+
+    private void setBusy(String status) {
+        progressBar.setString(status);
+        progressBar.setVisible(true);
+        for (JButton button : new JButton[] {btnAdd, btnUpdate, btnDischarge, btnClear, btnPrintBill}) {
+            button.setEnabled(false);
+        }
+        patientTable.setEnabled(false);
+        revalidate();
+    }
+
+    private void setIdle() {
+        progressBar.setVisible(false);
+        btnClear.setEnabled(true);
+        patientTable.setEnabled(true);
+        setFormState(newPatientMode);
+        revalidate();
+    }
+
     private void showMessage(String message) {
         JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
     }
@@ -0,0 +1,410 @@
+package com.hospital.ui;
+
+import com.hospital.controller.AsyncPatientController;
+import com.hospital.controller.PatientController;
+import com.hospital.dao.PatientSortKey;
+import com.hospital.model.Patient;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * PatientTableModel.java
+ * A "virtual" table model for the patient list.
+ *
+ * Instead of copying every patient into the table up front, rows are fetched
+ * one page at a time, only when the JTable asks to paint them, and cells are
+ * formatted at that moment. Only a few pages are cached, so memory depends on
+ * what is on screen, not on the size of the dataset.
+ *
+ * Pages are read on the AsyncPatientController's threads (from the index's
+ * sorted ID lists), never on the EDT: a row whose page is still in flight is
+ * painted as a "Loading..." placeholder and repainted when the page arrives.
+ *
+ * Sorting and filtering are also done here (not by a TableRowSorter, which
+ * would have to read every row):
+ *   - toggleSort() pages through the data by a column, ascending then descending
+ *   - setFilter() shows just a list of matching IDs, in sort order
+ *
+ * After a single add/update/discharge, patientInserted() and patientUpdated()
+ * patch just that row, so the sort order, scroll position and selection stay.
+ * The new row's position is looked up in the index (locate()) off the EDT.
+ */
+public class PatientTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 8;
+
+    private final String[] columnNames = {
+        "ID", "Name", "Age", "Contact", "Doctor", "Admitted On", "Status"
+    };
+
+    private final transient AsyncPatientController asyncController;
+    private final transient PatientController controller;
+    private volatile PatientSortKey sortKey = null; // null = storage order; read by the search thread
+    private volatile boolean descending = false;    // Read by the search thread
+    private List<String> filteredIds = null;        // null = no filter, show every patient
+    private int rowCount = 0;
+
+    // --- Page loads in flight (EDT only) ---
+    private final Set<Integer> pagesLoading = new HashSet<>();
+    private int generation = 0; // Bumped whenever row offsets change; older loads are dropped
+    private boolean refreshQueued = false; // A refresh will settle every insert seen until then
+    private boolean countLoading = false;  // An unfiltered row count is being read; rowCount may be behind
+
+    // Page number -> rows, least recently used first
+    private final LinkedHashMap<Integer, List<Patient>> pageCache =
+        new LinkedHashMap<Integer, List<Patient>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Patient>> eldest) {
+                return size() > MAX_CACHED_PAGES;
+            }
+        };
+
+    public PatientTableModel(AsyncPatientController asyncController) {
+        this.asyncController = asyncController;
+        this.controller = asyncController.getController();
+    }
+
+    // --- Reloading, Sorting & Filtering ---
+
+    /**
+     * Forgets every cached page and re-reads the row count. The rows shown turn
+     * into placeholders straight away; an unfiltered count is read in the
+     * background and the table grows or shrinks when it arrives. Called on the EDT.
+     */
+    public void refresh() {
+        forgetPages();
+        if (filteredIds != null) {
+            countLoading = false;
+            rowCount = filteredIds.size();
+            fireTableDataChanged();
+            return;
+        }
+        countLoading = true;
+        int requested = generation;
+        fireTableDataChanged();
+        asyncController.countPatients().whenComplete(
+                (count, error) -> SwingUtilities.invokeLater(() -> countLoaded(requested, count, error)));
+    }
+
+    /**
+     * Resizes the table to a count read by refresh(). Called on the EDT.
+     */
+    private void countLoaded(int requested, Integer count, Throwable error) {
+        if (requested != generation) {
+            return; // A later refresh has its own count on the way
+        }
+        countLoading = false;
+        if (error != null) {
+            System.err.println("Could not count patients: " + error.getMessage());
+            return;
+        }
+        int oldCount = rowCount;
+        rowCount = count;
+        // Inserted/deleted rather than a data change, so the selection survives
+        if (rowCount > oldCount) {
+            fireTableRowsInserted(oldCount, rowCount - 1);
+        } else if (rowCount < oldCount) {
+            fireTableRowsDeleted(rowCount, oldCount - 1);
+        }
+    }
+
+    /**
+     * Sorts by a column's key: ascending on the first click, then flipping
+     * direction on each click of the same column. A filtered list keeps its
+     * old order until the caller re-runs the search (orderIds uses the new key).
+     */
+    public void toggleSort(PatientSortKey key) {
+        if (key == sortKey) {
+            descending = !descending;
+        } else {
+            sortKey = key;
+            descending = false;
+        }
+        refresh();
+    }
+
+    public PatientSortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Shows only the given IDs (in the order given; see orderIds), or every patient if null.
+     */
+    public void setFilter(Collection<String> ids) {
+        filteredIds = (ids != null) ? new ArrayList<>(ids) : null;
+        refresh();
+    }
+
+    public boolean isFiltered() {
+        return filteredIds != null;
+    }
+
+    // --- Row-Level Updates ---
+
+    /**
+     * Where a saved patient belongs in the unfiltered table, as seen by one lookup.
+     */
+    public static final class RowPosition {
+        private final PatientSortKey sortKey;
+        private final boolean descending;
+        private final int row;
+        private final int storedCount; // Patients in storage at the time, including this one
+
+        RowPosition(PatientSortKey sortKey, boolean descending, int row, int storedCount) {
+            this.sortKey = sortKey;
+            this.descending = descending;
+            this.row = row;
+            this.storedCount = storedCount;
+        }
+    }
+
+    /**
+     * Looks up a saved patient's row in the current order, from the index's sorted
+     * ID lists (O(log n)). Call it off the EDT, then pass the result to patientInserted.
+     */
+    public RowPosition locate(Patient patient) throws Exception {
+        PatientSortKey key = sortKey;
+        boolean desc = descending;
+        int row = controller.getPatientPosition(patient.getPatientId(), key, desc);
+        return new RowPosition(key, desc, row, controller.countPatients());
+    }
+
+    /**
+     * Inserts a newly saved, unfiltered patient at the row locate() found.
+     * If the table has moved on since (another sort, or other rows saved in
+     * between, e.g. a batch import), it is refreshed once instead.
+     */
+    public void patientInserted(Patient patient, RowPosition position) {
+        if (refreshQueued) {
+            return; // The queued refresh will show it
+        }
+        if (countLoading) {
+            queueRefresh(); // The count on its way may have been read before this insert
+            return;
+        }
+        if (filteredIds == null && position.sortKey == sortKey && position.descending == descending
+                && position.storedCount <= rowCount) {
+            return; // A refresh since the lookup already counted it
+        }
+        if (filteredIds != null || position.sortKey != sortKey || position.descending != descending
+                || position.storedCount != rowCount + 1) {
+            queueRefresh();
+            return;
+        }
+        int row = position.row;
+        if (row < 0) {
+            return; // Not found in storage (e.g. deleted again); the next refresh will settle it
+        }
+
+        // Pages before the new row are unchanged, the page holding it shifts by one,
+        // and later pages are dropped so they reload with the new offsets
+        int page = row / PAGE_SIZE;
+        generation++; // Loads in flight were asked for with the old offsets
+        pagesLoading.clear();
+        pageCache.keySet().removeIf(cached -> cached > page);
+        List<Patient> rows = pageCache.get(page);
+        if (rows != null) {
+            rows = new ArrayList<>(rows);
+            rows.add(row % PAGE_SIZE, new Patient(patient));
+            if (rows.size() > PAGE_SIZE) {
+                rows.remove(rows.size() - 1);
+            }
+            pageCache.put(page, rows);
+        }
+
+        rowCount++;
+        fireTableRowsInserted(row, row);
+    }
+
+    /**
+     * Refreshes once after the events already queued on the EDT, however many ask for it.
+     */
+    private void queueRefresh() {
+        refreshQueued = true;
+        SwingUtilities.invokeLater(() -> {
+            refreshQueued = false;
+            refresh();
+        });
+    }
+
+    /**
+     * Replaces a changed patient in place. Only a row that is currently cached needs
+     * repainting; any other row is read fresh when it is next shown. The row keeps its
+     * position until the next refresh even if its sort column changed.
+     */
+    public void patientUpdated(Patient patient) {
+        String patientId = patient.getPatientId();
+        for (Map.Entry<Integer, List<Patient>> entry : pageCache.entrySet()) {
+            List<Patient> rows = entry.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                Patient cached = rows.get(i);
+                if (cached != null && patientId.equals(cached.getPatientId())) {
+                    rows.set(i, new Patient(patient));
+                    int row = entry.getKey() * PAGE_SIZE + i;
+                    fireTableRowsUpdated(row, row);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts a set of IDs into the current sort order. The DAO orders them from
+     * its indexes where it can, so the live search calls this on its background
+     * thread; it stops with a CancellationException once {@code cancelled}
+     * returns true.
+     */
+    public Set<String> orderIds(Collection<String> ids, BooleanSupplier cancelled) throws Exception {
+        PatientSortKey key = (sortKey != null) ? sortKey : PatientSortKey.PATIENT_ID;
+        return new LinkedHashSet<>(controller.orderPatientIds(ids, key, descending, cancelled));
+    }
+
+    /**
+     * The patient shown in a row, from the page cache. If the row's page is not
+     * cached this starts loading it and returns null (see isRowLoaded).
+     */
+    public Patient getPatientAt(int row) {
+        int page = row / PAGE_SIZE;
+        List<Patient> rows = pageCache.get(page);
+        if (rows == null) {
+            loadPage(page);
+            return null;
+        }
+        int index = row % PAGE_SIZE;
+        return (index < rows.size()) ? rows.get(index) : null;
+    }
+
+    /**
+     * False while the row's page is still being read.
+     */
+    public boolean isRowLoaded(int row) {
+        return pageCache.containsKey(row / PAGE_SIZE);
+    }
+
+    /**
+     * Starts reading one page in the background, unless it is already on its way.
+     */
+    private void loadPage(int page) {
+        if (!pagesLoading.add(page)) {
+            return;
+        }
+        int offset = page * PAGE_SIZE;
+        int requested = generation;
+        CompletableFuture<List<Patient>> rows;
+        if (filteredIds == null) {
+            rows = asyncController.getPatientPage(offset, PAGE_SIZE, sortKey, descending);
+        } else {
+            rows = asyncController.getPatients(new ArrayList<>(filteredIds.subList(
+                    Math.min(offset, filteredIds.size()), Math.min(offset + PAGE_SIZE, filteredIds.size()))));
+        }
+        rows.whenComplete((loaded, error) -> SwingUtilities.invokeLater(() -> pageLoaded(page, requested, loaded, error)));
+    }
+
+    /**
+     * Caches a page that finished loading and repaints its rows. Called on the EDT.
+     */
+    private void pageLoaded(int page, int requested, List<Patient> rows, Throwable error) {
+        if (requested != generation) {
+            return; // Offsets changed while it was loading; the rows will ask again
+        }
+        if (error != null) {
+            // Left marked as loading, so a broken page is not re-read on every repaint
+            System.err.println("Could not load patient page " + page + ": " + error.getMessage());
+            return;
+        }
+        pagesLoading.remove(page);
+        pageCache.put(page, rows);
+        int first = page * PAGE_SIZE;
+        int last = Math.min(first + PAGE_SIZE, rowCount) - 1;
+        if (first <= last) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /**
+     * Drops every cached page and ignores any still loading.
+     */
+    private void forgetPages() {
+        generation++;
+        pagesLoading.clear();
+        pageCache.clear();
+    }
+
+    // --- AbstractTableModel ---
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    /**
+     * Formats a cell only when the table paints it.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        Patient p = getPatientAt(row);
+        if (p == null) {
+            if (!isRowLoaded(row) && column == 1) {
+                return "Loading...";
+            }
+            return ""; // Still loading, or deleted since the page was counted
+        }
+        switch (column) {
+            case 0: return p.getPatientId();
+            case 1: return p.getName();
+            case 2: return p.getAge();
+            case 3: return p.getContact();
+            case 4: return p.getDoctorAssigned();
+            case 5: return controller.formatDate(p.getDateOfAdmission());
+            case 6: return p.isDischarged() ? "Discharged" : "Admitted";
+            default: return "";
+        }
+    }
+
+    /**
+     * Which sort key (if any) a column header click should page by.
+     */
+    public static PatientSortKey sortKeyForColumn(int column) {
+        switch (column) {
+            case 0: return PatientSortKey.PATIENT_ID;
+            case 1: return PatientSortKey.NAME;
+            case 4: return PatientSortKey.DOCTOR;
+            case 5: return PatientSortKey.ADMISSION_DATE;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.hospital.ui;
+
+import javax.swing.Icon;
+import javax.swing.JLabel;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.UIManager;
+import javax.swing.table.TableCellRenderer;
+
+import java.awt.Component;
+
+/**
+ * SortHeaderRenderer.java
+ * Draws the look-and-feel's sort arrow on the column the PatientTableModel is
+ * sorted by. The JTable header normally takes the arrow from a RowSorter, but
+ * this table sorts through the DAO, so the model is asked instead.
+ */
+public class SortHeaderRenderer implements TableCellRenderer {
+
+    private final TableCellRenderer defaultRenderer;
+    private final PatientTableModel model;
+
+    public SortHeaderRenderer(TableCellRenderer defaultRenderer, PatientTableModel model) {
+        this.defaultRenderer = defaultRenderer;
+        this.model = model;
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                   boolean hasFocus, int row, int column) {
+        Component component = defaultRenderer.getTableCellRendererComponent(
+                table, value, isSelected, hasFocus, row, column);
+        if (component instanceof JLabel) {
+            JLabel label = (JLabel) component;
+            Icon icon = null;
+            int modelColumn = table.convertColumnIndexToModel(column);
+            if (model.getSortKey() != null && PatientTableModel.sortKeyForColumn(modelColumn) == model.getSortKey()) {
+                icon = UIManager.getIcon(model.isDescending() ? "Table.descendingSortIcon" : "Table.ascendingSortIcon");
+            }
+            label.setIcon(icon);
+            label.setHorizontalTextPosition(SwingConstants.LEADING);
+        }
+        return component;
+    }
+}